@@ -8,6 +8,8 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Toast;
 
+import com.emehiser.bruce.bemehiserprojectashman.core.Mover;
+
 public class MainActivity extends AppCompatActivity implements View.OnClickListener {
 
     private Maze maze;
@@ -55,6 +57,11 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
             maze.newGame();
             return true;
         }
+        if(id == R.id.action_show_timings) {
+            maze.setShowTimings(! maze.isShowTimings());
+            item.setChecked(maze.isShowTimings());
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
@@ -2,43 +2,53 @@ package com.emehiser.bruce.bemehiserprojectashman;
 
 import android.app.Activity;
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.media.AudioManager;
-import android.media.MediaPlayer;
-import android.os.Handler;
+import android.view.Choreographer;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.emehiser.bruce.bemehiserprojectashman.core.AudioEngine;
+import com.emehiser.bruce.bemehiserprojectashman.core.Camera;
+import com.emehiser.bruce.bemehiserprojectashman.core.Game;
+import com.emehiser.bruce.bemehiserprojectashman.core.GameListener;
+import com.emehiser.bruce.bemehiserprojectashman.core.GameSnapshot;
+import com.emehiser.bruce.bemehiserprojectashman.core.GameThread;
+import com.emehiser.bruce.bemehiserprojectashman.core.HudCounter;
+import com.emehiser.bruce.bemehiserprojectashman.core.InputLog;
+import com.emehiser.bruce.bemehiserprojectashman.core.LevelFormat;
+import com.emehiser.bruce.bemehiserprojectashman.core.LevelLoader;
+import com.emehiser.bruce.bemehiserprojectashman.core.MazeGrid;
+import com.emehiser.bruce.bemehiserprojectashman.core.Mover;
+import com.emehiser.bruce.bemehiserprojectashman.core.TickProfiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.InvalidParameterException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Scanner;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 /*
  * Created by Bruce on 10/26/2015.
  *
  * Ashman Game
  *
- * Contains the state of the maze.
- * Hold references to all movers.
+ * Draws the state of the game.
  * Has ability to animate.
  * Has ability to pause.
  * Has ability to move Ashman based on user commands.
- * Has ability to randomly move Ghosts.
+ * Has ability to play sounds and messages for game events.
+ * Has ability to show how long each phase of a tick and a frame takes.
+ *
+ * The game simulation itself lives in the core module's Game.
  *
  */
-public class Maze extends View implements View.OnLongClickListener, View.OnClickListener {
+public class Maze extends View implements View.OnLongClickListener, View.OnClickListener, GameListener, GameThread.FrameListener {
 
     // calling context
     private final Context context;
@@ -46,36 +56,59 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
     // the canvas and gui scale factor
     private float scale;
     // the width and height of maze which will be drawn on canvas
-    private final static int DRAWING_WIDTH = 14;
-    private final static int DRAWING_HEIGHT = 14;
-    private final static int DRAWING_BORDER = 1;
+    private final static int DRAWING_WIDTH = MazeGrid.DRAWING_WIDTH;
+    private final static int DRAWING_HEIGHT = MazeGrid.DRAWING_HEIGHT;
+
+    // the maze squares and cakes, drawn once and patched when they change
+    private MazeLayers mazeLayers;
+
+    // the part of the maze on screen, following ashman through mazes bigger than the view
+    private Camera camera;
+    // where the camera was for the last draw, in squares, read by the invalidate calls
+    private float cameraLeft;
+    private float cameraTop;
+
+    // the snapshot taken for the current display frame, drawn and shown in the hud until the
+    // next frame takes another, and when the last one invalidated was captured. Ui thread only
+    private GameSnapshot frameSnapshot;
+    private long invalidatedNanos = -1;
 
     // paint objects used for drawing on canvas
-    private Paint solid; // dark grey
-    private Paint empty; // light blue
-    private Paint cake; // white
-
-    // each maze square will contain either a 0 solid, 1 empty, or 2 cake
-    private int[][] maze;
-    // Maze numbers
-    private final static int SOLID_VAL = 0;
-    private final static int EMPTY_VAL = 1;
-    private final static int CAKE_VAL = 2;
-    // count of current cakes in maze
-    private int cakeCount;
-
-    // list of movers
-    private ArrayList<String> moverTags;
-    private HashMap<String, Mover> movers;
-
-    // ashman tag so ashman can be controlled from without
-    private static final String ASHMAN_TAG = "ashman_tag";
-
-    // handler and timer for animating maze
-    private Handler clockHandler;
-    private Runnable clockTimer;
-    private ExecutorService threadExecutor;
-    private Future future;
+    private Paint ashmanPaint; // yellow
+    private Paint mouth; // black
+    private Paint ghostPaint; // red
+
+    // the game simulation, and the thread that ticks it
+    private Game game;
+    private GameThread gameThread;
+
+    // times of the game's phases, and of ours
+    private TickProfiler profiler;
+    // draw the times over the maze
+    private boolean showTimings;
+    // the timings text, a line at a time, made once so drawing it doesn't allocate
+    private Paint timingsPaint;
+    private Paint timingsBackground;
+    private StringBuilder timingsLine;
+
+    // called once per display frame while the maze is animating
+    private Choreographer.FrameCallback frameCallback;
+
+    // posted to the ui thread when the game thread finishes a frame
+    private Runnable frameReady;
+    // posted to run when the sound that is playing ends, null if none
+    private Runnable soundDone;
+
+    // parses levels in the background, and keeps the next one ready
+    private LevelLoader levelLoader;
+    // the level load the ui is waiting for, older loads are ignored
+    private int levelRequest;
+    // the level is loaded, so the game can begin
+    private boolean levelReady;
+    // begin the game as soon as the level is ready
+    private boolean beginWhenReady;
+    // the level failed to load once, and is being loaded again
+    private boolean retryingLevel;
 
     // animate maze for play / pause
     private boolean animateMaze;
@@ -83,26 +116,32 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
     private boolean gameRunning;
 
     // number of animations/second
-    public static final int ANIMATIONS_PER_SECOND = 15;
-    //    private static final long DELAY = 1000 / ANIMATIONS_PER_SECOND;
-    // note: 1000 / animationsPerSecond is technically correct, but the game ran slow because
-    // of the time it takes to run the game, so I shortened the delay a bit
-    // this will make it seem very fast on fast phones, and isn't technically kosher
-    private static final long DELAY = 500 / ANIMATIONS_PER_SECOND;
+    public static final int ANIMATIONS_PER_SECOND = Game.ANIMATIONS_PER_SECOND;
+
+    // size of the timings text in dp, and how many characters wide the lines are
+    private static final float TIMINGS_TEXT_SIZE = 11;
+    private static final int TIMINGS_COLUMNS = 26;
+
+    // the compiled level, see LevelFormat
+    private static final String LEVEL_ASSET = "level" + LevelFormat.EXTENSION;
+
+    // the recording of the last level played, in the app's files, see Replay
+    private static final String LAST_REPLAY = "last" + InputLog.EXTENSION;
 
     // win or loss
-    public static final int GAME_WIN = 0;
-    public static final int GAME_LOSS = 1;
-    // current level
-    private int currentLevel;
+    public static final int GAME_WIN = Game.GAME_WIN;
+    public static final int GAME_LOSS = Game.GAME_LOSS;
 
     // user interface fields
     private TextView currentLevelText;
     private TextView cakeCountText;
+    // their text, only set on the text views when it changes
+    private HudCounter currentLevelCounter;
+    private HudCounter cakeCountCounter;
 
-    // media players for audio clips
-    private MediaPlayer mediaPlayerChomp;
-    private MediaPlayer mediaPlayer;
+    // the decoded clips, and the thread that plays them
+    private SoundPoolSink soundPoolSink;
+    private AudioEngine audioEngine;
 
     public Maze(Context context) {
         super(context);
@@ -124,12 +163,37 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
 
     private void initialize() {
 
-        // create maze with empty borders
-        maze = new int[DRAWING_HEIGHT + 2 * DRAWING_BORDER][DRAWING_WIDTH + 2 * DRAWING_BORDER];
+        // create the game simulation, which reports back to this view
+        game = new Game(this);
+        gameThread = new GameThread(game, this);
+        profiler = game.getProfiler();
+        currentLevelCounter = new HudCounter(context.getString(R.string.level) + ": ");
+        cakeCountCounter = new HudCounter(context.getString(R.string.cakes_left) + ": ");
+        mazeLayers = new MazeLayers();
+        camera = new Camera(DRAWING_WIDTH, DRAWING_HEIGHT);
+
+        // ui work for the game thread, made once so posting doesn't allocate
+        frameReady = new Runnable() {
+            @Override
+            public void run() {
+                animateUI();
+            }
+        };
+
+        // decode every sound once, and play them off the game and ui threads
+        soundPoolSink = new SoundPoolSink(context);
+        audioEngine = new AudioEngine(soundPoolSink);
+        audioEngine.start();
 
-        // create movers and mover tags
-        moverTags = new ArrayList<>();
-        movers = new HashMap<>();
+        // every level is in the one asset for now, compiled at build time from src/main/levels
+        levelLoader = new LevelLoader(new LevelLoader.LevelSource() {
+            @Override
+            public InputStream open(int level) throws IOException {
+                return context.getAssets().open(LEVEL_ASSET);
+            }
+        });
+        // have the first level ready before the new game asks for it
+        levelLoader.preload(1);
 
         // register play pause click
         this.setOnClickListener(this);
@@ -152,71 +216,96 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
     private void prepareGame(int level) {
 
         // if the level is not valid for this game
-        if(level < 1 || level > 2) {
+        if(level < 1 || level > Game.LEVEL_COUNT) {
             throw new InvalidParameterException("Not a valid level: " + level);
         }
 
         // reset all the variables
         stopGameRunning();
 
-        // set the current level variable
-        currentLevel = level;
-
-        // clear the movers and ashman (if any)
-        moverTags.clear();
-        movers.clear();
-
-        // clear the media players
-        if(mediaPlayer != null) {
-            mediaPlayer.stop();
-            mediaPlayer = null;
-        }
-        if(mediaPlayerChomp != null) {
-            mediaPlayerChomp.stop();
-            mediaPlayerChomp = null;
+        // stop the sounds, and whatever was waiting for them to end
+        audioEngine.stopAll();
+        if(soundDone != null) {
+            removeCallbacks(soundDone);
+            soundDone = null;
         }
 
-        // set up new game board
-        Mover ashman;
-        Mover ghost;
+        // load level maze in the background, usually it is already preloaded
+        levelReady = false;
+        beginWhenReady = false;
+        final int request = ++ levelRequest;
+        levelLoader.load(level, new LevelLoader.LevelListener() {
+            @Override
+            public void onLevelLoaded(final int level, final MazeGrid levelGrid) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // a newer level was asked for while this one loaded
+                        if(request == levelRequest) {
+                            levelLoaded(level, levelGrid);
+                        }
+                    }
+                });
+            }
 
-        int ghostCountThisLevel = 0;
-        float ghostSpeedThisLevel = 0;
+            @Override
+            public void onLevelFailed(final int level, final Exception e) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(request == levelRequest) {
+                            levelFailed(level, e);
+                        }
+                    }
+                });
+            }
+        });
+    }
 
-        switch (level) {
-            case 1:
-                ghostCountThisLevel = 3;
-                ghostSpeedThisLevel = .6f;
-                break;
-            case 2:
-                ghostCountThisLevel = 5;
-                ghostSpeedThisLevel = 1f;
-                break;
-        }
+    // the level didn't load, on the ui thread. Try it once more, then start over from the first
+    // level, and if even that won't load wait for a new game
+    private void levelFailed(int level, Exception e) {
 
-        // load level maze
-        try {
-            prepareMaze("level.txt");
-        } catch (IOException e) {
-            Log.e("prepareGame()", "IOException: error loading level " + "level.txt");
+        Log.e("prepareGame()", "error loading level " + level + " from " + LEVEL_ASSET + " " + e);
+        if(!retryingLevel) {
+            retryingLevel = true;
+            Toast.makeText(context, R.string.level_failed_retry, Toast.LENGTH_SHORT).show();
+            prepareGame(level);
+        }
+        else if(level > 1) {
+            Toast.makeText(context, R.string.level_failed_restart, Toast.LENGTH_SHORT).show();
+            prepareGame(1);
         }
+        else {
+            // the game stays paused on the last maze, and the next new game tries again
+            retryingLevel = false;
+            Toast.makeText(context, R.string.level_failed, Toast.LENGTH_LONG).show();
+        }
+    }
 
-        // add an ashman to the maze
-        ashman = new Ashman();
-        ashman.setPosition(.5f, .5f);
-        ashman.setSpeed(1f);
-        addMover(ASHMAN_TAG, ashman);
+    // the level has loaded, on the ui thread
+    private void levelLoaded(int level, MazeGrid levelGrid) {
 
-        // add a ghosts to the maze
-        for(int i = 0; i < ghostCountThisLevel; i ++) {
-            ghost = new Ghost();
-            ghost.setPosition(1.5f, 13.5f);
-            ghost.setSpeed(ghostSpeedThisLevel);
-            addMover("ghost" + i, ghost);
-        }
+        retryingLevel = false;
+
+        // the game thread is paused, so add ashman and ghosts to the new maze, and publish it ourselves
+        gameThread.prepareGame(level, levelGrid);
 
         // call invalidate so that we can see changes before call to animate
         invalidate();
+
+        // get the next level, and the first one for a new game, ready while this one is played
+        if(level < Game.LEVEL_COUNT) {
+            levelLoader.preload(level + 1);
+        }
+        levelLoader.preload(1);
+
+        // the start sound may already be over
+        levelReady = true;
+        if(beginWhenReady) {
+            beginWhenReady = false;
+            startGameRunning();
+        }
     }
 
 
@@ -229,264 +318,203 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
     }
 
     public void stopAnimateMaze() {
-        // set animate maze false, which will it turn stop posting events on the event handler
+        // set animate maze false, which will it turn stop posting frame callbacks
         animateMaze = false;
-        // dispose of thread pieces
+        // pause the game thread, which waits for the current tick to finish
+        gameThread.pause();
+        // dispose of frame callback
         disposeAnimateMaze();
     }
 
     private void prepareAnimateMaze() {
-        // check for pre-existing clock timer
-        if(clockTimer == null) {
-            // create new thread executor, used for stopping thread
-            if (threadExecutor == null) {
-                threadExecutor = Executors.newSingleThreadExecutor();
-            }
-            // future task handler for timing next clock cycle
-            if (clockHandler == null) {
-                clockHandler = new Handler();
-            }
-            // runnable thread
-            clockTimer = new Runnable() {
+        // check for pre-existing frame callback
+        if(frameCallback == null) {
+            // runs every display frame, at whatever rate the device draws
+            frameCallback = new Choreographer.FrameCallback() {
                 @Override
-                public void run() {
-                    // call to animate maze actions
-                    animateMazeActions();
+                public void doFrame(long frameTimeNanos) {
+                    // the one place a snapshot is taken, so every snapshot drawn has been invalidated
+                    GameSnapshot snapshot = acquireFrameSnapshot();
+
+                    // a scrolling view moves everything, so all of it is redrawn. Otherwise only
+                    // what changed in a new snapshot, and again on the frames after it while movers
+                    // are still drawn sliding between its ticks. Nothing at all once they stop
+                    if(camera.isScrolling()) {
+                        invalidate();
+                    }
+                    else if(snapshot.captureNanos != invalidatedNanos || snapshot.getAlpha(frameTimeNanos) < 1) {
+                        for(int i = 0; i < snapshot.dirtyCount; i ++) {
+                            invalidate(snapshot.dirtyLeft[i], snapshot.dirtyTop[i], snapshot.dirtyRight[i], snapshot.dirtyBottom[i]);
+                        }
+                    }
+                    invalidatedNanos = snapshot.captureNanos;
 
-                    // post a delay until the next clock cycle
+                    // ask for the next frame
                     if (animateMaze) {
-                        clockHandler.postDelayed(this, DELAY);
+                        Choreographer.getInstance().postFrameCallback(this);
                     }
                 }
             };
-            // register runnable in the thread executor
-            threadExecutor.submit(clockTimer);
-            // future task scheduler
-            future = threadExecutor.submit(clockTimer);
-            // start the thread
-            clockTimer.run();
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+            // start ticking on the game thread, with the clock starting now
+            gameThread.start();
+            gameThread.resume();
         }
     }
 
     private void disposeAnimateMaze() {
-        if(clockHandler != null) {
-            clockHandler = null;
-        }
-        if(future != null) {
-            future.cancel(true);
-            future = null;
-        }
-        if(clockTimer != null) {
-            clockTimer = null;
-        }
-    }
-
-    private void animateMazeActions() {
-        // call to movers to animate
-        animateMovers();
-        // call to update ui
-        animateUI();
-        // check for game win
-        if(cakeCount == 0) {
-            endGame(GAME_WIN);
+        if(frameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            frameCallback = null;
         }
     }
 
-    private void animateMovers() {
-        // moveMover all the movers
-        for(String moverTag : moverTags) {
-            Mover mover = movers.get(moverTag);
-            mover.move(this);
-        }
+    // a tick has finished on the game thread
+    @Override
+    public void onFrameReady() {
+        // call to update ui, on the ui thread
+        post(frameReady);
     }
 
     private void animateUI() {
 
+        long mark = profiler.mark();
+
         // update the current level
         if(currentLevelText == null) {
             currentLevelText = (TextView) ((Activity) context).findViewById(R.id.level_text);
+            currentLevelCounter.invalidate();
         }
         // update cake count
         if(cakeCountText == null) {
             cakeCountText = (TextView) ((Activity) context).findViewById(R.id.cakes_left_text);
+            cakeCountCounter.invalidate();
         }
 
-        cakeCountText.setText(String.format("%s: %d",context.getString(R.string.cakes_left), cakeCount));
-        currentLevelText.setText(String.format("%s: %d",context.getString(R.string.level), currentLevel));
-    }
-
-    // checks if the maze restrains the mover from moving to this location
-    public boolean canMove(float destinationX, float destinationY, float moverRadius, int moverDirection) {
+        // read the frame being shown, never the game itself
+        GameSnapshot snapshot = getFrameSnapshot();
 
-        // make sure the destination center is within the bounds of the maze
-        if (destinationY + moverRadius > DRAWING_WIDTH ||
-                destinationX + moverRadius > DRAWING_WIDTH ||
-                destinationY - moverRadius < 0 ||
-                destinationX - moverRadius < 0) {
-            return false;
+        // only set text that changed, from the counters' own buffers, so nothing is
+        // allocated and the text views only lay out again when they have to
+        if(cakeCountCounter.set(snapshot.cakeCount)) {
+            cakeCountText.setText(cakeCountCounter.getChars(), 0, cakeCountCounter.getLength());
         }
-
-        // coordinates of ashman's leading edge, given direction
-        float finalX = destinationX;
-        float finalY = destinationY;
-        // check left and right from ashman's leading edge
-        switch (moverDirection) {
-            case Mover.UP:
-                finalY -= moverRadius;
-                if(getMazePos((int) finalX,(int) finalY) == SOLID_VAL ||
-                        getMazePos((int) (finalX - moverRadius), (int) finalY)  == SOLID_VAL ||
-                        getMazePos((int) (finalX + moverRadius), (int) finalY)  == SOLID_VAL) {
-                    return false;
-                }
-                break;
-            case Mover.DOWN:
-                finalY += moverRadius;
-                if(getMazePos((int) finalX,(int) finalY) == SOLID_VAL ||
-                        getMazePos((int) (finalX - moverRadius), (int) finalY)  == SOLID_VAL ||
-                        getMazePos((int) (finalX + moverRadius), (int) finalY)  == SOLID_VAL) {
-                    return false;
-                }
-                break;
-            case Mover.LEFT:
-                finalX -= moverRadius;
-                if(getMazePos((int) finalX,(int) finalY) == SOLID_VAL ||
-                        getMazePos((int) finalX, (int) (finalY - moverRadius))  == SOLID_VAL ||
-                        getMazePos((int) finalX, (int) (finalY + moverRadius))  == SOLID_VAL) {
-                    return false;
-                }
-                break;
-            case Mover.RIGHT:
-                finalX += moverRadius;
-                if(getMazePos((int) finalX,(int) finalY) == SOLID_VAL ||
-                        getMazePos((int) finalX, (int) (finalY - moverRadius))  == SOLID_VAL ||
-                        getMazePos((int) finalX, (int) (finalY + moverRadius))  == SOLID_VAL) {
-                    return false;
-                }
-                break;
-            // default, our mover is not moving, and we don't need to calculate because we haven't moved
-            default:
-                return true;
+        if(currentLevelCounter.set(snapshot.currentLevel)) {
+            currentLevelText.setText(currentLevelCounter.getChars(), 0, currentLevelCounter.getLength());
         }
-        // we are within the edges of the maze, and we are not touching a solid block
-        return true;
-    }
 
-    private void moveMover(String tag, int direction) {
-
-        Mover mover = movers.get(tag);
-        // check for null
-        if(mover == null) {
-            throw new NullPointerException("Mover has not been added to map");
+        // the timings change every frame, even where the maze doesn't
+        if(showTimings) {
+            invalidateTimings();
         }
-        mover.move(this, direction);
+        profiler.lap(TickProfiler.PHASE_UI, mark);
     }
 
     public void moveAshman(int direction) {
-        // move ashman if our maze is set to animate
+        // turn ashman if our maze is set to animate, at the start of the next tick
         if(animateMaze) {
-            moveMover(ASHMAN_TAG, direction);
+            game.queueInput(direction);
         }
     }
 
+    // take the newest finished frame from the game thread, for this display frame
+    private GameSnapshot acquireFrameSnapshot() {
+        frameSnapshot = gameThread.acquireSnapshot();
+        return frameSnapshot;
+    }
+
+    // the snapshot of the current display frame, or the newest one before the first frame
+    private GameSnapshot getFrameSnapshot() {
+        return frameSnapshot != null ? frameSnapshot : acquireFrameSnapshot();
+    }
+
     @Override
     public void invalidate(int l, int t, int r, int b) {
 
-        // calculate location on canvas, based on the scaling factor
-        l = (int) (l * scale);
-        t = (int) (t * scale);
-        r = (int) (r * scale);
-        b = (int) (b * scale);
+        // calculate location on canvas, based on the camera and the scaling factor
+        l = (int) ((l - cameraLeft) * scale);
+        t = (int) ((t - cameraTop) * scale);
+        r = (int) Math.ceil((r - cameraLeft) * scale);
+        b = (int) Math.ceil((b - cameraTop) * scale);
 
         // call super to invalidate canvas
         super.invalidate(l, t, r, b);
     }
 
-    private void playStartSound(MediaPlayer.OnCompletionListener listener) {
+    private void playStartSound(Runnable done) {
 
         // play the startup sound
-        playSound("pacman_beginning.wav", mediaPlayer).setOnCompletionListener(listener);
+        playSound(AudioEngine.SOUND_BEGINNING, done);
     }
 
-    private void playPauseSound(MediaPlayer.OnCompletionListener listener) {
+    private void playPauseSound(Runnable done) {
 
         // play the stop game sound
-        playSound("pacman_intermission.wav", mediaPlayer).setOnCompletionListener(listener);
+        playSound(AudioEngine.SOUND_INTERMISSION, done);
     }
 
     private void playDeathSound() {
 
         // play the death sound
-        playSound("pacman_death.wav", mediaPlayer);
+        playSound(AudioEngine.SOUND_DEATH, null);
     }
 
-    private void playChompSound() {
-
-        // play the chomp sound
-        playSound("pacman_chomp.wav", mediaPlayerChomp);
+    // play the sound, and run done on the ui thread once it has played through
+    private void playSound(int sound, Runnable done) {
+        long mark = profiler.mark();
+        audioEngine.play(sound);
+        profiler.lap(TickProfiler.PHASE_SOUND, mark);
+        if(done != null) {
+            soundDone = done;
+            postDelayed(done, soundPoolSink.getDurationMillis(sound));
+        }
     }
 
-    private MediaPlayer playSound(String assetName, MediaPlayer mediaPlayer) {
-        // hook player to this chomp sound and start it
-        if(mediaPlayer == null) {
-            mediaPlayer = new MediaPlayer();
-        }
-        // already playing
-        if(mediaPlayer.isPlaying()) {
-            mediaPlayer.seekTo(0);
+    private void beginGame() {
+        // call to start game running, once the level has loaded
+        if(levelReady) {
+            startGameRunning();
         }
-        // new up player and start playback
         else {
-            try {
-                AssetFileDescriptor assetFileDescriptor = context.getAssets().openFd(assetName);
-                mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-                mediaPlayer.reset();
-                mediaPlayer.setDataSource(assetFileDescriptor.getFileDescriptor(), assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength());
-
-                mediaPlayer.prepare();
-                mediaPlayer.start();
-
-                // release media player after playback ends
-                mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
-                    @Override
-                    public void onCompletion(MediaPlayer mp) {
-                        mp.release();
-                    }
-                });
-
-
-            } catch (IOException e) {
-                Log.e("Error", "IOException in playChompSound() mediaPlayer.prepare() " + e);
-                return mediaPlayer;
-            }
+            beginWhenReady = true;
         }
-
-        return mediaPlayer;
     }
 
-    private void beginGame() {
-        // call to start game running
-        startGameRunning();
+    // the game ended, on the game thread
+    @Override
+    public void onGameEnd(final int outcome) {
+        // stop ticking right away, then tell the user on the ui thread
+        gameThread.pause();
+        post(new Runnable() {
+            @Override
+            public void run() {
+                endGame(outcome);
+            }
+        });
     }
 
     // ends the game with a win or a loss
-    public void endGame(int outcome) {
+    private void endGame(int outcome) {
 
         // call to stop the game
         stopGameRunning();
 
+        // keep the recording, so the game can be replayed exactly
+        saveReplay();
+
         // check game outcome
         if(outcome == GAME_WIN) {
 
             // load next level
-            if(currentLevel == 1) {
+            if(game.getCurrentLevel() == 1) {
                 // pat the user on the back
                 Toast.makeText(context, R.string.level_two_warning, Toast.LENGTH_SHORT).show();
                 prepareGame(2);
                 // play the intermission music
                 // wait for the music to finish playing
-                playPauseSound(new MediaPlayer.OnCompletionListener() {
+                playPauseSound(new Runnable() {
                     @Override
-                    public void onCompletion(MediaPlayer mp) {
+                    public void run() {
                         // call to start game
                         beginGame();
                     }
@@ -495,9 +523,9 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
             else {
 
                 // play end music
-                playPauseSound(new MediaPlayer.OnCompletionListener() {
+                playPauseSound(new Runnable() {
                     @Override
-                    public void onCompletion(MediaPlayer mp) {
+                    public void run() {
                         // I don't actually want to do anything. What a waste
                         // now if I were actually using the credits sound... (dreamy sigh)
                     }
@@ -528,87 +556,35 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
         }
     }
 
+    // write the recording of the level that just ended. The game thread is paused
+    private void saveReplay() {
+        File file = new File(context.getFilesDir(), LAST_REPLAY);
+        try {
+            OutputStream outputStream = new FileOutputStream(file);
+            try {
+                game.getInputLog().write(outputStream);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            Log.e("saveReplay()", "error writing " + file + " " + e);
+        }
+    }
+
     public void newGame() {
         // load level 1
         prepareGame(1);
 
         // play new game sound
-        playStartSound(new MediaPlayer.OnCompletionListener() {
+        playStartSound(new Runnable() {
             @Override
-            public void onCompletion(MediaPlayer mp) {
+            public void run() {
                 // call to start game
                 beginGame();
             }
         });
     }
 
-    private void addMover(String tag, Mover mover) {
-        // add mover and tag
-        moverTags.add(tag);
-        movers.put(tag, mover);
-    }
-
-    // tells you if the incoming mover collides with any of the movers in the list, except for itself
-    public boolean collision(Mover mover) {
-
-        // for each mover in movers
-        for(String moverTag : moverTags) {
-            Mover m = movers.get(moverTag);
-            // if they are not the same objects, see if they bump into each other
-            if(! mover.equals(m)) {
-                // return if there is a collision. May need updated if I change visibility from package private
-                if(collision(mover.x, mover.y, mover.radius, m.x, m.y, m.radius)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    // finds whether or not two circles at given x and y coordinates, and with given radii, collide
-    private boolean collision(float ax, float ay, float aRad, float bx, float by, float bRad) {
-
-        // get x and y distance between two points
-        double dx = ax - bx;
-        double dy = ay - by;
-
-        // pythagorean theorem
-        double distance = Math.sqrt(dx * dx + dy * dy);
-
-        // if the distance is smaller than our added radii, we have a collision
-        if (distance < aRad + bRad) {
-            // collision detected
-            return true;
-        }
-        // collision not detected
-        return false;
-    }
-
-    private void prepareMaze(String resourcefileName) throws IOException {
-
-        Scanner scanner;
-
-        // set total cakes to zero
-        cakeCount = 0;
-
-        // open scanner and read file into array
-        InputStream inputStream = context.getAssets().open(resourcefileName);
-        scanner = new Scanner(inputStream);
-        // read a maze from the file
-        for(int i = 0; i < DRAWING_HEIGHT; i ++) {
-            // scan each line and split it into the maze
-            char[] temp = scanner.nextLine().toCharArray();
-            for(int j = 0; j < DRAWING_WIDTH; j ++) {
-                int t = Character.getNumericValue(temp[j]);
-                maze[i + DRAWING_BORDER][j + DRAWING_BORDER] = t;
-                // add all the cakes to our current cake count
-                if(t == CAKE_VAL) {
-                    cakeCount ++;
-                }
-            }
-        }
-    }
-
     @Override
     public void onMeasure(int widthMeasurespec, int heightMeasurespec) {
 
@@ -641,128 +617,205 @@ public class Maze extends View implements View.OnLongClickListener, View.OnClick
     @Override
     public void onDraw(Canvas canvas) {
 
-        // remember canvas
+        long start = profiler.mark();
+        int saved = canvas.save();
+
+        // the finished frame taken for this display frame. The game itself may be mid tick
+        GameSnapshot snapshot = getFrameSnapshot();
+
+        // how far between the last two ticks we are drawing. A paused game is drawn where it stopped
+        float alpha = snapshot.getAlpha(System.nanoTime());
+
+        // keep ashman in the middle of the view, as far as the maze edges allow
+        if(snapshot.ashman >= 0 && snapshot.ashman < snapshot.moverCount) {
+            camera.follow(snapshot.getInterpolatedX(snapshot.ashman, alpha),
+                    snapshot.getInterpolatedY(snapshot.ashman, alpha), snapshot.width, snapshot.height);
+        }
+        else {
+            camera.follow(0, 0, snapshot.width, snapshot.height);
+        }
+        cameraLeft = camera.getLeft();
+        cameraTop = camera.getTop();
+
+        // move the canvas so the camera's corner is at the view's corner
+        canvas.translate(-cameraLeft * scale, -cameraTop * scale);
+
+        // populate canvas with squares and cakes, a blit of each chunk on screen
+        long mark = profiler.mark();
+        mazeLayers.draw(canvas, snapshot, scale, camera);
+        mark = profiler.lap(TickProfiler.PHASE_DRAW_MAZE, mark);
 
         // scale canvas
         canvas.scale(scale, scale);
 
-        // populate canvas
-        // populate canvas with squares
-        drawMazeSquares(canvas);
-        // draw cakes on the canvas
-        drawCakes(canvas);
         // draw movers on canvas
-        drawMovers(canvas);
+        drawMovers(canvas, snapshot, alpha);
+        profiler.lap(TickProfiler.PHASE_DRAW_MOVERS, mark);
+
+        // the timings stay in the corner of the view, wherever the camera is
+        canvas.restoreToCount(saved);
+        if(showTimings) {
+            drawTimings(canvas);
+        }
+        profiler.lap(TickProfiler.PHASE_DRAW, start);
+    }
+
+    public boolean isShowTimings() {
+        return showTimings;
+    }
+
+    // show or hide the times of every phase over the top left of the maze, only timed while shown
+    public void setShowTimings(boolean show) {
+        showTimings = show;
+        profiler.setEnabled(show);
+        invalidateTimings();
+    }
+
+    // the corner of the view the timings are drawn in, which isn't in squares like invalidate
+    private void invalidateTimings() {
+        float textSize = TIMINGS_TEXT_SIZE * getResources().getDisplayMetrics().density;
+        super.invalidate(0, 0, (int) Math.ceil(textSize * TIMINGS_COLUMNS),
+                (int) Math.ceil(textSize * 1.25f * (TickProfiler.PHASE_COUNT + 2)));
     }
 
-    private void drawMovers(Canvas canvas) {
+    // a line for every phase timed so far, p50/p99/max in microseconds, then the overruns
+    private void drawTimings(Canvas canvas) {
 
-        // draw all movers
-        for(String moverTag : moverTags) {
-            Mover mover = movers.get(moverTag);
-            mover.drawMover(canvas);
+        if(timingsPaint == null) {
+            timingsPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            timingsPaint.setColor(Color.WHITE);
+            timingsPaint.setTextSize(TIMINGS_TEXT_SIZE * getResources().getDisplayMetrics().density);
+            timingsBackground = new Paint();
+            timingsBackground.setColor(0xa0000000);
+            timingsLine = new StringBuilder(TIMINGS_COLUMNS * 2);
         }
+
+        float textSize = timingsPaint.getTextSize();
+        float lineHeight = textSize * 1.25f;
+        int lines = 1;
+        for(int phase = 0; phase < TickProfiler.PHASE_COUNT; phase ++) {
+            if(profiler.getPhase(phase).getCount() > 0) {
+                lines ++;
+            }
+        }
+        canvas.drawRect(0, 0, textSize * TIMINGS_COLUMNS, lineHeight * (lines + 1), timingsBackground);
+
+        float y = lineHeight;
+        for(int phase = 0; phase < TickProfiler.PHASE_COUNT; phase ++) {
+            if(profiler.getPhase(phase).getCount() > 0) {
+                timingsLine.setLength(0);
+                profiler.appendPhase(timingsLine, phase);
+                canvas.drawText(timingsLine, 0, timingsLine.length(), textSize / 2, y, timingsPaint);
+                y += lineHeight;
+            }
+        }
+        timingsLine.setLength(0);
+        timingsLine.append("overruns ").append(profiler.getOverrunCount())
+                .append(" dropped ").append(profiler.getDroppedTickCount());
+        canvas.drawText(timingsLine, 0, timingsLine.length(), textSize / 2, y, timingsPaint);
     }
 
-    private void drawCakes(Canvas canvas) {
+    private void drawMovers(Canvas canvas, GameSnapshot snapshot, float alpha) {
 
-        for(int y = 0; y < DRAWING_HEIGHT; y ++) {
-            for(int x = 0; x < DRAWING_WIDTH; x ++) {
-                // draw all cakes in squares
-                if(getMazePos(x, y) == CAKE_VAL) {
-                    canvas.drawCircle(x + .5f, y + .5f, .22f, cake);
-                }
+        // draw the movers on screen
+        for(int i = 0; i < snapshot.moverCount; i ++) {
+            if(! camera.isVisible(snapshot.x[i], snapshot.y[i], snapshot.radius[i] + 1)) {
+                continue;
+            }
+            if(snapshot.kind[i] == GameSnapshot.KIND_ASHMAN) {
+                drawAshman(canvas, snapshot, i, alpha);
+            }
+            else {
+                drawGhost(canvas, snapshot, i, alpha);
             }
         }
     }
 
-    private void drawMazeSquares(Canvas canvas) {
+    private void drawAshman(Canvas canvas, GameSnapshot snapshot, int index, float alpha) {
 
-        // if paint objects are null, initialize them to the appropriate colors
-        if(solid == null) {
-            solid = new Paint();
-            solid.setStyle(Paint.Style.FILL);
-            int SOLID_COLOR = Color.BLUE;
-            solid.setColor(SOLID_COLOR);
+        float x = snapshot.getInterpolatedX(index, alpha);
+        float y = snapshot.getInterpolatedY(index, alpha);
+        float radius = snapshot.radius[index];
+
+        // set the ashman paint to be yellow, and the mouth paint to be black
+        if(ashmanPaint == null) {
+            ashmanPaint = new Paint();
+            ashmanPaint.setStyle(Paint.Style.FILL);
+            ashmanPaint.setColor(Color.YELLOW);
         }
-        // empty square yor
-        if(empty == null) {
-            empty = new Paint();
-            empty.setStyle(Paint.Style.FILL);
-            int EMPTY_COLOR = Color.DKGRAY;
-            empty.setColor(EMPTY_COLOR);
+        if(mouth == null) {
+            mouth = new Paint();
+            mouth.setStyle(Paint.Style.FILL);
+            mouth.setColor(Color.BLACK);
         }
 
-        // cake yor
-        if(cake == null) {
-            cake = new Paint();
-            cake.setStyle(Paint.Style.FILL);
-            int CAKE_COLOR = Color.WHITE;
-            cake.setColor(CAKE_COLOR);
-        }
+        // draw ashman
+        canvas.drawCircle(x, y, radius, ashmanPaint);
+
+        // the offset from ashman center, and the radius of the mouth
+        float offsetRadius = radius / 1.5f;
 
-        // paint each square with correct yor
-        for(int x = 0; x < DRAWING_HEIGHT; x ++) {
-            for(int y = 0; y < DRAWING_WIDTH; y ++) {
-                // draw squares
-                canvas.drawRect((float) x, (float) y, (float) x + 1, (float) y + 1, getMazePos(x, y) == 0 ? solid : empty);
+        // calculate current mouth state from game time, so it flaps at the same rate on every device
+        long mouthCountdown = snapshot.tickCount % ANIMATIONS_PER_SECOND;
+
+        // draw mouth half of the time
+        if(mouthCountdown < ANIMATIONS_PER_SECOND / 2) {
+            // draw mouth based on ashman direction
+            switch (snapshot.direction[index]) {
+                case Mover.UP:
+                    canvas.drawCircle(x, y - offsetRadius, offsetRadius, mouth);
+                    break;
+                case Mover.DOWN:
+                    canvas.drawCircle(x, y + offsetRadius, offsetRadius, mouth);
+                    break;
+                case Mover.LEFT:
+                    canvas.drawCircle(x - offsetRadius, y, offsetRadius, mouth);
+                    break;
+                case Mover.RIGHT:
+                    canvas.drawCircle(x + offsetRadius, y, offsetRadius, mouth);
             }
         }
     }
 
-    // removes cake in square
-    public void chompCake(float x, float y) {
-
-        // cast the values to ints
-        int intX = (int) x;
-        int intY = (int) y;
+    private void drawGhost(Canvas canvas, GameSnapshot snapshot, int index, float alpha) {
 
-        // get the current cake type
-        int squareType = getMazePos(intX, intY);
-        // if the maze position is a cake, eat the cake
-        if(squareType == Maze.CAKE_VAL) {
-            setMazePos(intX, intY, Maze.EMPTY_VAL);
-            // decrement cake count
-            cakeCount --;
-            // play chomp sound
-            playChompSound();
+        // set the ghost paint to be red
+        if(ghostPaint == null) {
+            ghostPaint = new Paint();
+            ghostPaint.setStyle(Paint.Style.FILL);
+            ghostPaint.setColor(Color.RED);
         }
-    }
 
-    // get the value at maze[row][col] with accounting for border
-    private int getMazePos(int x, int y) throws IndexOutOfBoundsException {
-        if(x < 0 || x > DRAWING_WIDTH
-                || y < 0 || y > DRAWING_HEIGHT)
-            throw new IndexOutOfBoundsException("getMazePos(int, int) must have values within DIMENSION_WIDTH and DIMENSION_HEIGHT");
-        return maze[y + 1][x + 1];
+        // draw circle that defines the current position of the ghost
+        canvas.drawCircle(snapshot.getInterpolatedX(index, alpha), snapshot.getInterpolatedY(index, alpha), snapshot.radius[index], ghostPaint);
     }
 
-    // set a maze position to either 0, 1, or 2
-    private void setMazePos(int x, int y, int val) {
+    // a cake was removed from its square, on the game thread
+    @Override
+    public void onCakeChomped() {
+        // only queues the chomp, so the tick never waits for it
+        audioEngine.play(AudioEngine.SOUND_CHOMP);
+    }
 
-        // check value
-        if(val < 0 || val > 2)
-            throw new InvalidParameterException("Value must be either 0, 1, or 2");
-        // make sure the value is within the border of the maze
-        if(y < 0 || y > DRAWING_HEIGHT
-                || x < 0 || x > DRAWING_WIDTH) {
-            throw new IndexOutOfBoundsException("Value falls outside of the dimensions of the maze");
-        }
-        // set the maze value
-        maze[y + 1][x + 1] = val;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // the view is going away, so end the game thread
+        stopAnimateMaze();
+        gameThread.quit();
+        mazeLayers.release();
+        audioEngine.quit();
+        soundPoolSink.release();
+        levelLoader.shutdown();
     }
 
     @Override
     public boolean onLongClick(View v) {
 
-        // remove all but one cake
-        for(int i = 0; i < DRAWING_HEIGHT && cakeCount > 1; i ++) {
-            for(int j = 0; j < DRAWING_WIDTH && cakeCount > 1; j ++) {
-                if(getMazePos(j, i) == CAKE_VAL) {
-                    setMazePos(j, i, EMPTY_VAL);
-                    cakeCount --;
-                }
-            }
+        // remove all but one cake, at the start of the next tick, if our maze is set to animate.
+        // Still handled while paused, so the long click doesn't also resume the game
+        if(animateMaze) {
+            game.queueInput(InputLog.INPUT_CHEAT);
         }
         // say that we handled the event
         return true;
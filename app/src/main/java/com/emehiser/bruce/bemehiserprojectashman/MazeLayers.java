@@ -0,0 +1,233 @@
+package com.emehiser.bruce.bemehiserprojectashman;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.emehiser.bruce.bemehiserprojectashman.core.Camera;
+import com.emehiser.bruce.bemehiserprojectashman.core.GameSnapshot;
+import com.emehiser.bruce.bemehiserprojectashman.core.MazeGrid;
+
+import java.util.ArrayList;
+
+/*
+ * Ashman Game
+ *
+ * The parts of the maze that don't move, drawn once into offscreen bitmaps.
+ * Has ability to draw the maze squares and cakes on screen with a blit per chunk.
+ * Has ability to patch only the squares that changed since the last frame.
+ *
+ * The maze is cut into chunks of MazeGrid.CHUNK_SIZE squares, and only the
+ * chunks the camera can see have a bitmap. A chunk that scrolls off screen
+ * gives its bitmap back for the next chunk that scrolls on, so the bitmaps
+ * and the work per frame depend on the size of the screen, not of the maze.
+ *
+ * A chunk is only touched when the snapshot's version of it changes, which
+ * is only when a cake in it is chomped or a level is loaded.
+ */
+public class MazeLayers {
+
+    // squares of a chunk, on a side
+    private static final int CHUNK_SIZE = MazeGrid.CHUNK_SIZE;
+
+    // a chunk that is on screen, and the cells it was drawn from
+    private static class Chunk {
+        Bitmap bitmap;
+        byte[] cells = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        long version;
+    }
+
+    // the chunks with a bitmap, by chunk index, null when off screen
+    private Chunk[] chunks;
+    // chunks that scrolled off screen, ready for reuse
+    private final ArrayList<Chunk> spareChunks;
+
+    // chunks drawn last frame, first and last inclusive
+    private int firstChunkX;
+    private int firstChunkY;
+    private int lastChunkX = -1;
+    private int lastChunkY = -1;
+
+    // the maze and scale the chunks were drawn for
+    private int drawnWidth;
+    private int drawnHeight;
+    private int drawnChunksAcross;
+    private float drawnScale;
+
+    // draws into whichever chunk bitmap is being updated
+    private final Canvas chunkCanvas;
+
+    // paint objects used for drawing the layers
+    private final Paint solid; // blue
+    private final Paint empty; // dark grey
+    private final Paint cake; // white
+
+    public MazeLayers() {
+
+        spareChunks = new ArrayList<>();
+        chunkCanvas = new Canvas();
+
+        solid = new Paint();
+        solid.setStyle(Paint.Style.FILL);
+        solid.setColor(Color.BLUE);
+
+        empty = new Paint();
+        empty.setStyle(Paint.Style.FILL);
+        empty.setColor(Color.DKGRAY);
+
+        cake = new Paint();
+        cake.setStyle(Paint.Style.FILL);
+        cake.setColor(Color.WHITE);
+    }
+
+    // draw the maze squares and cakes the camera can see, on a canvas in pixels
+    // that is already moved so the maze's top left corner is at 0, 0
+    public void draw(Canvas canvas, GameSnapshot snapshot, float scale, Camera camera) {
+
+        // nothing to draw into before the view has been measured
+        if(scale <= 0) {
+            return;
+        }
+
+        // a new size needs new bitmaps
+        if(chunks == null || scale != drawnScale
+                || snapshot.width != drawnWidth || snapshot.height != drawnHeight) {
+            release();
+            drawnScale = scale;
+            drawnWidth = snapshot.width;
+            drawnHeight = snapshot.height;
+            drawnChunksAcross = snapshot.chunksAcross;
+            chunks = new Chunk[snapshot.chunksAcross * snapshot.chunksDown];
+        }
+
+        int newFirstX = camera.getFirstChunkX();
+        int newFirstY = camera.getFirstChunkY();
+        int newLastX = camera.getLastChunkX();
+        int newLastY = camera.getLastChunkY();
+
+        // hand back the chunks that went off screen
+        for(int cy = firstChunkY; cy <= lastChunkY; cy ++) {
+            for(int cx = firstChunkX; cx <= lastChunkX; cx ++) {
+                if(cx < newFirstX || cx > newLastX || cy < newFirstY || cy > newLastY) {
+                    int i = cy * drawnChunksAcross + cx;
+                    if(chunks[i] != null) {
+                        spareChunks.add(chunks[i]);
+                        chunks[i] = null;
+                    }
+                }
+            }
+        }
+        firstChunkX = newFirstX;
+        firstChunkY = newFirstY;
+        lastChunkX = newLastX;
+        lastChunkY = newLastY;
+
+        // draw the chunks on screen, bringing each one up to date first
+        float chunkPixels = CHUNK_SIZE * scale;
+        for(int cy = firstChunkY; cy <= lastChunkY; cy ++) {
+            for(int cx = firstChunkX; cx <= lastChunkX; cx ++) {
+                int i = cy * drawnChunksAcross + cx;
+                Chunk chunk = chunks[i];
+                if(chunk == null) {
+                    chunk = takeChunk();
+                    chunks[i] = chunk;
+                    drawChunk(chunk, cx, cy, snapshot);
+                }
+                else if(chunk.version != snapshot.chunkVersions[i]) {
+                    patchChunk(chunk, cx, cy, snapshot);
+                }
+                canvas.drawBitmap(chunk.bitmap, cx * chunkPixels, cy * chunkPixels, null);
+            }
+        }
+    }
+
+    // free the bitmaps, they are made again on the next draw
+    public void release() {
+        if(chunks != null) {
+            for(int i = 0; i < chunks.length; i ++) {
+                if(chunks[i] != null) {
+                    chunks[i].bitmap.recycle();
+                    chunks[i] = null;
+                }
+            }
+        }
+        for(Chunk chunk : spareChunks) {
+            chunk.bitmap.recycle();
+        }
+        spareChunks.clear();
+        chunks = null;
+        lastChunkX = -1;
+        lastChunkY = -1;
+    }
+
+    // a spare chunk, or a new one
+    private Chunk takeChunk() {
+        if(! spareChunks.isEmpty()) {
+            return spareChunks.remove(spareChunks.size() - 1);
+        }
+        Chunk chunk = new Chunk();
+        int pixels = (int) Math.ceil(CHUNK_SIZE * drawnScale);
+        chunk.bitmap = Bitmap.createBitmap(pixels, pixels, Bitmap.Config.RGB_565);
+        return chunk;
+    }
+
+    // point the chunk canvas at the chunk, in maze squares
+    private void beginChunk(Chunk chunk, int cx, int cy) {
+        chunkCanvas.setBitmap(chunk.bitmap);
+        chunkCanvas.setMatrix(null);
+        chunkCanvas.scale(drawnScale, drawnScale);
+        chunkCanvas.translate(-cx * CHUNK_SIZE, -cy * CHUNK_SIZE);
+    }
+
+    // draw every square of the chunk
+    private void drawChunk(Chunk chunk, int cx, int cy, GameSnapshot snapshot) {
+
+        beginChunk(chunk, cx, cy);
+        // past the edge of the maze is solid
+        chunk.bitmap.eraseColor(solid.getColor());
+
+        int left = cx * CHUNK_SIZE;
+        int top = cy * CHUNK_SIZE;
+        int right = Math.min(left + CHUNK_SIZE, drawnWidth);
+        int bottom = Math.min(top + CHUNK_SIZE, drawnHeight);
+        for(int y = top; y < bottom; y ++) {
+            for(int x = left; x < right; x ++) {
+                int cell = snapshot.getCell(x, y);
+                drawSquare(x, y, cell);
+                chunk.cells[(y - top) * CHUNK_SIZE + x - left] = (byte) cell;
+            }
+        }
+        chunk.version = snapshot.chunkVersions[cy * drawnChunksAcross + cx];
+    }
+
+    // redraw only the squares of the chunk whose value changed
+    private void patchChunk(Chunk chunk, int cx, int cy, GameSnapshot snapshot) {
+
+        beginChunk(chunk, cx, cy);
+
+        int left = cx * CHUNK_SIZE;
+        int top = cy * CHUNK_SIZE;
+        int right = Math.min(left + CHUNK_SIZE, drawnWidth);
+        int bottom = Math.min(top + CHUNK_SIZE, drawnHeight);
+        for(int y = top; y < bottom; y ++) {
+            for(int x = left; x < right; x ++) {
+                int i = (y - top) * CHUNK_SIZE + x - left;
+                int cell = snapshot.getCell(x, y);
+                if(cell != chunk.cells[i]) {
+                    drawSquare(x, y, cell);
+                    chunk.cells[i] = (byte) cell;
+                }
+            }
+        }
+        chunk.version = snapshot.chunkVersions[cy * drawnChunksAcross + cx];
+    }
+
+    // the square, and its cake if it has one
+    private void drawSquare(int x, int y, int cell) {
+        chunkCanvas.drawRect(x, y, x + 1, y + 1, cell == MazeGrid.SOLID_VAL ? solid : empty);
+        if(cell == MazeGrid.CAKE_VAL) {
+            chunkCanvas.drawCircle(x + .5f, y + .5f, .22f, cake);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.emehiser.bruce.bemehiserprojectashman;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioManager;
+import android.media.MediaMetadataRetriever;
+import android.media.SoundPool;
+import android.util.Log;
+
+import com.emehiser.bruce.bemehiserprojectashman.core.AudioEngine;
+import com.emehiser.bruce.bemehiserprojectashman.core.SoundSink;
+
+import java.io.IOException;
+
+/*
+ * Ashman Game
+ *
+ * Plays the game sounds from a SoundPool.
+ * Has ability to decode every clip once, when the game starts.
+ * Has ability to tell how long each clip is.
+ *
+ * SoundPool keeps the decoded clips in memory, so playing one doesn't open,
+ * parse, or prepare anything. A clip asked for before it finished loading is
+ * played as soon as it has.
+ */
+public class SoundPoolSink implements SoundSink, SoundPool.OnLoadCompleteListener {
+
+    // asset for each AudioEngine sound
+    private static final String[] ASSETS = {
+            "pacman_beginning.wav",
+            "pacman_chomp.wav",
+            "pacman_death.wav",
+            "pacman_intermission.wav"
+    };
+
+    // most sounds playing at once
+    private static final int MAX_STREAMS = 4;
+
+    private final SoundPool soundPool;
+
+    // per sound, its SoundPool id, its length, and whether it has loaded
+    private final int[] soundIds;
+    private final long[] durationMillis;
+    private final boolean[] loaded;
+    // per sound, the stream it last played on, so it can be stopped
+    private final int[] streamIds;
+    // per sound, asked to play before it loaded
+    private final boolean[] pending;
+
+    @SuppressWarnings("deprecation")
+    public SoundPoolSink(Context context) {
+
+        // SoundPool.Builder needs api 21, and we run on 16
+        soundPool = new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+        soundPool.setOnLoadCompleteListener(this);
+
+        soundIds = new int[AudioEngine.SOUND_COUNT];
+        durationMillis = new long[AudioEngine.SOUND_COUNT];
+        loaded = new boolean[AudioEngine.SOUND_COUNT];
+        streamIds = new int[AudioEngine.SOUND_COUNT];
+        pending = new boolean[AudioEngine.SOUND_COUNT];
+
+        // decode every clip now, instead of when it is first played
+        for(int sound = 0; sound < AudioEngine.SOUND_COUNT; sound ++) {
+            try {
+                AssetFileDescriptor assetFileDescriptor = context.getAssets().openFd(ASSETS[sound]);
+                try {
+                    soundIds[sound] = soundPool.load(assetFileDescriptor, 1);
+                    durationMillis[sound] = readDuration(assetFileDescriptor);
+                } finally {
+                    assetFileDescriptor.close();
+                }
+            } catch (IOException e) {
+                Log.e("SoundPoolSink", "IOException loading " + ASSETS[sound] + " " + e);
+            }
+        }
+    }
+
+    // length of the clip, from its header
+    private static long readDuration(AssetFileDescriptor assetFileDescriptor) {
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(assetFileDescriptor.getFileDescriptor(), assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength());
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration == null ? 0 : Long.parseLong(duration);
+        } catch (RuntimeException e) {
+            Log.e("SoundPoolSink", "could not read clip duration " + e);
+            return 0;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    // how long the sound plays for, in milliseconds
+    public long getDurationMillis(int sound) {
+        return durationMillis[sound];
+    }
+
+    @Override
+    public synchronized void play(int sound) {
+        if(! loaded[sound]) {
+            pending[sound] = true;
+            return;
+        }
+        // a sound that is already playing starts over
+        if(streamIds[sound] != 0) {
+            soundPool.stop(streamIds[sound]);
+        }
+        streamIds[sound] = soundPool.play(soundIds[sound], 1, 1, 1, 0, 1);
+    }
+
+    @Override
+    public synchronized void stopAll() {
+        for(int sound = 0; sound < AudioEngine.SOUND_COUNT; sound ++) {
+            pending[sound] = false;
+            if(streamIds[sound] != 0) {
+                soundPool.stop(streamIds[sound]);
+                streamIds[sound] = 0;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+        for(int sound = 0; sound < AudioEngine.SOUND_COUNT; sound ++) {
+            if(soundIds[sound] == sampleId) {
+                loaded[sound] = status == 0;
+                if(loaded[sound] && pending[sound]) {
+                    pending[sound] = false;
+                    play(sound);
+                }
+            }
+        }
+    }
+
+    // free the decoded clips
+    public synchronized void release() {
+        soundPool.release();
+    }
+}
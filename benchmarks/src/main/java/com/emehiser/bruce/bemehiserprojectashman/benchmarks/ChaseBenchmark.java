@@ -0,0 +1,136 @@
+package com.emehiser.bruce.bemehiserprojectashman.benchmarks;
+
+import com.emehiser.bruce.bemehiserprojectashman.core.HierarchicalPathfinder;
+import com.emehiser.bruce.bemehiserprojectashman.core.MazeGrid;
+import com.emehiser.bruce.bemehiserprojectashman.core.Mover;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Ashman Game
+ *
+ * Benchmarks for ghosts chasing ashman on big mazes, by the pathfinder's chase field.
+ * Has ashman taking a step and every ghost choosing a way toward him, like a tick.
+ * Has ashman jumping to another cluster, the most a step can cost.
+ *
+ * The search is shared, so the time of a chase op is a fixed part for the
+ * search and a few array reads per ghost. Divide by ghosts to compare: the
+ * time per ghost should fall as ghosts are added, never rise.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChaseBenchmark {
+
+    // squares on a side of the maze, up to MazeGrid.MAX_SIZE
+    @Param({"1024"})
+    public int size;
+
+    // ghosts choosing a way every op
+    @Param({"1", "100", "10000"})
+    public int ghosts;
+
+    // seed for the maze, the walk and the ghosts
+    private static final long SEED = 372;
+
+    // steps in ashman's walk before it starts again, a power of two
+    private static final int WALK_STEPS = 4096;
+
+    private MazeGrid grid;
+    private HierarchicalPathfinder pathfinder;
+    private final Random random = new Random(SEED);
+
+    // ashman's walk over open squares, one step at a time
+    private final float[] walkX = new float[WALK_STEPS];
+    private final float[] walkY = new float[WALK_STEPS];
+    private int step;
+
+    // flat index of the square each ghost is in
+    private int[] ghostSquares;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        Random setup = new Random(SEED);
+        grid = new MazeGrid(size, size);
+        InputStream inputStream = GameState.generateMaze(setup, size);
+        try {
+            grid.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        pathfinder = new HierarchicalPathfinder();
+        pathfinder.update(grid);
+
+        // wander, only ever onto an open square next to the last one
+        int x;
+        int y;
+        do {
+            x = setup.nextInt(size);
+            y = setup.nextInt(size);
+        } while (grid.getMazePos(x, y) == MazeGrid.SOLID_VAL);
+        for(int i = 0; i < WALK_STEPS; i ++) {
+            int way = 1 + setup.nextInt(4);
+            int nextX = x + (way == Mover.LEFT ? -1 : way == Mover.RIGHT ? 1 : 0);
+            int nextY = y + (way == Mover.UP ? -1 : way == Mover.DOWN ? 1 : 0);
+            if(nextX >= 0 && nextX < size && nextY >= 0 && nextY < size
+                    && grid.getMazePos(nextX, nextY) != MazeGrid.SOLID_VAL) {
+                x = nextX;
+                y = nextY;
+            }
+            walkX[i] = x + .5f;
+            walkY[i] = y + .5f;
+        }
+
+        ghostSquares = new int[ghosts];
+        for(int i = 0; i < ghosts; i ++) {
+            do {
+                x = setup.nextInt(size);
+                y = setup.nextInt(size);
+            } while (grid.getMazePos(x, y) == MazeGrid.SOLID_VAL);
+            ghostSquares[i] = grid.index(x, y);
+        }
+    }
+
+    @Benchmark
+    public void chase(Blackhole blackhole) {
+
+        // ashman takes a step, then every ghost asks the way
+        step = (step + 1) & (WALK_STEPS - 1);
+        pathfinder.updateGoal(walkX[step], walkY[step]);
+        for(int i = 0; i < ghosts; i ++) {
+            blackhole.consume(pathfinder.toward(ghostSquares[i], random));
+        }
+    }
+
+    @Benchmark
+    public void chaseNewCluster(Blackhole blackhole) {
+
+        // ashman jumps half a maze, so the nodes are searched again and every ghost's cluster filled in
+        step = (step + WALK_STEPS / 2 + 1) & (WALK_STEPS - 1);
+        pathfinder.updateGoal(walkX[step], walkY[step]);
+        for(int i = 0; i < ghosts; i ++) {
+            blackhole.consume(pathfinder.toward(ghostSquares[i], random));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.emehiser.bruce.bemehiserprojectashman.benchmarks;
+
+import com.emehiser.bruce.bemehiserprojectashman.core.Game;
+import com.emehiser.bruce.bemehiserprojectashman.core.GameListener;
+import com.emehiser.bruce.bemehiserprojectashman.core.MazeGrid;
+import com.emehiser.bruce.bemehiserprojectashman.core.MoverStore;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/*
+ * Ashman Game
+ *
+ * A headless game for the benchmarks to run against.
+ * Has one ashman, and enough ghosts to make moverCount movers in total.
+ * Movers are spread over the open squares of the maze a subclass loads,
+ * with a fixed seed so every run starts the same. See shippedLevel and
+ * generateMaze for the mazes there are; only a generated maze has a size
+ * to choose, so the size is a parameter of the subclasses that generate one.
+ * They move in floats, or in fixed point, see Game.setFixedPoint.
+ *
+ * Run with -Dashman.profile=true to print how long each phase of a tick
+ * took over the whole trial, see TickProfiler.
+ */
+@State(Scope.Thread)
+public abstract class GameState {
+
+    // total number of movers, ashman included
+    @Param({"1", "5", "100", "10000"})
+    public int moverCount;
+
+    // move in 16.16 fixed point instead of floats
+    @Param({"false", "true"})
+    public boolean fixedPoint;
+
+    // seed for the generated maze and mover placement
+    private static final long SEED = 372;
+
+    // print the tick phase times after each trial
+    private static final boolean PROFILE = Boolean.getBoolean("ashman.profile");
+
+    public Game game;
+    public MoverStore movers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        // benchmarks don't care about sound or drawing
+        game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+
+        Random random = new Random(SEED);
+
+        MazeGrid mazeGrid = loadMaze(random);
+
+        // set the game up for a maze this size, then replace its movers with ours
+        game.setFixedPoint(fixedPoint);
+        game.prepareGame(1, mazeGrid, SEED);
+        game.clearMovers();
+
+        // place ashman and the ghosts on open squares, handles go 0 to moverCount - 1
+        for(int i = 0; i < moverCount; i ++) {
+            int square = randomOpenSquare(random);
+            int width = mazeGrid.getWidth();
+            float x = square % width + .5f;
+            float y = square / width + .5f;
+            if(i == 0) {
+                game.addAshman(x, y, 1f);
+            }
+            else {
+                game.addGhost(x, y, 1f);
+            }
+        }
+        movers = game.getMovers();
+        game.getProfiler().setEnabled(PROFILE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(PROFILE) {
+            System.out.println();
+            System.out.println(game.getProfiler().report());
+        }
+    }
+
+    // the maze to play on, drawing any randomness from random
+    protected abstract MazeGrid loadMaze(Random random) throws IOException;
+
+    // the level.txt the app ships
+    static MazeGrid shippedLevel() throws IOException {
+
+        InputStream inputStream = GameState.class.getResourceAsStream("/level.txt");
+        if(inputStream == null) {
+            throw new IOException("level.txt is not on the benchmark classpath");
+        }
+        MazeGrid mazeGrid = new MazeGrid();
+        try {
+            mazeGrid.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return mazeGrid;
+    }
+
+    // a maze loaded from generateMaze
+    static MazeGrid generatedMaze(Random random, int size) throws IOException {
+
+        MazeGrid mazeGrid = new MazeGrid(size, size);
+        InputStream inputStream = generateMaze(random, size);
+        try {
+            mazeGrid.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return mazeGrid;
+    }
+
+    // a maze size squares on a side, with about a third of the squares solid
+    static InputStream generateMaze(Random random, int size) {
+
+        StringBuilder builder = new StringBuilder(size * (size + 1));
+        for(int y = 0; y < size; y ++) {
+            for(int x = 0; x < size; x ++) {
+                int value = random.nextInt(3) == 0 ? MazeGrid.SOLID_VAL : MazeGrid.CAKE_VAL;
+                builder.append(value);
+            }
+            builder.append('\n');
+        }
+        return new ByteArrayInputStream(builder.toString().getBytes(Charset.forName("US-ASCII")));
+    }
+
+    // a square that isn't solid, as y * width + x
+    private int randomOpenSquare(Random random) {
+
+        MazeGrid mazeGrid = game.getGrid();
+        int x;
+        int y;
+        do {
+            x = random.nextInt(mazeGrid.getWidth());
+            y = random.nextInt(mazeGrid.getHeight());
+        } while (mazeGrid.getMazePos(x, y) == MazeGrid.SOLID_VAL);
+
+        return y * mazeGrid.getWidth() + x;
+    }
+}
@@ -0,0 +1,114 @@
+package com.emehiser.bruce.bemehiserprojectashman.benchmarks;
+
+import com.emehiser.bruce.bemehiserprojectashman.core.HierarchicalPathfinder;
+import com.emehiser.bruce.bemehiserprojectashman.core.MazeGrid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Ashman Game
+ *
+ * Benchmarks for the pathfinder ghosts chase with on big mazes.
+ * Has a query between two open squares, like one ghost's turn.
+ * Has one changed square and the repair of its cluster, like a wall edit.
+ *
+ * The maze is generated size squares on a side, the same way GameState
+ * generates one, and the queries and edits come from a fixed seed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathfinderBenchmark {
+
+    // squares on a side of the maze, up to MazeGrid.MAX_SIZE
+    @Param({"1024"})
+    public int size;
+
+    // seed for the maze, queries and edits
+    private static final long SEED = 372;
+
+    // number of queries and edits cycled through, a power of two
+    private static final int COUNT = 1024;
+
+    private MazeGrid grid;
+    private HierarchicalPathfinder pathfinder;
+
+    // start and goal squares of each query
+    private final int[] startX = new int[COUNT];
+    private final int[] startY = new int[COUNT];
+    private final int[] goalX = new int[COUNT];
+    private final int[] goalY = new int[COUNT];
+    private int query;
+
+    // squares flipped between solid and open, each in a cluster picked at random
+    private final int[] editX = new int[COUNT];
+    private final int[] editY = new int[COUNT];
+    private int edit;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        Random random = new Random(SEED);
+        grid = new MazeGrid(size, size);
+        InputStream inputStream = GameState.generateMaze(random, size);
+        try {
+            grid.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        pathfinder = new HierarchicalPathfinder();
+        pathfinder.update(grid);
+
+        for(int i = 0; i < COUNT; i ++) {
+            do {
+                startX[i] = random.nextInt(size);
+                startY[i] = random.nextInt(size);
+            } while (grid.getMazePos(startX[i], startY[i]) == MazeGrid.SOLID_VAL);
+            do {
+                goalX[i] = random.nextInt(size);
+                goalY[i] = random.nextInt(size);
+            } while (grid.getMazePos(goalX[i], goalY[i]) == MazeGrid.SOLID_VAL);
+            editX[i] = random.nextInt(size);
+            editY[i] = random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    public int findPath() {
+
+        int i = query;
+        query = (query + 1) & (COUNT - 1);
+        return pathfinder.findPath(startX[i], startY[i], goalX[i], goalY[i]);
+    }
+
+    @Benchmark
+    public boolean repair() {
+
+        // each square is flipped back the next time round, so the maze stays about the same
+        int i = edit;
+        edit = (edit + 1) & (COUNT - 1);
+        int x = editX[i];
+        int y = editY[i];
+        grid.setMazePos(x, y, grid.getMazePos(x, y) == MazeGrid.SOLID_VAL ? MazeGrid.EMPTY_VAL : MazeGrid.SOLID_VAL);
+        return pathfinder.update(grid);
+    }
+}
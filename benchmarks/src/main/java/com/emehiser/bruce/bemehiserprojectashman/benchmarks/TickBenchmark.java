@@ -0,0 +1,131 @@
+package com.emehiser.bruce.bemehiserprojectashman.benchmarks;
+
+import com.emehiser.bruce.bemehiserprojectashman.core.DistanceField;
+import com.emehiser.bruce.bemehiserprojectashman.core.Game;
+import com.emehiser.bruce.bemehiserprojectashman.core.MazeGrid;
+import com.emehiser.bruce.bemehiserprojectashman.core.Mover;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Ashman Game
+ *
+ * Benchmarks for the per tick hot paths of the game simulation.
+ * Every benchmark except tick does its operation once for each mover, so
+ * one benchmark operation is the cost of that path over one whole tick.
+ *
+ * Run with the gc profiler (the gradle jmh task does) to see the bytes
+ * allocated per tick in gc.alloc.rate.norm.
+ *
+ * The benchmarks are run on each maze GameState can load, by the nested
+ * subclasses: ShippedLevel at its own size, and Generated at each size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public abstract class TickBenchmark extends GameState {
+
+    // flips the direction movers are pushed in, so they stay in their corridors
+    private int flip;
+
+    // breaks ties between equally short ways to ashman
+    private final Random random = new Random(1);
+
+    @Benchmark
+    public void canMove(Blackhole blackhole) {
+
+        MazeGrid grid = game.getGrid();
+        for(int handle = 0; handle < movers.getCount(); handle ++) {
+            // one step to the right of where the mover is now
+            float x = movers.getX(handle) + 1f / Game.ANIMATIONS_PER_SECOND;
+            blackhole.consume(grid.canMove(x, movers.getY(handle), movers.getRadius(handle), Mover.RIGHT));
+        }
+    }
+
+    @Benchmark
+    public void collision(Blackhole blackhole) {
+
+        for(int handle = 0; handle < movers.getCount(); handle ++) {
+            blackhole.consume(game.collision(handle));
+        }
+    }
+
+    @Benchmark
+    public void move() {
+
+        // back and forth, so the movers don't all end up against a wall
+        flip ^= 1;
+        int direction = flip == 0 ? Mover.LEFT : Mover.RIGHT;
+        for(int handle = 0; handle < movers.getCount(); handle ++) {
+            game.moveMover(handle, direction);
+        }
+    }
+
+    @Benchmark
+    public void chase(Blackhole blackhole) {
+
+        // the field is searched at most once, then every mover's choice is a lookup
+        MazeGrid grid = game.getGrid();
+        DistanceField field = game.getChaseField();
+        field.update(grid, movers.getX(0), movers.getY(0));
+        for(int handle = 0; handle < movers.getCount(); handle ++) {
+            int index = grid.index((int) movers.getX(handle), (int) movers.getY(handle));
+            blackhole.consume(field.toward(index, random));
+        }
+    }
+
+    @Benchmark
+    public void chompCake() {
+
+        // most squares are eaten after the first few operations, so this is mostly the miss path
+        for(int handle = 0; handle < movers.getCount(); handle ++) {
+            game.chompCake(movers.getX(handle), movers.getY(handle));
+        }
+    }
+
+    @Benchmark
+    public void tick() {
+
+        // everything the maze does in one animation, minus the ui
+        game.tick();
+    }
+
+    // the level.txt the app ships
+    public static class ShippedLevel extends TickBenchmark {
+
+        @Override
+        protected MazeGrid loadMaze(Random random) throws IOException {
+            return shippedLevel();
+        }
+    }
+
+    // a maze generated size squares on a side
+    public static class Generated extends TickBenchmark {
+
+        // squares on a side, up to MazeGrid.MAX_SIZE
+        @Param({"14", "256", "1024"})
+        public int size;
+
+        @Override
+        protected MazeGrid loadMaze(Random random) throws IOException {
+            return generatedMaze(random, size);
+        }
+    }
+}
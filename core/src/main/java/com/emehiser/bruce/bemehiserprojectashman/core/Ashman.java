@@ -0,0 +1,68 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/**
+ * Created by Bruce Emehiser on 11/12/2015.
+ *
+ * Defines how Ashman moves
+ *
+ * Ashman keeps going the way he is going. A turn waits, see Game.input,
+ * until the first tick he can take it, so the player can give it early.
+ */
+public class Ashman extends Mover {
+
+    @Override
+    public void move(Game game, int handle) {
+        MoverStore movers = game.getMovers();
+
+        // a turn given earlier is taken on the first tick the way is open: the next square
+        // that way is open, and all of ashman fits in the row or column leading to it
+        int turn = movers.turn[handle];
+        if(turn != Mover.STOPPED && linedUp(movers, handle, turn)
+                && wayOpen(game, movers, handle, turn) && canMove(game, handle, turn)) {
+            movers.direction[handle] = turn;
+            movers.turn[handle] = Mover.STOPPED;
+        }
+        int fromX = movers.getSquareX(handle);
+        int fromY = movers.getSquareY(handle);
+        move(game, handle, movers.direction[handle]);
+        // check for cake to eat, in every square the step went through
+        chompPath(game, fromX, fromY, movers.getSquareX(handle), movers.getSquareY(handle));
+
+        // see if ashman collides with other movers in the maze
+        boolean collision = game.collision(handle);
+        if (collision) {
+            // report to the game that ashman lost (was eaten)
+            game.endGame(Game.GAME_LOSS);
+        }
+    }
+
+    // eat the cakes from one square to the other. A step only goes along a row or a column,
+    // and a fast ashman can pass more than one square in it
+    private static void chompPath(Game game, int fromX, int fromY, int toX, int toY) {
+        for(int y = Math.min(fromY, toY); y <= Math.max(fromY, toY); y ++) {
+            for(int x = Math.min(fromX, toX); x <= Math.max(fromX, toX); x ++) {
+                game.chompCake(x, y);
+            }
+        }
+    }
+
+    // tells you if ashman is within one column to go up or down, or one row to go left or right
+    private static boolean linedUp(MoverStore movers, int handle, int direction) {
+        boolean vertical = direction == Mover.UP || direction == Mover.DOWN;
+        if(movers.fixedPoint) {
+            int across = vertical ? movers.fixedX[handle] : movers.fixedY[handle];
+            int radius = movers.fixedRadius[handle];
+            return (across - radius) >> FixedPoint.SHIFT == (across + radius) >> FixedPoint.SHIFT;
+        }
+        float across = vertical ? movers.x[handle] : movers.y[handle];
+        float radius = movers.radius[handle];
+        return (int) (across - radius) == (int) (across + radius);
+    }
+
+    // tells you if the square next to ashman's, in the direction, is open
+    private static boolean wayOpen(Game game, MoverStore movers, int handle, int direction) {
+        MazeGrid grid = game.getGrid();
+        int index = grid.index(movers.getSquareX(handle), movers.getSquareY(handle));
+        return (grid.walkableBits(index) & JunctionGraph.wayBit(direction)) != 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Ashman Game
+ *
+ * Plays sounds on its own thread.
+ * Has ability to take sound events from any thread without waiting.
+ * Has ability to start and quit.
+ *
+ * Callers only put a sound number in a queue, so a chomp on the game thread
+ * never waits for audio. The audio thread takes the events in order and hands
+ * them to the SoundSink, which has the clips loaded ahead of time.
+ *
+ * The queue is a fixed ring. Each slot has a sequence number that says
+ * whether it is free to write or ready to read, so callers claim a slot with
+ * one compare and set and never lock, wait, or allocate, even when several
+ * threads play at once. The audio thread parks while the ring is empty.
+ */
+public class AudioEngine implements Runnable {
+
+    // the sounds of the game
+    public static final int SOUND_BEGINNING = 0;
+    public static final int SOUND_CHOMP = 1;
+    public static final int SOUND_DEATH = 2;
+    public static final int SOUND_INTERMISSION = 3;
+    public static final int SOUND_COUNT = 4;
+
+    // events waiting to be played, a power of two. Past this many, new ones are dropped
+    private static final int QUEUE_SIZE = 32;
+    private static final int QUEUE_MASK = QUEUE_SIZE - 1;
+
+    // plays the sounds
+    private final SoundSink sink;
+
+    // the ring of events. A slot at position p can be written when its sequence
+    // is p, and read when it is p + 1. Reading it makes it p + QUEUE_SIZE
+    private final int[] events;
+    private final AtomicLongArray sequences;
+    // the next position to write, claimed by callers
+    private final AtomicLong tail;
+    // the next position to read, only moved by the audio thread
+    private long head;
+
+    // events before this position were queued before a stopAll, and are dropped
+    private final AtomicLong dropBefore;
+    // stopAll was called, and the sink hasn't been stopped yet
+    private final AtomicBoolean stopPending;
+
+    // the thread itself, null until started
+    private volatile Thread thread;
+
+    public AudioEngine(SoundSink sink) {
+
+        if(sink == null) {
+            throw new NullPointerException("Sound sink is null");
+        }
+        this.sink = sink;
+        events = new int[QUEUE_SIZE];
+        sequences = new AtomicLongArray(QUEUE_SIZE);
+        for(int i = 0; i < QUEUE_SIZE; i ++) {
+            sequences.set(i, i);
+        }
+        tail = new AtomicLong();
+        dropBefore = new AtomicLong();
+        stopPending = new AtomicBoolean();
+    }
+
+    // start the audio thread. Does nothing if it is already started
+    public synchronized void start() {
+        if(thread == null) {
+            thread = new Thread(this, "ashman-audio");
+            thread.start();
+        }
+    }
+
+    // stop the thread and wait for it to end. Events not yet played are dropped
+    public void quit() {
+
+        Thread stopping;
+        synchronized (this) {
+            stopping = thread;
+            thread = null;
+        }
+
+        if(stopping != null && stopping != Thread.currentThread()) {
+            stopping.interrupt();
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dropWaiting();
+    }
+
+    // play the sound, from any thread. Returns false if the queue was full and it was dropped
+    public boolean play(int sound) {
+
+        if(sound < 0 || sound >= SOUND_COUNT) {
+            throw new InvalidParameterException("Not a sound: " + sound);
+        }
+        while(true) {
+            long position = tail.get();
+            int slot = (int) position & QUEUE_MASK;
+            long sequence = sequences.get(slot);
+            if(sequence == position) {
+                // the slot is free, claim it
+                if(tail.compareAndSet(position, position + 1)) {
+                    events[slot] = sound;
+                    // the sound is written before the audio thread can see the slot is ready
+                    sequences.set(slot, position + 1);
+                    wake();
+                    return true;
+                }
+            }
+            else if(sequence < position) {
+                // the slot still holds an event from one time round the ring ago
+                return false;
+            }
+            // another caller claimed the slot first, try the next
+        }
+    }
+
+    // stop every sound, and forget any that haven't started yet
+    public void stopAll() {
+        dropWaiting();
+        stopPending.set(true);
+        wake();
+    }
+
+    // drop every event queued so far, when the audio thread gets to it
+    private void dropWaiting() {
+        long position = tail.get();
+        long dropped;
+        while((dropped = dropBefore.get()) < position && ! dropBefore.compareAndSet(dropped, position)) {
+            // another caller moved it, check again
+        }
+    }
+
+    private void wake() {
+        Thread audioThread = thread;
+        if(audioThread != null) {
+            LockSupport.unpark(audioThread);
+        }
+    }
+
+    @Override
+    public void run() {
+
+        // quit interrupts us
+        while (! Thread.currentThread().isInterrupted()) {
+
+            if(stopPending.getAndSet(false)) {
+                sink.stopAll();
+            }
+
+            // park until a caller wakes us, if there is nothing to play
+            int slot = (int) head & QUEUE_MASK;
+            if(sequences.get(slot) != head + 1) {
+                LockSupport.park(this);
+                continue;
+            }
+            int event = events[slot];
+            long position = head ++;
+            // free the slot for the next time round the ring
+            sequences.set(slot, position + QUEUE_SIZE);
+
+            if(position >= dropBefore.get()) {
+                sink.play(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.Arrays;
+
+/*
+ * Ashman Game
+ *
+ * Buckets movers by the maze square their center is in, so a collision
+ * check only has to look at movers in the neighbouring squares instead
+ * of every mover in the game.
+ *
+ * Each square keeps a doubly linked list of handles in int arrays. A mover
+ * is only relinked when a move takes it across a square boundary.
+ */
+public class Broadphase {
+
+    // no mover, the end of a list
+    private static final int NONE = -1;
+
+    // size of the maze, in squares
+    private final int width;
+    private final int height;
+
+    // first mover in each square
+    private final int[] head;
+
+    // per mover, the square it is in, and its neighbours in that square's list
+    private int[] square;
+    private int[] next;
+    private int[] previous;
+
+    // how many squares away a collision can be, from the largest radius added
+    private int reach;
+
+    public Broadphase(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        head = new int[width * height];
+        square = new int[8];
+        next = new int[8];
+        previous = new int[8];
+        clear();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // remove every mover
+    public void clear() {
+        Arrays.fill(head, NONE);
+        reach = 0;
+    }
+
+    // add a mover, handles must be added in order starting from zero
+    void insert(int handle, float x, float y, float radius) {
+
+        // make room
+        if(handle >= square.length) {
+            int capacity = Math.max(handle + 1, square.length * 2);
+            square = Arrays.copyOf(square, capacity);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+        }
+
+        // two movers collide when their centers are closer than their radii added together,
+        // so the biggest mover decides how many squares out we have to look
+        reach = Math.max(reach, (int) Math.ceil(2 * radius));
+
+        link(handle, squareOf(x, y));
+    }
+
+    // the mover moved, relink it if it changed squares
+    void update(int handle, float x, float y) {
+        int newSquare = squareOf(x, y);
+        if(newSquare != square[handle]) {
+            unlink(handle);
+            link(handle, newSquare);
+        }
+    }
+
+    // tells you if the mover collides with any other mover
+    public boolean collision(MoverStore movers, int handle) {
+
+        if(movers.fixedPoint) {
+            return collisionFixed(movers, handle);
+        }
+        float[] moverX = movers.x;
+        float[] moverY = movers.y;
+        float[] moverRadius = movers.radius;
+
+        float x = moverX[handle];
+        float y = moverY[handle];
+        float radius = moverRadius[handle];
+
+        // the squares around the mover that could hold something touching it
+        int squareX = square[handle] % width;
+        int squareY = square[handle] / width;
+        int left = Math.max(squareX - reach, 0);
+        int right = Math.min(squareX + reach, width - 1);
+        int top = Math.max(squareY - reach, 0);
+        int bottom = Math.min(squareY + reach, height - 1);
+
+        for(int j = top; j <= bottom; j ++) {
+            for(int i = left; i <= right; i ++) {
+                for(int other = head[j * width + i]; other != NONE; other = next[other]) {
+                    if(other == handle) {
+                        continue;
+                    }
+                    // compare squared distances, no need for a square root
+                    float dx = x - moverX[other];
+                    float dy = y - moverY[other];
+                    float touching = radius + moverRadius[other];
+                    if(dx * dx + dy * dy < touching * touching) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // collision in fixed point. Squared distances don't fit an int, so they are longs
+    private boolean collisionFixed(MoverStore movers, int handle) {
+
+        int[] moverX = movers.fixedX;
+        int[] moverY = movers.fixedY;
+        int[] moverRadius = movers.fixedRadius;
+
+        int x = moverX[handle];
+        int y = moverY[handle];
+        int radius = moverRadius[handle];
+
+        int squareX = square[handle] % width;
+        int squareY = square[handle] / width;
+        int left = Math.max(squareX - reach, 0);
+        int right = Math.min(squareX + reach, width - 1);
+        int top = Math.max(squareY - reach, 0);
+        int bottom = Math.min(squareY + reach, height - 1);
+
+        for(int j = top; j <= bottom; j ++) {
+            for(int i = left; i <= right; i ++) {
+                for(int other = head[j * width + i]; other != NONE; other = next[other]) {
+                    if(other == handle) {
+                        continue;
+                    }
+                    long dx = x - moverX[other];
+                    long dy = y - moverY[other];
+                    long touching = radius + moverRadius[other];
+                    if(dx * dx + dy * dy < touching * touching) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // the square the point is in, clamped to the maze
+    private int squareOf(float x, float y) {
+        int i = (int) x;
+        int j = (int) y;
+        i = i < 0 ? 0 : i >= width ? width - 1 : i;
+        j = j < 0 ? 0 : j >= height ? height - 1 : j;
+        return j * width + i;
+    }
+
+    private void link(int handle, int newSquare) {
+        int first = head[newSquare];
+        square[handle] = newSquare;
+        previous[handle] = NONE;
+        next[handle] = first;
+        if(first != NONE) {
+            previous[first] = handle;
+        }
+        head[newSquare] = handle;
+    }
+
+    private void unlink(int handle) {
+        int before = previous[handle];
+        int after = next[handle];
+        if(before != NONE) {
+            next[before] = after;
+        }
+        else {
+            head[square[handle]] = after;
+        }
+        if(after != NONE) {
+            previous[after] = before;
+        }
+    }
+}
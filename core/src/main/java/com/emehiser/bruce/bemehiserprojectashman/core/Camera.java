@@ -0,0 +1,89 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * The part of the maze that is on screen, in squares.
+ * Has ability to follow a point, usually ashman, without showing past the maze edges.
+ * Has ability to tell you which chunks and movers are on screen.
+ *
+ * A maze smaller than the view is shown whole, from its top left corner.
+ */
+public class Camera {
+
+    // most squares shown at once
+    private final int viewWidth;
+    private final int viewHeight;
+
+    // size of the maze being shown
+    private int mazeWidth;
+    private int mazeHeight;
+
+    // top left of the view, in squares
+    private float left;
+    private float top;
+
+    public Camera(int viewWidth, int viewHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        mazeWidth = viewWidth;
+        mazeHeight = viewHeight;
+    }
+
+    // center the view on the point, as far as the maze edges allow
+    public void follow(float x, float y, int width, int height) {
+        mazeWidth = width;
+        mazeHeight = height;
+        left = clamp(x - getWidth() / 2f, width - getWidth());
+        top = clamp(y - getHeight() / 2f, height - getHeight());
+    }
+
+    private static float clamp(float value, float max) {
+        return value < 0 || max <= 0 ? 0 : value > max ? max : value;
+    }
+
+    // tells you if the maze is bigger than the view, so the view scrolls
+    public boolean isScrolling() {
+        return mazeWidth > viewWidth || mazeHeight > viewHeight;
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    // squares across the view, no more than the maze has
+    public int getWidth() {
+        return Math.min(viewWidth, mazeWidth);
+    }
+
+    public int getHeight() {
+        return Math.min(viewHeight, mazeHeight);
+    }
+
+    // chunks the view touches, first and last inclusive, see MazeGrid.CHUNK_SIZE
+    public int getFirstChunkX() {
+        return (int) left >> MazeGrid.CHUNK_SHIFT;
+    }
+
+    public int getFirstChunkY() {
+        return (int) top >> MazeGrid.CHUNK_SHIFT;
+    }
+
+    public int getLastChunkX() {
+        return (Math.min((int) Math.ceil(left + getWidth()), mazeWidth) - 1) >> MazeGrid.CHUNK_SHIFT;
+    }
+
+    public int getLastChunkY() {
+        return (Math.min((int) Math.ceil(top + getHeight()), mazeHeight) - 1) >> MazeGrid.CHUNK_SHIFT;
+    }
+
+    // tells you if any of a circle is on screen
+    public boolean isVisible(float x, float y, float radius) {
+        return x + radius > left && x - radius < left + getWidth()
+                && y + radius > top && y - radius < top + getHeight();
+    }
+}
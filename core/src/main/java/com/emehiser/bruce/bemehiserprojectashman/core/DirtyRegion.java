@@ -0,0 +1,205 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * Collects the parts of the maze, in squares, that changed during a frame.
+ * Has ability to merge overlapping and touching rectangles as they are added.
+ * Has ability to count how many rectangles were added, merged, and issued to invalidate.
+ *
+ * A mover's box before and after a move nearly always overlap, so most
+ * rectangles merge into one already held. At most MAX_RECTS are kept; past
+ * that a new rectangle joins whichever one grows the least by taking it.
+ */
+public class DirtyRegion {
+
+    // most rectangles held at once
+    public static final int MAX_RECTS = 8;
+
+    // the rectangles, as square edges, so a single square x, y is x, y, x + 1, y + 1
+    private final int[] left;
+    private final int[] top;
+    private final int[] right;
+    private final int[] bottom;
+    private int rectCount;
+
+    // rectangles added, and how many of them were merged into another
+    private long addedCount;
+    private long mergedCount;
+    // rectangles handed on to invalidate, see issued()
+    private long issuedCount;
+
+    public DirtyRegion() {
+        left = new int[MAX_RECTS];
+        top = new int[MAX_RECTS];
+        right = new int[MAX_RECTS];
+        bottom = new int[MAX_RECTS];
+    }
+
+    // add a changed rectangle, merging it with the ones it overlaps or touches
+    public void add(int l, int t, int r, int b) {
+
+        addedCount ++;
+
+        // grow the first rectangle it touches, then fold in any that now touch that one
+        for(int i = 0; i < rectCount; i ++) {
+            if(touches(i, l, t, r, b)) {
+                mergedCount ++;
+                union(i, l, t, r, b);
+                foldInto(i);
+                return;
+            }
+        }
+
+        // room for one more
+        if(rectCount < MAX_RECTS) {
+            left[rectCount] = l;
+            top[rectCount] = t;
+            right[rectCount] = r;
+            bottom[rectCount] = b;
+            rectCount ++;
+            return;
+        }
+
+        // full, so join the rectangle that grows the least
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for(int i = 0; i < rectCount; i ++) {
+            long growth = area(Math.min(left[i], l), Math.min(top[i], t), Math.max(right[i], r), Math.max(bottom[i], b))
+                    - area(left[i], top[i], right[i], bottom[i]);
+            if(growth < bestGrowth) {
+                bestGrowth = growth;
+                best = i;
+            }
+        }
+        mergedCount ++;
+        union(best, l, t, r, b);
+        foldInto(best);
+    }
+
+    // merge every other rectangle that touches rectangle i into it, until none do
+    private void foldInto(int i) {
+        boolean merged = true;
+        while(merged) {
+            merged = false;
+            for(int j = 0; j < rectCount; j ++) {
+                if(j != i && touches(i, left[j], top[j], right[j], bottom[j])) {
+                    union(i, left[j], top[j], right[j], bottom[j]);
+                    // move the last rectangle into the gap
+                    rectCount --;
+                    left[j] = left[rectCount];
+                    top[j] = top[rectCount];
+                    right[j] = right[rectCount];
+                    bottom[j] = bottom[rectCount];
+                    if(i == rectCount) {
+                        i = j;
+                    }
+                    merged = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    // overlapping, or sharing an edge
+    private boolean touches(int i, int l, int t, int r, int b) {
+        return l <= right[i] && r >= left[i]
+                && t <= bottom[i] && b >= top[i];
+    }
+
+    private void union(int i, int l, int t, int r, int b) {
+        left[i] = Math.min(left[i], l);
+        top[i] = Math.min(top[i], t);
+        right[i] = Math.max(right[i], r);
+        bottom[i] = Math.max(bottom[i], b);
+    }
+
+    private static long area(int l, int t, int r, int b) {
+        return (long) (r - l) * (b - t);
+    }
+
+    public boolean isEmpty() {
+        return rectCount == 0;
+    }
+
+    // remove every rectangle, the counters are kept
+    public void clear() {
+        rectCount = 0;
+    }
+
+    // note that the region was handed on, each of its rectangles an invalidate
+    public void issued() {
+        issuedCount += rectCount;
+    }
+
+    // take back rectangles counted by issued() that never reached invalidate,
+    // because the region they were in was replaced before it was drawn
+    public void withdrawn(int rects) {
+        issuedCount -= rects;
+    }
+
+    public int getRectCount() {
+        return rectCount;
+    }
+
+    public int getLeft(int i) {
+        return left[i];
+    }
+
+    public int getTop(int i) {
+        return top[i];
+    }
+
+    public int getRight(int i) {
+        return right[i];
+    }
+
+    public int getBottom(int i) {
+        return bottom[i];
+    }
+
+    // the box around every rectangle. Only meaningful when not empty
+    public int getBoundsLeft() {
+        int value = Integer.MAX_VALUE;
+        for(int i = 0; i < rectCount; i ++) {
+            value = Math.min(value, left[i]);
+        }
+        return value;
+    }
+
+    public int getBoundsTop() {
+        int value = Integer.MAX_VALUE;
+        for(int i = 0; i < rectCount; i ++) {
+            value = Math.min(value, top[i]);
+        }
+        return value;
+    }
+
+    public int getBoundsRight() {
+        int value = Integer.MIN_VALUE;
+        for(int i = 0; i < rectCount; i ++) {
+            value = Math.max(value, right[i]);
+        }
+        return value;
+    }
+
+    public int getBoundsBottom() {
+        int value = Integer.MIN_VALUE;
+        for(int i = 0; i < rectCount; i ++) {
+            value = Math.max(value, bottom[i]);
+        }
+        return value;
+    }
+
+    public long getAddedCount() {
+        return addedCount;
+    }
+
+    public long getMergedCount() {
+        return mergedCount;
+    }
+
+    public long getIssuedCount() {
+        return issuedCount;
+    }
+}
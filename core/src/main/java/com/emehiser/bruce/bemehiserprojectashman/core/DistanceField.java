@@ -0,0 +1,161 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Ashman Game
+ *
+ * How many squares each square of the maze is from ashman, walking.
+ * Has ability to update itself when ashman moves into another square.
+ * Has ability to tell a ghost which way is toward ashman, with one look at its neighbours.
+ *
+ * There is one field for the whole game, shared by every ghost. It is found
+ * with a breadth first search out from ashman's square over the walkable
+ * table, and only searched again when ashman changes squares or the walls
+ * change. Between searches a ghost's choice is four array reads, so the cost
+ * of chasing is the same however many ghosts there are.
+ *
+ * Mazes past Game.CHASE_FIELD_MAX_SQUARES don't use this field, a search over
+ * every square is too slow for them. They still share one field across every
+ * ghost, the pathfinder's, found over its clusters instead of its squares.
+ */
+public class DistanceField {
+
+    // distance of a square ashman can't be reached from, and of solid squares
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    // the maze the field was searched over, and its walls at the time
+    private MazeGrid grid;
+    private long wallVersion;
+
+    // flat index of the square the field was searched from, -1 before the first search
+    private int target = -1;
+
+    // walking distance to the target for every flat index, border included
+    private int[] distances = new int[0];
+    // flat indexes waiting to be searched, reused by every search
+    private int[] queue = new int[0];
+
+    // number of searches, for tests and benchmarks
+    private int searchCount;
+
+    // search again if the point is in another square than last time, or the maze changed.
+    // Returns true if it searched
+    public boolean update(MazeGrid mazeGrid, float x, float y) {
+
+        int square = mazeGrid.isOpenAt(x, y) ? mazeGrid.index((int) x, (int) y) : -1;
+        if(mazeGrid == grid && mazeGrid.getWallVersion() == wallVersion && square == target) {
+            return false;
+        }
+
+        if(mazeGrid != grid) {
+            int squares = mazeGrid.getStride() * (mazeGrid.getHeight() + 2 * MazeGrid.DRAWING_BORDER);
+            if(distances.length != squares) {
+                distances = new int[squares];
+                queue = new int[squares];
+            }
+            grid = mazeGrid;
+        }
+        wallVersion = mazeGrid.getWallVersion();
+        target = square;
+        search();
+        return true;
+    }
+
+    // breadth first out from the target, every open square is in the queue at most once
+    private void search() {
+
+        searchCount ++;
+        Arrays.fill(distances, UNREACHED);
+        if(target < 0) {
+            return;
+        }
+
+        int stride = grid.getStride();
+        int head = 0;
+        int tail = 0;
+        distances[target] = 0;
+        queue[tail ++] = target;
+        while(head < tail) {
+            int index = queue[head ++];
+            int next = distances[index] + 1;
+            int bits = grid.walkableBits(index);
+            if((bits & MazeGrid.WALK_UP) != 0 && distances[index - stride] == UNREACHED) {
+                distances[index - stride] = next;
+                queue[tail ++] = index - stride;
+            }
+            if((bits & MazeGrid.WALK_DOWN) != 0 && distances[index + stride] == UNREACHED) {
+                distances[index + stride] = next;
+                queue[tail ++] = index + stride;
+            }
+            if((bits & MazeGrid.WALK_LEFT) != 0 && distances[index - 1] == UNREACHED) {
+                distances[index - 1] = next;
+                queue[tail ++] = index - 1;
+            }
+            if((bits & MazeGrid.WALK_RIGHT) != 0 && distances[index + 1] == UNREACHED) {
+                distances[index + 1] = next;
+                queue[tail ++] = index + 1;
+            }
+        }
+    }
+
+    public int getSearchCount() {
+        return searchCount;
+    }
+
+    // walking distance from the square to ashman, or UNREACHED
+    public int getDistance(int x, int y) {
+        if(grid == null) {
+            return UNREACHED;
+        }
+        if(x < 0 || x >= grid.getWidth() || y < 0 || y >= grid.getHeight()) {
+            throw new IndexOutOfBoundsException("Square is outside of the maze: " + x + ", " + y);
+        }
+        return distances[grid.index(x, y)];
+    }
+
+    // walking distance from the square at the flat index to ashman. Not checked
+    public int distanceAt(int index) {
+        return distances[index];
+    }
+
+    // the way to step from the square at the flat index to get closer to ashman, a random
+    // one of them when there are several. Mover.STOPPED if already there, or ashman can't be reached
+    public int toward(int index, Random random) {
+
+        int best = distances[index];
+        if(best == UNREACHED || best == 0) {
+            return Mover.STOPPED;
+        }
+
+        // every neighbour of a reached square is either one nearer, level, or one further
+        int stride = grid.getStride();
+        int direction = Mover.STOPPED;
+        int ties = 0;
+        for(int way = Mover.UP; way <= Mover.RIGHT; way ++) {
+            int neighbour;
+            switch (way) {
+                case Mover.UP:
+                    neighbour = index - stride;
+                    break;
+                case Mover.DOWN:
+                    neighbour = index + stride;
+                    break;
+                case Mover.LEFT:
+                    neighbour = index - 1;
+                    break;
+                default:
+                    neighbour = index + 1;
+            }
+            if(distances[neighbour] == best - 1) {
+                // keep each of the nearer neighbours with the same chance
+                ties ++;
+                if(ties == 1 || random.nextInt(ties) == 0) {
+                    direction = way;
+                }
+            }
+        }
+        return direction;
+    }
+}
@@ -0,0 +1,52 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * 16.16 fixed point numbers, for mover coordinates in fixed point mode.
+ * Has ability to convert to and from floats.
+ * Has ability to find the square a coordinate is in with one shift.
+ *
+ * A coordinate is an int, the square in the high 16 bits and the way across
+ * the square in the low 16. Movers only ever add, compare and shift them, so
+ * a game in fixed point plays out bit for bit the same on every device.
+ * The biggest maze is well inside the 15 bits left for the square.
+ */
+public final class FixedPoint {
+
+    // bits after the point
+    public static final int SHIFT = 16;
+    public static final int ONE = 1 << SHIFT;
+    public static final int HALF = ONE >> 1;
+    // the bits of the way across a square
+    public static final int FRACTION_MASK = ONE - 1;
+
+    private FixedPoint() {
+    }
+
+    // the nearest fixed point number to the float
+    public static int fromFloat(float value) {
+        return (int) Math.round((double) value * ONE);
+    }
+
+    // the float nearest the fixed point number, in the same square. On big mazes the nearest
+    // float can round up into the next square, then it is the last float before that square
+    public static float toFloat(int fixed) {
+        float value = (float) ((double) fixed / ONE);
+        int square = fixed >> SHIFT;
+        if(value >= square + 1) {
+            value = Math.nextAfter((float) (square + 1), Double.NEGATIVE_INFINITY);
+        }
+        return value;
+    }
+
+    // the square the coordinate is in, rounding down below 0 too
+    public static int square(int fixed) {
+        return fixed >> SHIFT;
+    }
+
+    // the middle of the square the coordinate is in
+    public static int center(int fixed) {
+        return (fixed & ~FRACTION_MASK) + HALF;
+    }
+}
@@ -0,0 +1,548 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidParameterException;
+import java.util.Random;
+
+/*
+ * Ashman Game
+ *
+ * Contains the state of the game simulation.
+ * Hold references to the maze grid and all movers.
+ * Has ability to advance the game one tick.
+ * Has ability to move Ashman based on user commands.
+ * Has ability to queue user commands from another thread for the next tick.
+ * Has ability to time each phase of a tick, see TickProfiler.
+ *
+ * Contains no android code. Anything the user should see or hear is
+ * reported through the GameListener.
+ *
+ * A level plays out the same every time from the same seed and inputs.
+ * All randomness comes from the game's one seeded Random, and every input
+ * goes through input, which records it in the InputLog with the tick it
+ * was given before. See Replay.
+ *
+ * Movers can move in 16.16 fixed point instead of floats, see
+ * setFixedPoint. Then every step, turn and collision is integer math, and
+ * a recording plays back the same on any device.
+ *
+ * Once a level is prepared, a tick allocates nothing. Everything a tick uses
+ * is sized when the level is loaded and reused, so a long session never
+ * makes garbage to collect. TickAllocationTest holds the game to that.
+ */
+public class Game {
+
+    // number of animations/second
+    public static final int ANIMATIONS_PER_SECOND = 15;
+    // game time that passes in one animation
+    public static final float SECONDS_PER_TICK = 1f / ANIMATIONS_PER_SECOND;
+
+    // win or loss
+    public static final int GAME_WIN = 0;
+    public static final int GAME_LOSS = 1;
+
+    // the highest level in the game
+    public static final int LEVEL_COUNT = 2;
+
+    // handle ashman gets when there is no ashman
+    public static final int NO_MOVER = -1;
+
+    // the state hash is 64 bit FNV-1a
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // mazes with more squares than this chase by the pathfinder's chase field, searched over
+    // clusters, instead of searching the whole maze every time ashman moves a square. Either
+    // way there is one field per ashman square, shared by every ghost
+    public static final int CHASE_FIELD_MAX_SQUARES = 128 * 128;
+
+    // where ashman and the ghosts start, unless the level says otherwise
+    public static final float ASHMAN_START_X = .5f;
+    public static final float ASHMAN_START_Y = .5f;
+    public static final float GHOST_START_X = 1.5f;
+    public static final float GHOST_START_Y = 13.5f;
+
+    // the maze grid, replaced with every level
+    private MazeGrid grid;
+
+    // state of all movers, and the behaviour for each kind of mover
+    private final MoverStore movers;
+    private final Mover[] behaviours;
+
+    // movers bucketed by maze square, for collisions
+    private Broadphase broadphase;
+
+    // walking distance to ashman, shared by every chasing ghost
+    private final DistanceField chaseField;
+
+    // the maze's junctions and the corridors between them
+    private final JunctionGraph junctionGraph;
+
+    // paths over clusters of squares, for mazes too big for the chase field
+    private final HierarchicalPathfinder pathfinder;
+
+    // parts of the maze that changed since the last snapshot was published, see SnapshotBuffer
+    private final DirtyRegion dirtyRegion;
+
+    // how long each phase of a tick takes
+    private final TickProfiler profiler;
+
+    // ashman handle so ashman can be controlled from without
+    private int ashman;
+
+    // receives game events
+    private final GameListener listener;
+
+    // current level
+    private int currentLevel;
+
+    // the only randomness in the game, seeded when the level is prepared
+    private final Random random;
+    private long seed;
+
+    // inputs from the ui thread, taken at the start of the next tick
+    private final InputQueue inputQueue;
+
+    // the inputs given since the level was prepared, and how it ended
+    private final InputLog inputLog;
+    // the game ended during the current tick
+    private boolean ended;
+
+    // number of ticks run since the level was prepared
+    private long tickCount;
+
+    public Game(GameListener listener) {
+
+        if(listener == null) {
+            throw new NullPointerException("Game listener is null");
+        }
+        this.listener = listener;
+
+        grid = new MazeGrid();
+
+        // create movers and their behaviours
+        movers = new MoverStore();
+        behaviours = new Mover[MoverStore.KIND_COUNT];
+        behaviours[MoverStore.KIND_ASHMAN] = new Ashman();
+        behaviours[MoverStore.KIND_GHOST] = new Ghost();
+        broadphase = new Broadphase(grid.getWidth(), grid.getHeight());
+        random = new Random();
+        inputQueue = new InputQueue();
+        inputLog = new InputLog();
+        chaseField = new DistanceField();
+        junctionGraph = new JunctionGraph();
+        pathfinder = new HierarchicalPathfinder();
+        dirtyRegion = new DirtyRegion();
+        profiler = new TickProfiler();
+        ashman = NO_MOVER;
+    }
+
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    public int getCakeCount() {
+        return grid.getCakeCount();
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    // every mover, by handle in the order they are animated
+    public MoverStore getMovers() {
+        return movers;
+    }
+
+    public int getAshman() {
+        return ashman;
+    }
+
+    // where movers have choices to make, built when the level is prepared
+    public JunctionGraph getJunctionGraph() {
+        return junctionGraph;
+    }
+
+    // how far every square is from ashman, for the ghosts to chase him by.
+    // Only kept up to date on mazes that don't use the pathfinder
+    public DistanceField getChaseField() {
+        return chaseField;
+    }
+
+    // paths across the maze. Only kept up to date on mazes that use it
+    public HierarchicalPathfinder getPathfinder() {
+        return pathfinder;
+    }
+
+    // tells you if ghosts chase by the pathfinder's chase field instead of the game's
+    public boolean usesPathfinder() {
+        return grid.getWidth() * grid.getHeight() > CHASE_FIELD_MAX_SQUARES;
+    }
+
+    // times of each phase of the tick, and of drawing it for front ends that record them
+    public TickProfiler getProfiler() {
+        return profiler;
+    }
+
+    // the seed the current level was prepared with
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isFixedPoint() {
+        return movers.isFixedPoint();
+    }
+
+    // move in 16.16 fixed point or in floats. Set it before preparing a level, the
+    // recording of the level remembers which it was played in
+    public void setFixedPoint(boolean fixedPoint) {
+        movers.setFixedPoint(fixedPoint);
+    }
+
+    // the game's randomness. Nothing else random may be used, or replays won't match
+    public Random getRandom() {
+        return random;
+    }
+
+    // every input given since the level was prepared
+    public InputLog getInputLog() {
+        return inputLog;
+    }
+
+    // the way for a mover at the flat index to go toward ashman, a random one of
+    // the best ways if there are several. Mover.STOPPED if ashman can't be reached
+    public int chase(int index) {
+        if(ashman == NO_MOVER) {
+            return Mover.STOPPED;
+        }
+        if(! usesPathfinder()) {
+            return chaseField.toward(index, random);
+        }
+        return pathfinder.toward(index, random);
+    }
+
+    // load the appropriate ghosts and maze for the specified level
+    public void prepareGame(int level, InputStream levelStream) throws IOException {
+
+        // if the level is not valid for this game
+        if(level < 1 || level > LEVEL_COUNT) {
+            throw new InvalidParameterException("Not a valid level: " + level);
+        }
+
+        // load level maze
+        MazeGrid levelGrid = new MazeGrid();
+        levelGrid.load(levelStream);
+        validateLevel(levelGrid);
+        prepareGame(level, levelGrid);
+    }
+
+    // set up the specified level on a maze that is already loaded, see LevelLoader
+    public void prepareGame(int level, MazeGrid levelGrid) {
+        prepareGame(level, levelGrid, System.nanoTime());
+    }
+
+    // set up the specified level, with the seed for everything random in it. Call it while
+    // no tick is running, from the thread that gives queued inputs, or the game thread
+    public void prepareGame(int level, MazeGrid levelGrid, long levelSeed) {
+
+        // if the level is not valid for this game
+        if(level < 1 || level > LEVEL_COUNT) {
+            throw new InvalidParameterException("Not a valid level: " + level);
+        }
+
+        // the level's maze, and buckets to match its size
+        grid = levelGrid;
+        if(broadphase.getWidth() != grid.getWidth() || broadphase.getHeight() != grid.getHeight()) {
+            broadphase = new Broadphase(grid.getWidth(), grid.getHeight());
+        }
+        // compress the maze into junctions, corridors and clusters once, instead of every tick
+        junctionGraph.update(grid);
+        if(usesPathfinder()) {
+            pathfinder.update(grid);
+        }
+
+        // set the current level variable
+        currentLevel = level;
+        tickCount = 0;
+
+        // the same seed and inputs play the same game
+        seed = levelSeed;
+        random.setSeed(levelSeed);
+        inputLog.start(level, levelSeed, movers.fixedPoint);
+        ended = false;
+        // inputs given for the last level are not for this one. Thrown away from the giving
+        // side, since that is the thread a front end resets the game on, and the game thread
+        // drops them on its next tick
+        inputQueue.discard();
+
+        // clear the movers and ashman (if any)
+        clearMovers();
+        dirtyRegion.clear();
+
+        int ghostCountThisLevel = 0;
+        float ghostSpeedThisLevel = 0;
+
+        switch (level) {
+            case 1:
+                ghostCountThisLevel = 3;
+                ghostSpeedThisLevel = .6f;
+                break;
+            case 2:
+                ghostCountThisLevel = 5;
+                ghostSpeedThisLevel = 1f;
+                break;
+        }
+
+        // add an ashman to the maze
+        addAshman(grid.getAshmanStartX(), grid.getAshmanStartY(), 1f);
+
+        // add a ghosts to the maze
+        for(int i = 0; i < ghostCountThisLevel; i ++) {
+            addGhost(grid.getGhostStartX(), grid.getGhostStartY(), ghostSpeedThisLevel);
+        }
+
+        // size the chase field for this maze now, so no tick allocates
+        updateChaseField();
+    }
+
+    // make sure a loaded maze can be played, ashman and the ghosts need somewhere to start,
+    // and there has to be a cake to win
+    public static void validateLevel(MazeGrid levelGrid) {
+
+        if(! levelGrid.isOpenAt(levelGrid.getAshmanStartX(), levelGrid.getAshmanStartY())) {
+            throw new InvalidParameterException("Ashman starts in a solid square");
+        }
+        if(! levelGrid.isOpenAt(levelGrid.getGhostStartX(), levelGrid.getGhostStartY())) {
+            throw new InvalidParameterException("Ghosts start in a solid square");
+        }
+        if(levelGrid.getCakeCount() == 0) {
+            throw new InvalidParameterException("Level has no cakes");
+        }
+    }
+
+    // advance the game by one animation
+    public void tick() {
+        long start = profiler.mark();
+        // inputs queued since the last tick are given before it, never during it
+        takeQueuedInputs();
+        long mark = profiler.lap(TickProfiler.PHASE_INPUT, start);
+        tickCount ++;
+        // remember where movers were, so the renderer can draw between ticks
+        movers.savePositions();
+        // the walls or ashman may have changed since the last tick
+        junctionGraph.update(grid);
+        if(usesPathfinder()) {
+            pathfinder.update(grid);
+        }
+        updateChaseField();
+        mark = profiler.lap(TickProfiler.PHASE_PATHS, mark);
+        // call to movers to animate
+        animateMovers();
+        profiler.lap(TickProfiler.PHASE_MOVERS, mark);
+        profiler.lap(TickProfiler.PHASE_TICK, start);
+        // check for game win
+        if(grid.getCakeCount() == 0) {
+            endGame(GAME_WIN);
+        }
+        // remember how the level ended, for replays to check against
+        if(ended) {
+            finishRecording();
+        }
+    }
+
+    private void animateMovers() {
+        // moveMover all the movers, in handle order
+        byte[] kind = movers.kind;
+        for(int handle = 0; handle < movers.count; handle ++) {
+            behaviours[kind[handle]].move(this, handle);
+        }
+    }
+
+    // move one mover a step in the direction, outside of its turn
+    public void moveMover(int handle, int direction) {
+
+        // check for a mover
+        if(handle < 0 || handle >= movers.count) {
+            throw new IndexOutOfBoundsException("Mover has not been added: " + handle);
+        }
+        behaviours[movers.kind[handle]].move(this, handle, direction);
+    }
+
+    public void moveAshman(int direction) {
+        input(direction);
+    }
+
+    // give a user input from any one thread, like the ui thread, without waiting for the
+    // game thread. It is taken at the start of the next tick. Returns false if it was dropped
+    public boolean queueInput(int input) {
+        checkInput(input);
+        return inputQueue.offer(input);
+    }
+
+    private void takeQueuedInputs() {
+        int input;
+        while((input = inputQueue.poll()) != InputQueue.NO_INPUT) {
+            input(input);
+        }
+    }
+
+    // take a user input, a Mover direction for ashman, or InputLog.INPUT_CHEAT. Recorded
+    // with the tick count, so give it between ticks on the game thread.
+    // A direction is a turn for ashman to take on the first tick the way is open,
+    // except Mover.STOPPED, which stops him now
+    public void input(int input) {
+
+        checkInput(input);
+        if(! inputLog.isFinished()) {
+            inputLog.record(tickCount, input);
+        }
+        if(input == InputLog.INPUT_CHEAT) {
+            grid.chompAllButOneCake();
+            // cakes went from all over the maze
+            dirtyRegion.add(0, 0, grid.getWidth(), grid.getHeight());
+        }
+        else if(ashman != NO_MOVER) {
+            movers.turn[ashman] = input;
+            if(input == Mover.STOPPED) {
+                movers.direction[ashman] = Mover.STOPPED;
+            }
+        }
+    }
+
+    private static void checkInput(int input) {
+        if(input != InputLog.INPUT_CHEAT && (input < Mover.STOPPED || input > Mover.RIGHT)) {
+            throw new InvalidParameterException("Not an input: " + input);
+        }
+    }
+
+    // end the recording here, if the level didn't end by itself
+    public void finishRecording() {
+        if(! inputLog.isFinished()) {
+            inputLog.finish(tickCount, getStateHash());
+        }
+    }
+
+    // a hash of everything that decides how the game goes on, to tell two games apart
+    public long getStateHash() {
+
+        long hash = mix(FNV_OFFSET, tickCount);
+        hash = mix(hash, currentLevel);
+        hash = mix(hash, grid.getCakeCount());
+        for(long bits : grid.getCakeBits()) {
+            hash = mix(hash, bits);
+        }
+        hash = mix(hash, movers.count);
+        hash = mix(hash, movers.fixedPoint ? 1 : 0);
+        for(int handle = 0; handle < movers.count; handle ++) {
+            hash = mix(hash, movers.kind[handle]);
+            if(movers.fixedPoint) {
+                hash = mix(hash, movers.fixedX[handle]);
+                hash = mix(hash, movers.fixedY[handle]);
+            }
+            else {
+                hash = mix(hash, Float.floatToIntBits(movers.x[handle]));
+                hash = mix(hash, Float.floatToIntBits(movers.y[handle]));
+            }
+            hash = mix(hash, movers.direction[handle]);
+            hash = mix(hash, movers.turn[handle]);
+        }
+        return hash;
+    }
+
+    // 64 bit FNV-1a, a value at a time
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    // take every mover out of the maze, ashman too, to place others with addAshman and addGhost
+    public void clearMovers() {
+        movers.clear();
+        broadphase.clear();
+        ashman = NO_MOVER;
+    }
+
+    // add ashman, and return his handle
+    public int addAshman(float x, float y, float speed) {
+        ashman = addMover(MoverStore.KIND_ASHMAN, x, y, speed);
+        return ashman;
+    }
+
+    // add a ghost, and return its handle
+    public int addGhost(float x, float y, float speed) {
+        return addMover(MoverStore.KIND_GHOST, x, y, speed);
+    }
+
+    private int addMover(byte kind, float x, float y, float speed) {
+        int handle = movers.add(kind, x, y, speed);
+        broadphase.insert(handle, x, y, movers.radius[handle]);
+        return handle;
+    }
+
+    // a mover changed location
+    void moverMoved(int handle) {
+        broadphase.update(handle, movers.x[handle], movers.y[handle]);
+        // ghosts later in the tick chase where ashman is now
+        if(handle == ashman) {
+            updateChaseField();
+        }
+    }
+
+    // search the distances again, only if ashman is in a new square or the walls changed
+    private void updateChaseField() {
+        if(ashman == NO_MOVER) {
+            return;
+        }
+        if(usesPathfinder()) {
+            pathfinder.updateGoal(movers.x[ashman], movers.y[ashman]);
+        }
+        else {
+            chaseField.update(grid, movers.x[ashman], movers.y[ashman]);
+        }
+    }
+
+    // ends the game with a win or a loss
+    public void endGame(int outcome) {
+
+        // magic numbers
+        if(outcome != GAME_WIN && outcome != GAME_LOSS) {
+            throw new InvalidParameterException("invalid end game code " + outcome);
+        }
+        ended = true;
+        listener.onGameEnd(outcome);
+    }
+
+    // removes cake in square
+    public void chompCake(float x, float y) {
+        if(grid.chompCake(x, y)) {
+            // the square the cake was in
+            dirtyRegion.add((int) x, (int) y, (int) x + 1, (int) y + 1);
+            listener.onCakeChomped();
+        }
+    }
+
+    // cheat, removes all but one cake
+    public void chompAllButOneCake() {
+        input(InputLog.INPUT_CHEAT);
+    }
+
+    // region of the maze, in squares, that has changed. Held until the next snapshot is published
+    void invalidate(int left, int top, int right, int bottom) {
+        dirtyRegion.add(left, top, right, bottom);
+    }
+
+    // what changed since the last snapshot was published, and counters of how it was merged
+    public DirtyRegion getDirtyRegion() {
+        return dirtyRegion;
+    }
+
+    // tells you if the mover collides with any of the other movers, except for itself
+    public boolean collision(int handle) {
+        // only movers in neighbouring squares can touch
+        return broadphase.collision(movers, handle);
+    }
+}
@@ -0,0 +1,16 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * Receives the events the game simulation produces, so that the
+ * front end can draw, play sounds, and show messages.
+ */
+public interface GameListener {
+
+    // a cake was eaten by ashman
+    void onCakeChomped();
+
+    // the game ended with Game.GAME_WIN or Game.GAME_LOSS
+    void onGameEnd(int outcome);
+}
@@ -0,0 +1,96 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * Fixed timestep clock for the game.
+ * Has ability to turn real elapsed time into whole game ticks.
+ * Has ability to tell the renderer how far it is between the last two ticks.
+ *
+ * Every tick is exactly Game.SECONDS_PER_TICK of game time, no matter how
+ * often advance is called, so game speed doesn't depend on the device.
+ */
+public class GameLoop {
+
+    // length of one tick in nanoseconds
+    public static final long NANOS_PER_TICK = 1000000000L / Game.ANIMATIONS_PER_SECOND;
+
+    // most ticks run in a single advance. If we fall further behind than this
+    // (debugger, the app was in the background) the extra time is dropped
+    // instead of running the game in a burst
+    public static final int MAX_TICKS_PER_ADVANCE = 5;
+
+    // the game we are ticking
+    private final Game game;
+
+    // time of the last advance, and the time not yet used up by a tick
+    private long lastNanos;
+    private long accumulatorNanos;
+
+    // the loop is running. Can be stopped from another thread
+    private volatile boolean running;
+
+    public GameLoop(Game game) {
+
+        if(game == null) {
+            throw new NullPointerException("Game is null");
+        }
+        this.game = game;
+    }
+
+    // start measuring time from now
+    public void start(long nowNanos) {
+        lastNanos = nowNanos;
+        accumulatorNanos = 0;
+        running = true;
+    }
+
+    // stop ticking, also safe to call from inside a tick
+    public void stop() {
+        running = false;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // run as many ticks as the time since the last advance calls for, and return how many ran
+    public int advance(long nowNanos) {
+
+        if(! running) {
+            return 0;
+        }
+
+        // add the elapsed time, ignoring clocks that go backwards
+        long elapsed = nowNanos - lastNanos;
+        lastNanos = nowNanos;
+        if(elapsed > 0) {
+            accumulatorNanos += elapsed;
+        }
+
+        int ticks = 0;
+        while(running && accumulatorNanos >= NANOS_PER_TICK && ticks < MAX_TICKS_PER_ADVANCE) {
+            game.tick();
+            accumulatorNanos -= NANOS_PER_TICK;
+            ticks ++;
+        }
+
+        // too far behind to catch up, drop the whole ticks we didn't run
+        if(accumulatorNanos >= NANOS_PER_TICK) {
+            game.getProfiler().addDroppedTicks(accumulatorNanos / NANOS_PER_TICK);
+            accumulatorNanos %= NANOS_PER_TICK;
+        }
+
+        return ticks;
+    }
+
+    // time left until the next tick is due
+    public long getNanosUntilNextTick() {
+        return NANOS_PER_TICK - accumulatorNanos;
+    }
+
+    // how far we are from the last tick to the next one, between 0 and 1
+    public float getAlpha() {
+        return (float) accumulatorNanos / NANOS_PER_TICK;
+    }
+}
@@ -0,0 +1,166 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.Arrays;
+
+/*
+ * Ashman Game
+ *
+ * A copy of everything the renderer needs to draw one frame, kept in
+ * primitive arrays. Snapshots are reused, and only grow when a level
+ * has more movers than any level before it, so capturing one doesn't
+ * allocate.
+ *
+ * Fields are only read by the thread that owns the snapshot, see SnapshotBuffer.
+ */
+public class GameSnapshot {
+
+    // kinds of movers
+    public static final byte KIND_ASHMAN = MoverStore.KIND_ASHMAN;
+    public static final byte KIND_GHOST = MoverStore.KIND_GHOST;
+
+    // movers, by index in the order they are animated
+    public int moverCount;
+    public float[] x;
+    public float[] y;
+    public float[] previousX;
+    public float[] previousY;
+    public float[] radius;
+    public int[] direction;
+    public byte[] kind;
+    // index of ashman, or Game.NO_MOVER
+    public int ashman;
+
+    // maze values, row by row, width wide
+    public int width;
+    public int height;
+    public byte[] cells;
+    // maze version the cells were copied from, see MazeGrid.getVersion()
+    public long mazeVersion;
+    // chunks of the maze, and the version each was copied from, see MazeGrid.getChunkVersion()
+    public int chunksAcross;
+    public int chunksDown;
+    public long[] chunkVersions;
+
+    // the rectangles, in squares, that changed in the ticks since the last snapshot, see DirtyRegion
+    public int dirtyCount;
+    public final int[] dirtyLeft = new int[DirtyRegion.MAX_RECTS];
+    public final int[] dirtyTop = new int[DirtyRegion.MAX_RECTS];
+    public final int[] dirtyRight = new int[DirtyRegion.MAX_RECTS];
+    public final int[] dirtyBottom = new int[DirtyRegion.MAX_RECTS];
+
+    // game state for the hud
+    public int cakeCount;
+    public int currentLevel;
+    public long tickCount;
+
+    // when the snapshot was taken, for drawing between ticks
+    public long captureNanos;
+
+    // set by the writer when published, cleared by the reader when taken
+    volatile boolean fresh;
+
+    public GameSnapshot() {
+        mazeVersion = -1;
+        ensureCapacity(8);
+        ensureCells(new MazeGrid());
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(x != null && x.length >= capacity) {
+            return;
+        }
+        x = new float[capacity];
+        y = new float[capacity];
+        previousX = new float[capacity];
+        previousY = new float[capacity];
+        radius = new float[capacity];
+        direction = new int[capacity];
+        kind = new byte[capacity];
+    }
+
+    // room for the cells of a maze the size of the grid, with every chunk out of date
+    private void ensureCells(MazeGrid grid) {
+        width = grid.getWidth();
+        height = grid.getHeight();
+        chunksAcross = grid.getChunksAcross();
+        chunksDown = grid.getChunksDown();
+        if(cells == null || cells.length < width * height) {
+            cells = new byte[width * height];
+        }
+        if(chunkVersions == null || chunkVersions.length < chunksAcross * chunksDown) {
+            chunkVersions = new long[chunksAcross * chunksDown];
+        }
+        Arrays.fill(chunkVersions, -1);
+        mazeVersion = -1;
+    }
+
+    // copy the state of the game into this snapshot
+    void capture(Game game, long nowNanos) {
+
+        MoverStore movers = game.getMovers();
+        int count = movers.count;
+        ensureCapacity(count);
+
+        // the store is already in arrays, so this is a straight copy
+        System.arraycopy(movers.x, 0, x, 0, count);
+        System.arraycopy(movers.y, 0, y, 0, count);
+        System.arraycopy(movers.previousX, 0, previousX, 0, count);
+        System.arraycopy(movers.previousY, 0, previousY, 0, count);
+        System.arraycopy(movers.radius, 0, radius, 0, count);
+        System.arraycopy(movers.direction, 0, direction, 0, count);
+        System.arraycopy(movers.kind, 0, kind, 0, count);
+        moverCount = count;
+        ashman = game.getAshman();
+
+        // the maze only changes when a cake is chomped, so only copy the chunks that changed
+        MazeGrid grid = game.getGrid();
+        if(width != grid.getWidth() || height != grid.getHeight()) {
+            ensureCells(grid);
+        }
+        if(mazeVersion != grid.getVersion()) {
+            int chunks = chunksAcross * chunksDown;
+            for(int chunk = 0; chunk < chunks; chunk ++) {
+                long chunkVersion = grid.getChunkVersion(chunk);
+                if(chunkVersions[chunk] != chunkVersion) {
+                    grid.copyChunk(chunk, cells);
+                    chunkVersions[chunk] = chunkVersion;
+                }
+            }
+            mazeVersion = grid.getVersion();
+        }
+        DirtyRegion dirtyRegion = game.getDirtyRegion();
+        dirtyCount = dirtyRegion.getRectCount();
+        for(int i = 0; i < dirtyCount; i ++) {
+            dirtyLeft[i] = dirtyRegion.getLeft(i);
+            dirtyTop[i] = dirtyRegion.getTop(i);
+            dirtyRight[i] = dirtyRegion.getRight(i);
+            dirtyBottom[i] = dirtyRegion.getBottom(i);
+        }
+
+        cakeCount = game.getCakeCount();
+        currentLevel = game.getCurrentLevel();
+        tickCount = game.getTickCount();
+        captureNanos = nowNanos;
+    }
+
+    // value of the maze square
+    public int getCell(int x, int y) {
+        return cells[y * width + x];
+    }
+
+    // mover x location between the last two ticks, alpha goes from 0 to 1
+    public float getInterpolatedX(int index, float alpha) {
+        return previousX[index] + (x[index] - previousX[index]) * alpha;
+    }
+
+    // mover y location between the last two ticks, alpha goes from 0 to 1
+    public float getInterpolatedY(int index, float alpha) {
+        return previousY[index] + (y[index] - previousY[index]) * alpha;
+    }
+
+    // how far from this snapshot to the next tick we are now, between 0 and 1
+    public float getAlpha(long nowNanos) {
+        float alpha = (float) (nowNanos - captureNanos) / GameLoop.NANOS_PER_TICK;
+        return alpha < 0 ? 0 : alpha > 1 ? 1 : alpha;
+    }
+}
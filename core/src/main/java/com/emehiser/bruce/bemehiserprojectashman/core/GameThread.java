@@ -0,0 +1,180 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Ashman Game
+ *
+ * Runs the game loop on its own thread.
+ * Has ability to start, pause, resume, and quit.
+ * Has ability to run actions on the game thread between ticks.
+ * Has ability to tell the front end when a finished frame is ready.
+ * Has ability to hand finished frames to the renderer without locking.
+ *
+ * While the thread is running, the game must only be changed on the game
+ * thread (through invokeLater), or while the thread is paused. User input
+ * doesn't need either, see Game.queueInput.
+ */
+public class GameThread implements Runnable {
+
+    // told when a tick has finished, on the game thread
+    public interface FrameListener {
+        void onFrameReady();
+    }
+
+    // the game, and the clock that ticks it
+    private final Game game;
+    private final GameLoop gameLoop;
+
+    // finished frames for the renderer
+    private final SnapshotBuffer snapshots;
+
+    // told about finished frames
+    private final FrameListener frameListener;
+
+    // actions waiting to run on the game thread
+    private final ConcurrentLinkedQueue<Runnable> actions;
+
+    // the thread itself, null until started
+    private Thread thread;
+
+    // thread state, guarded by this
+    private boolean paused;
+    private boolean quit;
+
+    public GameThread(Game game, FrameListener frameListener) {
+
+        if(frameListener == null) {
+            throw new NullPointerException("Frame listener is null");
+        }
+        this.game = game;
+        this.frameListener = frameListener;
+
+        gameLoop = new GameLoop(game);
+        snapshots = new SnapshotBuffer();
+        actions = new ConcurrentLinkedQueue<>();
+
+        // a new thread waits to be resumed
+        paused = true;
+    }
+
+    // start the thread, paused. Does nothing if it is already started
+    public synchronized void start() {
+        if(thread == null) {
+            quit = false;
+            paused = true;
+            thread = new Thread(this, "ashman-game");
+            thread.start();
+        }
+    }
+
+    // start ticking, with the clock starting now
+    public synchronized void resume() {
+        gameLoop.start(System.nanoTime());
+        paused = false;
+        notifyAll();
+    }
+
+    // stop ticking. Called from another thread, this waits for the current tick to finish
+    public synchronized void pause() {
+        paused = true;
+        gameLoop.stop();
+    }
+
+    // stop the thread and wait for it to end. It can be started again
+    public void quit() {
+
+        Thread stopping;
+        synchronized (this) {
+            quit = true;
+            paused = true;
+            gameLoop.stop();
+            stopping = thread;
+            thread = null;
+            notifyAll();
+        }
+
+        // wake it from sleep, and wait for it, unless we are it
+        if(stopping != null && stopping != Thread.currentThread()) {
+            stopping.interrupt();
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // run the action on the game thread before the next tick
+    public void invokeLater(Runnable action) {
+        actions.add(action);
+    }
+
+    // publish the current state of the game. For use while paused, when the
+    // game was changed from outside the game thread
+    public synchronized void publishFrame() {
+        snapshots.publish(game, System.nanoTime());
+    }
+
+    // set up the level and publish it, from the thread that gives queued inputs. The game
+    // is changed from outside the game thread, so it must be paused
+    public synchronized void prepareGame(int level, MazeGrid levelGrid) {
+        if(! paused) {
+            throw new IllegalStateException("Game thread is running, pause it first");
+        }
+        game.prepareGame(level, levelGrid);
+        snapshots.publish(game, System.nanoTime());
+    }
+
+    // the newest finished frame. Only call from the one thread that renders
+    public GameSnapshot acquireSnapshot() {
+        return snapshots.acquire();
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            while (true) {
+
+                long sleepNanos;
+                synchronized (this) {
+                    // wait to be resumed
+                    while (paused && ! quit) {
+                        wait();
+                    }
+                    if(quit) {
+                        return;
+                    }
+
+                    // run the actions queued since the last time through
+                    Runnable action;
+                    while((action = actions.poll()) != null) {
+                        action.run();
+                    }
+
+                    // run the ticks that are due, and publish the frame with
+                    // everything that changed in those ticks, see SnapshotBuffer
+                    long now = System.nanoTime();
+                    int ticks = gameLoop.advance(now);
+                    if(ticks > 0) {
+                        TickProfiler profiler = game.getProfiler();
+                        long mark = profiler.mark();
+                        snapshots.publish(game, now);
+                        frameListener.onFrameReady();
+                        profiler.lap(TickProfiler.PHASE_PUBLISH, mark);
+                    }
+
+                    sleepNanos = gameLoop.getNanosUntilNextTick();
+                }
+
+                // sleep outside the lock, so pause doesn't have to wait for it
+                if(sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                }
+            }
+        } catch (InterruptedException e) {
+            // quit interrupts us
+        }
+    }
+}
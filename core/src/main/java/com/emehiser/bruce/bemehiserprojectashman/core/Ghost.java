@@ -0,0 +1,70 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/**
+ * Created by Bruce Emehiser on 11/12/2015.
+ *
+ * Defines how the Ghosts move
+ *
+ * Ghosts chase ashman. A ghost only makes a choice in the middle of a
+ * junction, a node of the game's junction graph, where it turns toward
+ * ashman by the game's chase field, or its pathfinder on big mazes. Along a
+ * corridor it follows the corridor round its corners to the next junction.
+ * When ashman can't be reached, ghosts wander in random directions like
+ * they used to. Every random choice comes from the game's seeded Random.
+ */
+public class Ghost extends Mover {
+
+    @Override
+    public void move(Game game, int handle) {
+
+        MoverStore movers = game.getMovers();
+        int direction = movers.direction[handle];
+
+        if(nearCenter(movers, handle)) {
+            int index = game.getGrid().index(movers.getSquareX(handle), movers.getSquareY(handle));
+            JunctionGraph graph = game.getJunctionGraph();
+            int turn;
+            if(direction == Mover.STOPPED || graph.isNode(index)) {
+                // a choice, turn toward ashman
+                turn = game.chase(index);
+            }
+            else {
+                // no choice, round the corner if there is one
+                turn = graph.corridorExit(index, direction);
+            }
+            // turn from the exact middle, so any turn fits the corridor
+            if(turn != Mover.STOPPED && turn != direction) {
+                // redraw where it was drawn last, and where it snaps to
+                invalidateMoverPosition(game, movers, handle);
+                movers.center(handle);
+                game.moverMoved(handle);
+                invalidateMoverPosition(game, movers, handle);
+                direction = turn;
+            }
+        }
+
+        if(direction != Mover.STOPPED) {
+            // if we have a direction
+            move(game, handle, direction);
+        }
+        else {
+            // get random next direction
+            direction = game.getRandom().nextInt(4) + 1;
+            move(game, handle, direction);
+        }
+    }
+
+    // the ghost is in the middle of its square if it will be past the middle by next tick
+    private static boolean nearCenter(MoverStore movers, int handle) {
+        if(movers.fixedPoint) {
+            int x = movers.fixedX[handle];
+            int y = movers.fixedY[handle];
+            int halfStep = movers.fixedStep[handle] >> 1;
+            return Math.abs(x - FixedPoint.center(x)) <= halfStep && Math.abs(y - FixedPoint.center(y)) <= halfStep;
+        }
+        float x = movers.x[handle];
+        float y = movers.y[handle];
+        float halfStep = movers.speed[handle] * Game.SECONDS_PER_TICK / 2;
+        return Math.abs(x - ((int) x + .5f)) <= halfStep && Math.abs(y - ((int) y + .5f)) <= halfStep;
+    }
+}
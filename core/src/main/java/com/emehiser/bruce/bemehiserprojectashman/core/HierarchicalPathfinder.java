@@ -0,0 +1,1082 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Ashman Game
+ *
+ * Finds paths across large mazes by planning over clusters of squares first.
+ * Has ability to build an abstract graph of cluster entrances when a level loads.
+ * Has ability to repair only the clusters whose walls changed.
+ * Has ability to find the way and distance from one square to another.
+ * Has ability to keep one chase field toward ashman that every ghost shares.
+ *
+ * This is HPA*. The maze is cut into clusters of CLUSTER_SIZE squares on a
+ * side. Wherever a run of open squares crosses the line between two
+ * clusters there is an entrance, a pair of abstract nodes, one either side,
+ * joined by a step. Inside each cluster every pair of its nodes is joined
+ * by the walking distance between them, found once with a search that
+ * stays inside the cluster.
+ *
+ * A query searches the start and goal clusters square by square, then runs
+ * A* over the abstract nodes between them, so it looks at a few nodes per
+ * cluster instead of every square. Paths are close to, but not always, the
+ * shortest.
+ *
+ * Ghosts don't query, they share a chase field, see updateGoal and toward.
+ * Inside ashman's cluster it is the walk to ashman. Everywhere else it is
+ * the walk to the nearest entrance of that part of his cluster, found with
+ * one search over the abstract nodes that is only run again when ashman
+ * changes cluster or the walls change. A cluster turns the node distances
+ * into square distances the first time a ghost in it asks, so however many
+ * ghosts there are, each choice is a look at its neighbours.
+ */
+public class HierarchicalPathfinder {
+
+    // clusters are CLUSTER_SIZE squares on a side, a whole number of MazeGrid chunks
+    public static final int CLUSTER_SHIFT = 4;
+    public static final int CLUSTER_SIZE = 1 << CLUSTER_SHIFT;
+
+    // entrances at least this wide get a pair of nodes at either end, instead of one in the middle
+    private static final int WIDE_ENTRANCE = 6;
+
+    // the guess at the rest of a path is the straight distance times this, in quarters.
+    // Over one makes searches go straight for the goal, at the cost of slightly longer paths
+    private static final int HEURISTIC_WEIGHT = 5;
+
+    // distance of a square that can't be reached
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    // parent of the nodes a search starts from. The goal is node nodeCapacity
+    private static final int START = -1;
+
+    // sides of a cluster that own an entrance list, its west and north lines belong to its neighbours
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+
+    // the maze, and the walls each cluster was built with
+    private MazeGrid grid;
+    private long wallVersion = -1;
+    private int clustersAcross;
+    private int clustersDown;
+    private long[] clusterWallVersions = new long[0];
+
+    // abstract nodes. A removed node's id is reused
+    private int nodeCapacity;
+    private int[] nodeSquare = new int[0];
+    private int[] nodeCluster = new int[0];
+    // the node across the entrance, one step away
+    private int[] nodeTwin = new int[0];
+    // the other nodes of the same cluster, and the walk to each
+    private int[][] nodeTargets = new int[0][];
+    private int[][] nodeCosts = new int[0][];
+    private int[] freeNodes = new int[0];
+    private int freeCount;
+    private int nodeCount;
+
+    // nodes that can reach each other share a component, so a search for a goal that
+    // can't be reached ends before it starts. Labelled again after any repair
+    private int[] nodeComponent = new int[0];
+    private boolean componentsStale = true;
+    private int[] componentStack = new int[0];
+    private int[] goalComponents = new int[0];
+
+    // entrance pairs on the east and south line of every cluster, this side then the other side
+    private int[][] entrances = new int[0][];
+    private int[] entranceCounts = new int[0];
+
+    // square searches inside one cluster, by square within the cluster
+    private final int[] startDistance = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final int[] startParent = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final int[] goalDistance = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final int[] localQueue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    // nodes of the cluster being connected or searched
+    private int[] clusterNodes = new int[16];
+
+    // abstract search state, by node id with the goal at nodeCapacity
+    private int[] cost = new int[1];
+    private int[] parent = new int[1];
+    private int[] seen = new int[1];
+    private int[] closed = new int[1];
+    private int search;
+    private int[] heapNode = new int[64];
+    // best guess at the whole path, ties going to the node furthest along
+    private long[] heapKey = new long[64];
+    private int heapSize;
+
+    // the result of the last query
+    private int firstDirection;
+    private int waypointCount;
+    private int[] waypoints = new int[64];
+
+    // number of clusters built or repaired, for tests
+    private int repairCount;
+
+    // chase field values outside ashman's part of his cluster start here, above any walk inside a cluster
+    private static final int OUTSIDE = CLUSTER_SIZE * CLUSTER_SIZE;
+
+    // the square and cluster the chase field leads to, ashman's, -1 for none
+    private int goalSquare = -1;
+    private int goalCluster = -1;
+    // walk to the goal from each square of its cluster, without leaving it
+    private final int[] goalWalk = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    // walk from each node to the goal's part of its cluster, searched again when stale
+    private int[] nodeGoalDistance = new int[0];
+    private boolean nodeGoalStale = true;
+    // nodes waiting in that search, in a linked list for each distance around the ring
+    private static final int BUCKETS = CLUSTER_SIZE * CLUSTER_SIZE + 1;
+    private final int[] bucketHead = new int[BUCKETS];
+    private int[] bucketNext = new int[0];
+    private int[] bucketPrevious = new int[0];
+    private int waiting;
+    // the chase field by flat index, a cluster at a time. A cluster is filled in for the
+    // node distances if its version is fieldVersion
+    private int[] chaseField = new int[0];
+    private int[] clusterFieldVersions = new int[0];
+    private int fieldVersion;
+    // square distances while a cluster is filled in, the squares at this distance and the next,
+    // and the nodes it starts from
+    private final int[] fieldLocal = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private int[] level = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private int[] nextLevel = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private int[] seedSquare = new int[16];
+    private int[] seedDistance = new int[16];
+    // number of searches over the nodes for the chase field, for tests and benchmarks
+    private int goalSearchCount;
+
+    // build the abstract graph for a new maze, or repair the clusters whose walls changed.
+    // Returns true if anything was built
+    public boolean update(MazeGrid mazeGrid) {
+
+        if(mazeGrid != grid) {
+            build(mazeGrid);
+            return true;
+        }
+        if(mazeGrid.getWallVersion() == wallVersion) {
+            return false;
+        }
+        wallVersion = mazeGrid.getWallVersion();
+        // the walls changed under the chase field, search it again when the goal is given
+        goalSquare = -1;
+
+        // only the clusters with a changed chunk
+        for(int cluster = 0; cluster < clusterWallVersions.length; cluster ++) {
+            long version = clusterWallVersion(cluster);
+            if(version != clusterWallVersions[cluster]) {
+                repair(cluster);
+                clusterWallVersions[cluster] = version;
+            }
+        }
+        return true;
+    }
+
+    private void build(MazeGrid mazeGrid) {
+
+        grid = mazeGrid;
+        wallVersion = mazeGrid.getWallVersion();
+        clustersAcross = (mazeGrid.getWidth() + CLUSTER_SIZE - 1) >> CLUSTER_SHIFT;
+        clustersDown = (mazeGrid.getHeight() + CLUSTER_SIZE - 1) >> CLUSTER_SHIFT;
+        int clusters = clustersAcross * clustersDown;
+
+        clusterWallVersions = new long[clusters];
+        entrances = new int[clusters * 2][];
+        entranceCounts = new int[clusters * 2];
+        int squares = mazeGrid.getStride() * (mazeGrid.getHeight() + 2 * MazeGrid.DRAWING_BORDER);
+        if(chaseField.length != squares) {
+            chaseField = new int[squares];
+        }
+        clusterFieldVersions = new int[clusters];
+        Arrays.fill(clusterFieldVersions, -1);
+        goalSquare = -1;
+        goalCluster = -1;
+        nodeCapacity = 0;
+        nodeCount = 0;
+        freeCount = 0;
+        growNodes(Math.max(16, clusters * 4));
+
+        for(int cluster = 0; cluster < clusters; cluster ++) {
+            clusterWallVersions[cluster] = clusterWallVersion(cluster);
+            findEntrances(cluster, EAST);
+            findEntrances(cluster, SOUTH);
+        }
+        for(int cluster = 0; cluster < clusters; cluster ++) {
+            connectCluster(cluster);
+        }
+        repairCount += clusters;
+        componentsStale = true;
+    }
+
+    // newest wall change in any chunk of the cluster
+    private long clusterWallVersion(int cluster) {
+        int chunkShift = CLUSTER_SHIFT - MazeGrid.CHUNK_SHIFT;
+        int firstX = (cluster % clustersAcross) << chunkShift;
+        int firstY = (cluster / clustersAcross) << chunkShift;
+        int lastX = Math.min(firstX + (1 << chunkShift), grid.getChunksAcross());
+        int lastY = Math.min(firstY + (1 << chunkShift), grid.getChunksDown());
+        long version = 0;
+        for(int y = firstY; y < lastY; y ++) {
+            for(int x = firstX; x < lastX; x ++) {
+                version = Math.max(version, grid.getChunkWallVersion(y * grid.getChunksAcross() + x));
+            }
+        }
+        return version;
+    }
+
+    // find the cluster's entrances again, and the walks between every node that moved because of it
+    private void repair(int cluster) {
+
+        int cx = cluster % clustersAcross;
+        int cy = cluster / clustersAcross;
+        int west = cx > 0 ? cluster - 1 : -1;
+        int north = cy > 0 ? cluster - clustersAcross : -1;
+        int east = cx < clustersAcross - 1 ? cluster + 1 : -1;
+        int south = cy < clustersDown - 1 ? cluster + clustersAcross : -1;
+
+        // every line around the cluster
+        removeEntrances(cluster, EAST);
+        findEntrances(cluster, EAST);
+        removeEntrances(cluster, SOUTH);
+        findEntrances(cluster, SOUTH);
+        if(west >= 0) {
+            removeEntrances(west, EAST);
+            findEntrances(west, EAST);
+        }
+        if(north >= 0) {
+            removeEntrances(north, SOUTH);
+            findEntrances(north, SOUTH);
+        }
+
+        // the cluster and its neighbours have different nodes now
+        connectCluster(cluster);
+        repairCount ++;
+        componentsStale = true;
+        if(west >= 0) {
+            connectCluster(west);
+        }
+        if(north >= 0) {
+            connectCluster(north);
+        }
+        if(east >= 0) {
+            connectCluster(east);
+        }
+        if(south >= 0) {
+            connectCluster(south);
+        }
+    }
+
+    private void removeEntrances(int cluster, int side) {
+        int line = cluster * 2 + side;
+        for(int i = 0; i < entranceCounts[line]; i ++) {
+            freeNode(entrances[line][i]);
+        }
+        entranceCounts[line] = 0;
+    }
+
+    // every run of squares open on both sides of the cluster's east or south line
+    private void findEntrances(int cluster, int side) {
+
+        int line = cluster * 2 + side;
+        entranceCounts[line] = 0;
+        int left = (cluster % clustersAcross) << CLUSTER_SHIFT;
+        int top = (cluster / clustersAcross) << CLUSTER_SHIFT;
+
+        // the squares either side of the line, and the step along it
+        int inside;
+        int across;
+        int along;
+        int length;
+        if(side == EAST) {
+            if(left + CLUSTER_SIZE >= grid.getWidth()) {
+                return;
+            }
+            inside = grid.index(left + CLUSTER_SIZE - 1, top);
+            across = 1;
+            along = grid.getStride();
+            length = Math.min(CLUSTER_SIZE, grid.getHeight() - top);
+        }
+        else {
+            if(top + CLUSTER_SIZE >= grid.getHeight()) {
+                return;
+            }
+            inside = grid.index(left, top + CLUSTER_SIZE - 1);
+            across = grid.getStride();
+            along = 1;
+            length = Math.min(CLUSTER_SIZE, grid.getWidth() - left);
+        }
+        int other = side == EAST ? cluster + 1 : cluster + clustersAcross;
+
+        int runStart = -1;
+        for(int i = 0; i <= length; i ++) {
+            boolean open = i < length
+                    && ! grid.isSolid(inside + i * along) && ! grid.isSolid(inside + i * along + across);
+            if(open && runStart < 0) {
+                runStart = i;
+            }
+            else if(! open && runStart >= 0) {
+                int runEnd = i - 1;
+                if(runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+                    addEntrance(line, cluster, other, inside + runStart * along, across);
+                    addEntrance(line, cluster, other, inside + runEnd * along, across);
+                }
+                else {
+                    addEntrance(line, cluster, other, inside + (runStart + runEnd) / 2 * along, across);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private void addEntrance(int line, int cluster, int other, int square, int across) {
+        int a = takeNode(square, cluster);
+        int b = takeNode(square + across, other);
+        nodeTwin[a] = b;
+        nodeTwin[b] = a;
+        if(entrances[line] == null || entranceCounts[line] + 2 > entrances[line].length) {
+            entrances[line] = entrances[line] == null ? new int[8] : Arrays.copyOf(entrances[line], entrances[line].length * 2);
+        }
+        entrances[line][entranceCounts[line] ++] = a;
+        entrances[line][entranceCounts[line] ++] = b;
+    }
+
+    private int takeNode(int square, int cluster) {
+        int node;
+        if(freeCount > 0) {
+            node = freeNodes[-- freeCount];
+        }
+        else {
+            if(nodeCount == nodeCapacity) {
+                growNodes(nodeCapacity * 2);
+            }
+            node = nodeCount ++;
+        }
+        nodeSquare[node] = square;
+        nodeCluster[node] = cluster;
+        nodeTargets[node] = null;
+        nodeCosts[node] = null;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        nodeCluster[node] = -1;
+        nodeTargets[node] = null;
+        nodeCosts[node] = null;
+        freeNodes[freeCount ++] = node;
+    }
+
+    private void growNodes(int capacity) {
+        nodeSquare = Arrays.copyOf(nodeSquare, capacity);
+        nodeCluster = Arrays.copyOf(nodeCluster, capacity);
+        nodeTwin = Arrays.copyOf(nodeTwin, capacity);
+        nodeTargets = Arrays.copyOf(nodeTargets, capacity);
+        nodeCosts = Arrays.copyOf(nodeCosts, capacity);
+        freeNodes = Arrays.copyOf(freeNodes, capacity);
+        // the goal of a search is one past the last node
+        nodeComponent = Arrays.copyOf(nodeComponent, capacity);
+        componentStack = Arrays.copyOf(componentStack, capacity);
+        goalComponents = Arrays.copyOf(goalComponents, capacity);
+        nodeGoalDistance = Arrays.copyOf(nodeGoalDistance, capacity);
+        bucketNext = Arrays.copyOf(bucketNext, capacity);
+        bucketPrevious = Arrays.copyOf(bucketPrevious, capacity);
+        cost = Arrays.copyOf(cost, capacity + 1);
+        parent = Arrays.copyOf(parent, capacity + 1);
+        seen = Arrays.copyOf(seen, capacity + 1);
+        closed = Arrays.copyOf(closed, capacity + 1);
+        // a path can pass every node, and most searches push each node at most once,
+        // so searches on the new maze rarely grow these
+        waypoints = Arrays.copyOf(waypoints, Math.max(waypoints.length, capacity + 2));
+        heapNode = Arrays.copyOf(heapNode, Math.max(heapNode.length, capacity + 1));
+        heapKey = Arrays.copyOf(heapKey, Math.max(heapKey.length, capacity + 1));
+        nodeCapacity = capacity;
+    }
+
+    // gather the nodes inside the cluster, from the four lines around it
+    private int gatherNodes(int cluster) {
+        int count = 0;
+        int cx = cluster % clustersAcross;
+        int cy = cluster / clustersAcross;
+        count = gatherLine(cluster * 2 + EAST, 0, count);
+        count = gatherLine(cluster * 2 + SOUTH, 0, count);
+        if(cx > 0) {
+            count = gatherLine((cluster - 1) * 2 + EAST, 1, count);
+        }
+        if(cy > 0) {
+            count = gatherLine((cluster - clustersAcross) * 2 + SOUTH, 1, count);
+        }
+        return count;
+    }
+
+    private int gatherLine(int line, int offset, int count) {
+        for(int i = offset; i < entranceCounts[line]; i += 2) {
+            if(count == clusterNodes.length) {
+                clusterNodes = Arrays.copyOf(clusterNodes, count * 2);
+            }
+            clusterNodes[count ++] = entrances[line][i];
+        }
+        return count;
+    }
+
+    // walk between every pair of the cluster's nodes, without leaving the cluster
+    private void connectCluster(int cluster) {
+
+        int count = gatherNodes(cluster);
+        for(int i = 0; i < count; i ++) {
+            int node = clusterNodes[i];
+            searchCluster(cluster, nodeSquare[node], startDistance, null);
+
+            int reached = 0;
+            for(int j = 0; j < count; j ++) {
+                if(j != i && startDistance[local(cluster, nodeSquare[clusterNodes[j]])] != UNREACHED) {
+                    reached ++;
+                }
+            }
+            int[] targets = new int[reached];
+            int[] costs = new int[reached];
+            reached = 0;
+            for(int j = 0; j < count; j ++) {
+                int distance = startDistance[local(cluster, nodeSquare[clusterNodes[j]])];
+                if(j != i && distance != UNREACHED) {
+                    targets[reached] = clusterNodes[j];
+                    costs[reached ++] = distance;
+                }
+            }
+            nodeTargets[node] = targets;
+            nodeCosts[node] = costs;
+        }
+    }
+
+    // breadth first from the square, without leaving the cluster. Parents are local squares
+    private void searchCluster(int cluster, int square, int[] distance, int[] parents) {
+
+        int left = (cluster % clustersAcross) << CLUSTER_SHIFT;
+        int top = (cluster / clustersAcross) << CLUSTER_SHIFT;
+        int columns = Math.min(CLUSTER_SIZE, grid.getWidth() - left);
+        int rows = Math.min(CLUSTER_SIZE, grid.getHeight() - top);
+        // flat index of the cluster's top left square, local squares are offsets from it
+        int origin = grid.index(left, top);
+        int stride = grid.getStride();
+
+        Arrays.fill(distance, UNREACHED);
+        int start = local(cluster, square);
+        distance[start] = 0;
+        if(parents != null) {
+            parents[start] = -1;
+        }
+        int head = 0;
+        int tail = 0;
+        localQueue[tail ++] = start;
+        while(head < tail) {
+            int at = localQueue[head ++];
+            int x = at & (CLUSTER_SIZE - 1);
+            int y = at >> CLUSTER_SHIFT;
+            int bits = grid.walkableBits(origin + y * stride + x);
+            int next = distance[at] + 1;
+            if((bits & MazeGrid.WALK_UP) != 0 && y > 0) {
+                tail = visit(at, at - CLUSTER_SIZE, next, distance, parents, tail);
+            }
+            if((bits & MazeGrid.WALK_DOWN) != 0 && y + 1 < rows) {
+                tail = visit(at, at + CLUSTER_SIZE, next, distance, parents, tail);
+            }
+            if((bits & MazeGrid.WALK_LEFT) != 0 && x > 0) {
+                tail = visit(at, at - 1, next, distance, parents, tail);
+            }
+            if((bits & MazeGrid.WALK_RIGHT) != 0 && x + 1 < columns) {
+                tail = visit(at, at + 1, next, distance, parents, tail);
+            }
+        }
+    }
+
+    private int visit(int from, int to, int next, int[] distance, int[] parents, int tail) {
+        if(distance[to] == UNREACHED) {
+            distance[to] = next;
+            if(parents != null) {
+                parents[to] = from;
+            }
+            localQueue[tail ++] = to;
+        }
+        return tail;
+    }
+
+    // square within its cluster, row by row
+    private int local(int cluster, int square) {
+        int stride = grid.getStride();
+        int x = square % stride - MazeGrid.DRAWING_BORDER - ((cluster % clustersAcross) << CLUSTER_SHIFT);
+        int y = square / stride - MazeGrid.DRAWING_BORDER - ((cluster / clustersAcross) << CLUSTER_SHIFT);
+        return (y << CLUSTER_SHIFT) + x;
+    }
+
+    private int clusterOf(int x, int y) {
+        return (y >> CLUSTER_SHIFT) * clustersAcross + (x >> CLUSTER_SHIFT);
+    }
+
+    // find a path from one square to another. Returns its length in steps, or UNREACHED.
+    // Afterwards getFirstDirection is the way to go, and the waypoints are the abstract path
+    public int findPath(int startX, int startY, int goalX, int goalY) {
+
+        if(grid == null) {
+            throw new IllegalStateException("Pathfinder has no maze, call update first");
+        }
+        checkSquare(startX, startY);
+        checkSquare(goalX, goalY);
+        firstDirection = Mover.STOPPED;
+        waypointCount = 0;
+
+        int start = grid.index(startX, startY);
+        int goal = grid.index(goalX, goalY);
+        if(grid.isSolid(start) || grid.isSolid(goal)) {
+            return UNREACHED;
+        }
+        if(start == goal) {
+            return 0;
+        }
+
+        int startCluster = clusterOf(startX, startY);
+        int goalCluster = clusterOf(goalX, goalY);
+        searchCluster(startCluster, start, startDistance, startParent);
+
+        // near enough to walk without leaving the cluster
+        if(startCluster == goalCluster && startDistance[local(startCluster, goal)] != UNREACHED) {
+            addWaypoint(goal);
+            firstDirection = firstStep(startCluster, start, goal);
+            return startDistance[local(startCluster, goal)];
+        }
+        searchCluster(goalCluster, goal, goalDistance, null);
+
+        int goalNode = nodeCapacity;
+        int length = searchAbstract(startCluster, goalCluster, goal);
+        if(length == UNREACHED) {
+            return UNREACHED;
+        }
+
+        // the nodes from the goal back to the start, turned around
+        for(int node = parent[goalNode]; node != START; node = parent[node]) {
+            addWaypoint(nodeSquare[node]);
+        }
+        for(int i = 0, j = waypointCount - 1; i < j; i ++, j --) {
+            int swap = waypoints[i];
+            waypoints[i] = waypoints[j];
+            waypoints[j] = swap;
+        }
+        addWaypoint(goal);
+
+        // the first waypoint that isn't where we are is either in the start cluster or one step away
+        for(int i = 0; i < waypointCount; i ++) {
+            int square = waypoints[i];
+            if(square == start) {
+                continue;
+            }
+            int step = stepDirection(start, square);
+            firstDirection = step != Mover.STOPPED ? step : firstStep(startCluster, start, square);
+            break;
+        }
+        return length;
+    }
+
+    // lead the chase field to the point, ashman, if he is in another square than last time or
+    // the walls changed. Returns true if the goal changed. Call update first
+    public boolean updateGoal(float x, float y) {
+
+        if(grid == null) {
+            throw new IllegalStateException("Pathfinder has no maze, call update first");
+        }
+        int square = grid.isOpenAt(x, y) ? grid.index((int) x, (int) y) : -1;
+        if(square == goalSquare) {
+            return false;
+        }
+        int previous = goalSquare;
+        goalSquare = square;
+        if(square < 0) {
+            return true;
+        }
+
+        // the walk to the goal inside its cluster changes with every square
+        int cluster = clusterOf((int) x, (int) y);
+        searchCluster(cluster, square, goalWalk, null);
+        clusterFieldVersions[cluster] = -1;
+
+        // the nodes only need searching again if he walked out of the part of the cluster he was in
+        boolean samePart = previous >= 0 && cluster == goalCluster && goalWalk[local(cluster, previous)] != UNREACHED;
+        goalCluster = cluster;
+        if(! samePart) {
+            nodeGoalStale = true;
+        }
+        return true;
+    }
+
+    // the way to step from the square at the flat index to get closer to the goal, a random one
+    // of the best ways if there are several. Mover.STOPPED if already there, or it can't be reached
+    public int toward(int index, Random random) {
+
+        if(goalSquare < 0) {
+            return Mover.STOPPED;
+        }
+        if(nodeGoalStale) {
+            searchGoal();
+        }
+        int best = chaseFieldAt(index);
+        if(best == UNREACHED || best == 0) {
+            return Mover.STOPPED;
+        }
+
+        // the field always falls toward the goal from an open neighbour, maybe by more than one
+        int stride = grid.getStride();
+        int bits = grid.walkableBits(index);
+        int direction = Mover.STOPPED;
+        int ties = 0;
+        for(int way = Mover.UP; way <= Mover.RIGHT; way ++) {
+            int neighbour;
+            int bit;
+            switch (way) {
+                case Mover.UP:
+                    neighbour = index - stride;
+                    bit = MazeGrid.WALK_UP;
+                    break;
+                case Mover.DOWN:
+                    neighbour = index + stride;
+                    bit = MazeGrid.WALK_DOWN;
+                    break;
+                case Mover.LEFT:
+                    neighbour = index - 1;
+                    bit = MazeGrid.WALK_LEFT;
+                    break;
+                default:
+                    neighbour = index + 1;
+                    bit = MazeGrid.WALK_RIGHT;
+            }
+            if((bits & bit) == 0) {
+                continue;
+            }
+            int distance = chaseFieldAt(neighbour);
+            if(distance < best) {
+                best = distance;
+                direction = way;
+                ties = 1;
+            }
+            else if(distance == best && direction != Mover.STOPPED) {
+                // keep each of the best neighbours with the same chance
+                ties ++;
+                if(random.nextInt(ties) == 0) {
+                    direction = way;
+                }
+            }
+        }
+        return direction;
+    }
+
+    // the chase field at an open square, filling in its cluster first if it is stale
+    private int chaseFieldAt(int index) {
+        int stride = grid.getStride();
+        int cluster = clusterOf(index % stride - MazeGrid.DRAWING_BORDER, index / stride - MazeGrid.DRAWING_BORDER);
+        if(clusterFieldVersions[cluster] != fieldVersion) {
+            fillCluster(cluster);
+        }
+        return chaseField[index];
+    }
+
+    // Dijkstra over every node, out from the nodes of the goal's part of its cluster. No step
+    // between nodes is longer than a walk across a cluster, so the nodes waiting are kept in a
+    // ring of buckets by distance, instead of a heap
+    private void searchGoal() {
+
+        goalSearchCount ++;
+        search ++;
+        for(int node = 0; node < nodeCount; node ++) {
+            nodeGoalDistance[node] = UNREACHED;
+        }
+        Arrays.fill(bucketHead, -1);
+        waiting = 0;
+
+        int count = gatherNodes(goalCluster);
+        for(int i = 0; i < count; i ++) {
+            int node = clusterNodes[i];
+            if(goalWalk[local(goalCluster, nodeSquare[node])] != UNREACHED) {
+                relaxGoal(node, 0);
+            }
+        }
+        for(int distance = 0; waiting > 0; distance ++) {
+            int bucket = distance % BUCKETS;
+            int node;
+            while((node = bucketHead[bucket]) >= 0) {
+                unbucket(node);
+                closed[node] = search;
+                nodeGoalDistance[node] = distance;
+
+                relaxGoal(nodeTwin[node], distance + 1);
+                int[] targets = nodeTargets[node];
+                int[] costs = nodeCosts[node];
+                for(int i = 0; i < targets.length; i ++) {
+                    relaxGoal(targets[i], distance + costs[i]);
+                }
+            }
+        }
+
+        // every cluster is filled in again when a ghost in it asks
+        fieldVersion ++;
+        nodeGoalStale = false;
+    }
+
+    private void relaxGoal(int node, int newCost) {
+        if(closed[node] == search) {
+            return;
+        }
+        if(seen[node] == search) {
+            if(cost[node] <= newCost) {
+                return;
+            }
+            unbucket(node);
+        }
+        seen[node] = search;
+        cost[node] = newCost;
+
+        // to the front of its bucket
+        int bucket = newCost % BUCKETS;
+        int first = bucketHead[bucket];
+        bucketPrevious[node] = -1;
+        bucketNext[node] = first;
+        if(first >= 0) {
+            bucketPrevious[first] = node;
+        }
+        bucketHead[bucket] = node;
+        waiting ++;
+    }
+
+    private void unbucket(int node) {
+        int before = bucketPrevious[node];
+        int after = bucketNext[node];
+        if(before >= 0) {
+            bucketNext[before] = after;
+        }
+        else {
+            bucketHead[cost[node] % BUCKETS] = after;
+        }
+        if(after >= 0) {
+            bucketPrevious[after] = before;
+        }
+        waiting --;
+    }
+
+    // the chase field of every square of the cluster. Ashman's part of his cluster is the walk to him,
+    // every other square is OUTSIDE plus the walk to a node and on from there
+    private void fillCluster(int cluster) {
+
+        int left = (cluster % clustersAcross) << CLUSTER_SHIFT;
+        int top = (cluster / clustersAcross) << CLUSTER_SHIFT;
+        int columns = Math.min(CLUSTER_SIZE, grid.getWidth() - left);
+        int rows = Math.min(CLUSTER_SIZE, grid.getHeight() - top);
+        int origin = grid.index(left, top);
+        int stride = grid.getStride();
+        boolean goalHere = cluster == goalCluster;
+
+        // start from every node the goal can be reached from, except those in the goal's part,
+        // nearest first. There are only a few, so they are sorted by insertion
+        int seeds = 0;
+        int count = gatherNodes(cluster);
+        if(count > seedSquare.length) {
+            seedSquare = new int[clusterNodes.length];
+            seedDistance = new int[clusterNodes.length];
+        }
+        for(int i = 0; i < count; i ++) {
+            int node = clusterNodes[i];
+            int at = local(cluster, nodeSquare[node]);
+            int distance = nodeGoalDistance[node];
+            if(distance == UNREACHED || (goalHere && goalWalk[at] != UNREACHED)) {
+                continue;
+            }
+            int j = seeds ++;
+            while(j > 0 && seedDistance[j - 1] > distance) {
+                seedSquare[j] = seedSquare[j - 1];
+                seedDistance[j] = seedDistance[j - 1];
+                j --;
+            }
+            seedSquare[j] = at;
+            seedDistance[j] = distance;
+        }
+
+        // breadth first a distance at a time, adding each node when the search gets to its distance
+        Arrays.fill(fieldLocal, UNREACHED);
+        int seed = 0;
+        int levelSize = 0;
+        int distance = seeds > 0 ? seedDistance[0] : 0;
+        while(levelSize > 0 || seed < seeds) {
+            if(levelSize == 0 && seedDistance[seed] > distance) {
+                distance = seedDistance[seed];
+            }
+            while(seed < seeds && seedDistance[seed] == distance) {
+                int at = seedSquare[seed ++];
+                if(distance < fieldLocal[at]) {
+                    fieldLocal[at] = distance;
+                    level[levelSize ++] = at;
+                }
+            }
+            int nextSize = 0;
+            int next = distance + 1;
+            for(int i = 0; i < levelSize; i ++) {
+                int at = level[i];
+                int x = at & (CLUSTER_SIZE - 1);
+                int y = at >> CLUSTER_SHIFT;
+                int bits = grid.walkableBits(origin + y * stride + x);
+                if((bits & MazeGrid.WALK_UP) != 0 && y > 0 && next < fieldLocal[at - CLUSTER_SIZE]) {
+                    fieldLocal[at - CLUSTER_SIZE] = next;
+                    nextLevel[nextSize ++] = at - CLUSTER_SIZE;
+                }
+                if((bits & MazeGrid.WALK_DOWN) != 0 && y + 1 < rows && next < fieldLocal[at + CLUSTER_SIZE]) {
+                    fieldLocal[at + CLUSTER_SIZE] = next;
+                    nextLevel[nextSize ++] = at + CLUSTER_SIZE;
+                }
+                if((bits & MazeGrid.WALK_LEFT) != 0 && x > 0 && next < fieldLocal[at - 1]) {
+                    fieldLocal[at - 1] = next;
+                    nextLevel[nextSize ++] = at - 1;
+                }
+                if((bits & MazeGrid.WALK_RIGHT) != 0 && x + 1 < columns && next < fieldLocal[at + 1]) {
+                    fieldLocal[at + 1] = next;
+                    nextLevel[nextSize ++] = at + 1;
+                }
+            }
+            int[] swap = level;
+            level = nextLevel;
+            nextLevel = swap;
+            levelSize = nextSize;
+            distance = next;
+        }
+
+        for(int y = 0; y < rows; y ++) {
+            int index = origin + y * stride;
+            for(int x = 0; x < columns; x ++) {
+                int at = (y << CLUSTER_SHIFT) + x;
+                if(goalHere && goalWalk[at] != UNREACHED) {
+                    chaseField[index + x] = goalWalk[at];
+                }
+                else {
+                    chaseField[index + x] = fieldLocal[at] == UNREACHED ? UNREACHED : OUTSIDE + fieldLocal[at];
+                }
+            }
+        }
+        clusterFieldVersions[cluster] = fieldVersion;
+    }
+
+    // flood every component of the abstract graph with its own label
+    private void labelComponents() {
+
+        for(int node = 0; node < nodeCount; node ++) {
+            nodeComponent[node] = -1;
+        }
+        for(int node = 0; node < nodeCount; node ++) {
+            if(nodeCluster[node] < 0 || nodeComponent[node] >= 0) {
+                continue;
+            }
+            int size = 0;
+            nodeComponent[node] = node;
+            componentStack[size ++] = node;
+            while(size > 0) {
+                int at = componentStack[-- size];
+                int twin = nodeTwin[at];
+                if(nodeComponent[twin] < 0) {
+                    nodeComponent[twin] = node;
+                    componentStack[size ++] = twin;
+                }
+                for(int target : nodeTargets[at]) {
+                    if(nodeComponent[target] < 0) {
+                        nodeComponent[target] = node;
+                        componentStack[size ++] = target;
+                    }
+                }
+            }
+        }
+        componentsStale = false;
+    }
+
+    // A* over the abstract nodes, from the start cluster's nodes to the goal
+    private int searchAbstract(int startCluster, int goalCluster, int goal) {
+
+        if(componentsStale) {
+            labelComponents();
+        }
+        int goalNode = nodeCapacity;
+        search ++;
+        heapSize = 0;
+
+        // the components the goal can be walked to from
+        int count = gatherNodes(goalCluster);
+        for(int i = 0; i < count; i ++) {
+            int node = clusterNodes[i];
+            if(goalDistance[local(goalCluster, nodeSquare[node])] != UNREACHED) {
+                goalComponents[nodeComponent[node]] = search;
+            }
+        }
+
+        // start only from nodes that can get there
+        count = gatherNodes(startCluster);
+        for(int i = 0; i < count; i ++) {
+            int node = clusterNodes[i];
+            int distance = startDistance[local(startCluster, nodeSquare[node])];
+            if(distance != UNREACHED && goalComponents[nodeComponent[node]] == search) {
+                relax(node, START, distance, goal);
+            }
+        }
+
+        while(heapSize > 0) {
+            int node = pop();
+            if(closed[node] == search) {
+                continue;
+            }
+            closed[node] = search;
+            if(node == goalNode) {
+                return cost[goalNode];
+            }
+            int base = cost[node];
+
+            // across the entrance
+            relax(nodeTwin[node], node, base + 1, goal);
+            // to the other nodes of the cluster
+            int[] targets = nodeTargets[node];
+            int[] costs = nodeCosts[node];
+            for(int i = 0; i < targets.length; i ++) {
+                relax(targets[i], node, base + costs[i], goal);
+            }
+            // to the goal itself
+            if(nodeCluster[node] == goalCluster) {
+                int distance = goalDistance[local(goalCluster, nodeSquare[node])];
+                if(distance != UNREACHED) {
+                    relax(goalNode, node, base + distance, goal);
+                }
+            }
+        }
+        return UNREACHED;
+    }
+
+    private void relax(int node, int from, int newCost, int goal) {
+        if(closed[node] == search || (seen[node] == search && cost[node] <= newCost)) {
+            return;
+        }
+        seen[node] = search;
+        cost[node] = newCost;
+        parent[node] = from;
+        int square = node == nodeCapacity ? goal : nodeSquare[node];
+        push(node, ((long) (newCost + manhattan(square, goal) * HEURISTIC_WEIGHT / 4) << 32) - newCost);
+    }
+
+    private int manhattan(int from, int to) {
+        int stride = grid.getStride();
+        return Math.abs(from % stride - to % stride) + Math.abs(from / stride - to / stride);
+    }
+
+    private void push(int node, long key) {
+        if(heapSize == heapNode.length) {
+            heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+            heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+        }
+        int i = heapSize ++;
+        while(i > 0) {
+            int up = (i - 1) >> 1;
+            if(heapKey[up] <= key) {
+                break;
+            }
+            heapNode[i] = heapNode[up];
+            heapKey[i] = heapKey[up];
+            i = up;
+        }
+        heapNode[i] = node;
+        heapKey[i] = key;
+    }
+
+    private int pop() {
+        int top = heapNode[0];
+        int node = heapNode[-- heapSize];
+        long key = heapKey[heapSize];
+        int i = 0;
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= heapSize) {
+                break;
+            }
+            if(child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) {
+                child ++;
+            }
+            if(key <= heapKey[child]) {
+                break;
+            }
+            heapNode[i] = heapNode[child];
+            heapKey[i] = heapKey[child];
+            i = child;
+        }
+        heapNode[i] = node;
+        heapKey[i] = key;
+        return top;
+    }
+
+    // the way to go from the start for the walk to a square in the start cluster
+    private int firstStep(int cluster, int start, int square) {
+        int at = local(cluster, square);
+        int from = local(cluster, start);
+        if(startDistance[at] == UNREACHED) {
+            return Mover.STOPPED;
+        }
+        while(startParent[at] != from) {
+            at = startParent[at];
+        }
+        int dx = (at & (CLUSTER_SIZE - 1)) - (from & (CLUSTER_SIZE - 1));
+        int dy = (at >> CLUSTER_SHIFT) - (from >> CLUSTER_SHIFT);
+        return dy < 0 ? Mover.UP : dy > 0 ? Mover.DOWN : dx < 0 ? Mover.LEFT : Mover.RIGHT;
+    }
+
+    // the way from one square to the next, or STOPPED if they aren't side by side
+    private int stepDirection(int from, int to) {
+        int stride = grid.getStride();
+        if(to == from - stride) {
+            return Mover.UP;
+        }
+        if(to == from + stride) {
+            return Mover.DOWN;
+        }
+        if(to == from - 1) {
+            return Mover.LEFT;
+        }
+        if(to == from + 1) {
+            return Mover.RIGHT;
+        }
+        return Mover.STOPPED;
+    }
+
+    private void addWaypoint(int square) {
+        if(waypointCount == waypoints.length) {
+            waypoints = Arrays.copyOf(waypoints, waypointCount * 2);
+        }
+        waypoints[waypointCount ++] = square;
+    }
+
+    private void checkSquare(int x, int y) {
+        if(x < 0 || x >= grid.getWidth() || y < 0 || y >= grid.getHeight()) {
+            throw new IndexOutOfBoundsException("Square is outside of the maze: " + x + ", " + y);
+        }
+    }
+
+    // the way to go first on the last path found, STOPPED if there was none
+    public int getFirstDirection() {
+        return firstDirection;
+    }
+
+    // flat indexes of the entrances the last path went through, then the goal
+    public int getWaypointCount() {
+        return waypointCount;
+    }
+
+    public int getWaypoint(int i) {
+        if(i < 0 || i >= waypointCount) {
+            throw new IndexOutOfBoundsException("Not a waypoint: " + i);
+        }
+        return waypoints[i];
+    }
+
+    // abstract nodes in use
+    public int getNodeCount() {
+        return nodeCount - freeCount;
+    }
+
+    public int getRepairCount() {
+        return repairCount;
+    }
+
+    public int getGoalSearchCount() {
+        return goalSearchCount;
+    }
+}
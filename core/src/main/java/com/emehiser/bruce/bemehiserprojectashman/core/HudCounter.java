@@ -0,0 +1,93 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * A labelled number for the hud, like "Cakes Left: 42".
+ * Has ability to tell you if the number changed since it was last shown.
+ * Has ability to write the text into one char buffer, without allocating.
+ *
+ * The front end sets the number every frame, and only hands the text to
+ * its view when set says it changed, so an unchanged hud costs nothing.
+ */
+public class HudCounter {
+
+    // the longest int, with its sign
+    private static final int MAX_DIGITS = 11;
+
+    // the label, then the number
+    private final char[] text;
+    private final int labelLength;
+    private int length;
+
+    // the number in the text, and whether the text has been shown since it changed
+    private int value;
+    private boolean stale;
+
+    public HudCounter(String label) {
+
+        if(label == null) {
+            throw new NullPointerException("Label is null");
+        }
+        labelLength = label.length();
+        text = new char[labelLength + MAX_DIGITS];
+        label.getChars(0, labelLength, text, 0);
+        setText(0);
+        stale = true;
+    }
+
+    // set the number. Returns true if the text needs shown again
+    public boolean set(int number) {
+
+        if(number != value) {
+            setText(number);
+            stale = true;
+        }
+        boolean changed = stale;
+        stale = false;
+        return changed;
+    }
+
+    // show the text again on the next set, like when the view showing it is new
+    public void invalidate() {
+        stale = true;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    // the text, from 0 to getLength. The array is reused, so copy it to keep it
+    public char[] getChars() {
+        return text;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    // write the number after the label, digits from the right
+    private void setText(int number) {
+
+        value = number;
+        int digits = 0;
+        long remaining = Math.abs((long) number);
+        do {
+            digits ++;
+            remaining /= 10;
+        } while(remaining > 0);
+        if(number < 0) {
+            digits ++;
+        }
+
+        length = labelLength + digits;
+        remaining = Math.abs((long) number);
+        for(int i = length - 1; i >= labelLength; i --) {
+            text[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        if(number < 0) {
+            text[labelLength] = '-';
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/*
+ * Ashman Game
+ *
+ * A recording of one level being played, enough to play it again exactly.
+ * Has ability to record every input with the tick it was given before.
+ * Has ability to remember how the game ended, as a tick and a hash of the game.
+ * Has ability to write and read a recording.
+ *
+ * The game is the same every time from the same level, seed and inputs, so
+ * that is all a recording holds, with whether movers moved in fixed point.
+ * See Replay. All values are big endian.
+ *
+ *   int    MAGIC
+ *   int    FORMAT_VERSION
+ *   int    level
+ *   long   seed
+ *   byte   1 if movers moved in fixed point, see Game.setFixedPoint
+ *   long   end tick, -1 if the recording wasn't finished
+ *   long   end hash, see Game.getStateHash
+ *   int    n, then n of
+ *     long tick        ticks run before the input
+ *     int  input       a Mover direction, or INPUT_CHEAT
+ */
+public class InputLog {
+
+    // "ASHR", the first four bytes of every recording
+    public static final int MAGIC = 0x41534852;
+    // bumped whenever the layout or the meaning of an input changes
+    public static final int FORMAT_VERSION = 3;
+
+    // file extension for recordings
+    public static final String EXTENSION = ".replay";
+
+    // removes all but one cake. Mover directions, turns for ashman, are the other inputs
+    public static final int INPUT_CHEAT = 16;
+
+    // room for this many inputs from the start, more than most levels get. Only a
+    // level with more inputs than any before it makes the arrays grow, mid tick
+    public static final int INITIAL_CAPACITY = 1024;
+
+    // what was played
+    private int level;
+    private long seed;
+    private boolean fixedPoint;
+
+    // inputs in the order they were given
+    private int count;
+    private long[] ticks = new long[INITIAL_CAPACITY];
+    private int[] inputs = new int[INITIAL_CAPACITY];
+
+    // how it ended, endTick is -1 until then
+    private long endTick = -1;
+    private long endHash;
+
+    // forget everything, and start recording a new level
+    public void start(int level, long seed, boolean fixedPoint) {
+        this.level = level;
+        this.seed = seed;
+        this.fixedPoint = fixedPoint;
+        count = 0;
+        endTick = -1;
+        endHash = 0;
+    }
+
+    // the input was given after ticks had run
+    public void record(long tick, int input) {
+        if(count == ticks.length) {
+            ticks = Arrays.copyOf(ticks, count * 2);
+            inputs = Arrays.copyOf(inputs, count * 2);
+        }
+        ticks[count] = tick;
+        inputs[count] = input;
+        count ++;
+    }
+
+    // the game stopped after tick, in the state with the hash
+    public void finish(long tick, long hash) {
+        endTick = tick;
+        endHash = hash;
+    }
+
+    public boolean isFinished() {
+        return endTick >= 0;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTick(int i) {
+        checkInput(i);
+        return ticks[i];
+    }
+
+    public int getInput(int i) {
+        checkInput(i);
+        return inputs[i];
+    }
+
+    public long getEndTick() {
+        return endTick;
+    }
+
+    public long getEndHash() {
+        return endHash;
+    }
+
+    private void checkInput(int i) {
+        if(i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Not an input: " + i);
+        }
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(level);
+        output.writeLong(seed);
+        output.writeBoolean(fixedPoint);
+        output.writeLong(endTick);
+        output.writeLong(endHash);
+        output.writeInt(count);
+        for(int i = 0; i < count; i ++) {
+            output.writeLong(ticks[i]);
+            output.writeInt(inputs[i]);
+        }
+        output.flush();
+    }
+
+    // read a recording from the stream. The stream is not closed
+    public static InputLog read(InputStream inputStream) throws IOException {
+
+        DataInputStream input = new DataInputStream(inputStream);
+        try {
+            if(input.readInt() != MAGIC) {
+                throw new IOException("Not a recording");
+            }
+            int formatVersion = input.readInt();
+            if(formatVersion != FORMAT_VERSION) {
+                throw new IOException("Recording is version " + formatVersion + ", expected " + FORMAT_VERSION);
+            }
+
+            InputLog log = new InputLog();
+            log.start(input.readInt(), input.readLong(), input.readBoolean());
+            long endTick = input.readLong();
+            long endHash = input.readLong();
+            int count = input.readInt();
+            if(count < 0) {
+                throw new IOException("Recording has " + count + " inputs");
+            }
+            for(int i = 0; i < count; i ++) {
+                log.record(input.readLong(), input.readInt());
+            }
+            if(endTick >= 0) {
+                log.finish(endTick, endHash);
+            }
+            return log;
+        } catch (EOFException e) {
+            throw new IOException("Recording is cut short");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Ashman Game
+ *
+ * Inputs waiting for the next tick, passed from one thread (the ui) to
+ * another (the game thread) without locking.
+ * Has ability to give an input from the ui thread without waiting.
+ * Has ability to take every waiting input at the start of a tick.
+ * Has ability to throw away what is waiting from either side.
+ *
+ * A fixed ring of ints. The writer only moves the tail and the reader only
+ * moves the head, and each publishes its move with an ordered write, so
+ * neither side ever locks, waits, or allocates. Only one thread may give
+ * inputs, and only one may take them.
+ */
+public class InputQueue {
+
+    // inputs that can wait at once, a power of two. More than a player can give in a tick
+    public static final int CAPACITY = 16;
+
+    // what poll gives when nothing is waiting
+    public static final int NO_INPUT = -1;
+
+    private static final int MASK = CAPACITY - 1;
+
+    private final int[] inputs;
+
+    // inputs ever given, and ever taken. Only the writer moves tail, only the reader head
+    private final AtomicLong tail;
+    private final AtomicLong head;
+    // inputs given before this are thrown away by the reader. Only the writer moves it
+    private final AtomicLong discardBefore;
+
+    public InputQueue() {
+        inputs = new int[CAPACITY];
+        tail = new AtomicLong();
+        head = new AtomicLong();
+        discardBefore = new AtomicLong();
+    }
+
+    // writer: queue the input for the next tick. Returns false, and drops the
+    // input, if the queue is full
+    public boolean offer(int input) {
+
+        long given = tail.get();
+        if(given - head.get() == CAPACITY) {
+            return false;
+        }
+        inputs[(int) given & MASK] = input;
+        // the input is written before the reader can see the new tail
+        tail.lazySet(given + 1);
+        return true;
+    }
+
+    // reader: the oldest waiting input, or NO_INPUT
+    public int poll() {
+
+        long taken = head.get();
+        long discarded = discardBefore.get();
+        if(taken < discarded) {
+            taken = discarded;
+            head.lazySet(taken);
+        }
+        if(taken == tail.get()) {
+            return NO_INPUT;
+        }
+        int input = inputs[(int) taken & MASK];
+        // the slot is read before the writer can reuse it
+        head.lazySet(taken + 1);
+        return input;
+    }
+
+    // reader: forget everything waiting
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    // writer: forget everything given so far. The reader skips it on its next poll, so
+    // inputs given after this are still taken. Until then the space isn't free for offer
+    public void discard() {
+        discardBefore.lazySet(tail.get());
+    }
+
+    // number of inputs waiting, for either side. Only a guess while the other side is busy
+    public int size() {
+        return (int) (tail.get() - Math.max(head.get(), discardBefore.get()));
+    }
+}
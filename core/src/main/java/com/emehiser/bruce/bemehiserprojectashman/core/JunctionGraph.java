@@ -0,0 +1,293 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.Arrays;
+
+/*
+ * Ashman Game
+ *
+ * The maze compressed into a graph of junctions joined by corridors.
+ * Has ability to build itself from a maze's walkable table when a level loads.
+ * Has ability to tell you if a square is a junction, and where a corridor leads.
+ *
+ * A node is a square where a mover has a choice to make, a square with
+ * three or four ways out, or a dead end with one. Every other open square
+ * has exactly two ways out and is part of a corridor, an edge between two
+ * nodes that is as long as the squares walked along it. A loop with no
+ * junctions on it gets one node of its own, so every open square is either
+ * a node or on an edge.
+ *
+ * Edges are kept in one array, each node's edges one after the other, and
+ * each edge is stored once from either end.
+ */
+public class JunctionGraph {
+
+    // node and edge of squares that are neither
+    public static final int NONE = -1;
+
+    // the maze the graph was built from, and its walls at the time
+    private MazeGrid grid;
+    private long wallVersion = -1;
+
+    // flat index of each node's square
+    private int nodeCount;
+    private int[] nodeSquare = new int[0];
+    // each node's edges are from edgeStart[node] to edgeStart[node + 1]
+    private int[] edgeStart = new int[1];
+
+    // the node an edge ends at, its length in steps, and the way it leaves its node
+    private int edgeCount;
+    private int[] edgeTarget = new int[0];
+    private int[] edgeLength = new int[0];
+    private int[] edgeDirection = new int[0];
+
+    // node of every flat index, or NONE
+    private int[] squareNode = new int[0];
+    // the first edge walked along every corridor square, or NONE
+    private int[] squareEdge = new int[0];
+
+    // number of builds, for tests
+    private int buildCount;
+
+    // build the graph again if the maze or its walls changed. Returns true if it built
+    public boolean update(MazeGrid mazeGrid) {
+        if(mazeGrid == grid && mazeGrid.getWallVersion() == wallVersion) {
+            return false;
+        }
+        build(mazeGrid);
+        return true;
+    }
+
+    private void build(MazeGrid mazeGrid) {
+
+        buildCount ++;
+        grid = mazeGrid;
+        wallVersion = mazeGrid.getWallVersion();
+
+        int squares = mazeGrid.getStride() * (mazeGrid.getHeight() + 2 * MazeGrid.DRAWING_BORDER);
+        if(squareNode.length != squares) {
+            squareNode = new int[squares];
+            squareEdge = new int[squares];
+        }
+        Arrays.fill(squareNode, NONE);
+        Arrays.fill(squareEdge, NONE);
+        nodeCount = 0;
+        edgeCount = 0;
+
+        // every square with a choice, or none, is a node
+        for(int y = 0; y < mazeGrid.getHeight(); y ++) {
+            int index = mazeGrid.index(0, y);
+            for(int x = 0; x < mazeGrid.getWidth(); x ++, index ++) {
+                int bits = mazeGrid.walkableBits(index);
+                if((bits & MazeGrid.WALK_OPEN) != 0 && waysOut(bits) != 2) {
+                    addNode(index);
+                }
+            }
+        }
+
+        // walk the corridors out of each node, in node order so edges stay together
+        int node = 0;
+        for(; node < nodeCount; node ++) {
+            walkEdges(node);
+        }
+
+        // what is left open is loops with no junction, start each one at its first square
+        for(int y = 0; y < mazeGrid.getHeight(); y ++) {
+            int index = mazeGrid.index(0, y);
+            for(int x = 0; x < mazeGrid.getWidth(); x ++, index ++) {
+                if((mazeGrid.walkableBits(index) & MazeGrid.WALK_OPEN) != 0
+                        && squareNode[index] == NONE && squareEdge[index] == NONE) {
+                    addNode(index);
+                    walkEdges(node ++);
+                }
+            }
+        }
+    }
+
+    private void addNode(int index) {
+        if(nodeCount == nodeSquare.length) {
+            nodeSquare = Arrays.copyOf(nodeSquare, Math.max(16, nodeCount * 2));
+            edgeStart = Arrays.copyOf(edgeStart, nodeSquare.length + 1);
+        }
+        squareNode[index] = nodeCount;
+        nodeSquare[nodeCount ++] = index;
+    }
+
+    // follow every way out of the node to the node at the other end
+    private void walkEdges(int node) {
+
+        edgeStart[node] = edgeCount;
+        int start = nodeSquare[node];
+        int bits = grid.walkableBits(start);
+        for(int direction = Mover.UP; direction <= Mover.RIGHT; direction ++) {
+            if((bits & wayBit(direction)) == 0) {
+                continue;
+            }
+            int edge = edgeCount;
+            int index = start + step(direction);
+            int way = direction;
+            int length = 1;
+            while(squareNode[index] == NONE) {
+                if(squareEdge[index] == NONE) {
+                    squareEdge[index] = edge;
+                }
+                way = corridorExit(index, way);
+                index += step(way);
+                length ++;
+            }
+            addEdge(squareNode[index], length, direction);
+        }
+        edgeStart[node + 1] = edgeCount;
+    }
+
+    private void addEdge(int target, int length, int direction) {
+        if(edgeCount == edgeTarget.length) {
+            int capacity = Math.max(16, edgeCount * 2);
+            edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+            edgeLength = Arrays.copyOf(edgeLength, capacity);
+            edgeDirection = Arrays.copyOf(edgeDirection, capacity);
+        }
+        edgeTarget[edgeCount] = target;
+        edgeLength[edgeCount] = length;
+        edgeDirection[edgeCount] = direction;
+        edgeCount ++;
+    }
+
+    // the way on out of a corridor square, for a mover that came in going the direction.
+    // Not checked, the square must have exactly two ways out
+    public int corridorExit(int index, int direction) {
+        int bits = grid.walkableBits(index) & ~wayBit(reverse(direction));
+        if((bits & wayBit(direction)) != 0) {
+            return direction;
+        }
+        for(int way = Mover.UP; way <= Mover.RIGHT; way ++) {
+            if((bits & wayBit(way)) != 0) {
+                return way;
+            }
+        }
+        return Mover.STOPPED;
+    }
+
+    public int getBuildCount() {
+        return buildCount;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    // node at the flat index, or NONE if the square is on a corridor or solid
+    public int nodeAt(int index) {
+        return squareNode[index];
+    }
+
+    // edge the corridor square at the flat index is on, or NONE
+    public int edgeAt(int index) {
+        return squareEdge[index];
+    }
+
+    // tells you if a mover at the flat index has a choice to make
+    public boolean isNode(int index) {
+        return squareNode[index] != NONE;
+    }
+
+    // flat index of the node's square
+    public int getNodeSquare(int node) {
+        checkNode(node);
+        return nodeSquare[node];
+    }
+
+    // the node's edges go from getFirstEdge to getEndEdge, exclusive
+    public int getFirstEdge(int node) {
+        checkNode(node);
+        return edgeStart[node];
+    }
+
+    public int getEndEdge(int node) {
+        checkNode(node);
+        return edgeStart[node + 1];
+    }
+
+    public int getEdgeTarget(int edge) {
+        checkEdge(edge);
+        return edgeTarget[edge];
+    }
+
+    // steps from one node to the other
+    public int getEdgeLength(int edge) {
+        checkEdge(edge);
+        return edgeLength[edge];
+    }
+
+    // the way a mover leaves the edge's node to go along it
+    public int getEdgeDirection(int edge) {
+        checkEdge(edge);
+        return edgeDirection[edge];
+    }
+
+    private void checkNode(int node) {
+        if(node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("Not a node: " + node);
+        }
+    }
+
+    private void checkEdge(int edge) {
+        if(edge < 0 || edge >= edgeCount) {
+            throw new IndexOutOfBoundsException("Not an edge: " + edge);
+        }
+    }
+
+    // flat index step of a direction
+    private int step(int direction) {
+        switch (direction) {
+            case Mover.UP:
+                return -grid.getStride();
+            case Mover.DOWN:
+                return grid.getStride();
+            case Mover.LEFT:
+                return -1;
+            case Mover.RIGHT:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    // walkable bit for a direction
+    static int wayBit(int direction) {
+        switch (direction) {
+            case Mover.UP:
+                return MazeGrid.WALK_UP;
+            case Mover.DOWN:
+                return MazeGrid.WALK_DOWN;
+            case Mover.LEFT:
+                return MazeGrid.WALK_LEFT;
+            case Mover.RIGHT:
+                return MazeGrid.WALK_RIGHT;
+            default:
+                return 0;
+        }
+    }
+
+    static int reverse(int direction) {
+        switch (direction) {
+            case Mover.UP:
+                return Mover.DOWN;
+            case Mover.DOWN:
+                return Mover.UP;
+            case Mover.LEFT:
+                return Mover.RIGHT;
+            case Mover.RIGHT:
+                return Mover.LEFT;
+            default:
+                return Mover.STOPPED;
+        }
+    }
+
+    private static int waysOut(int bits) {
+        return Integer.bitCount(bits & (MazeGrid.WALK_UP | MazeGrid.WALK_DOWN | MazeGrid.WALK_LEFT | MazeGrid.WALK_RIGHT));
+    }
+}
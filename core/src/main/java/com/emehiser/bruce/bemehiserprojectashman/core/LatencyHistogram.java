@@ -0,0 +1,126 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/*
+ * Ashman Game
+ *
+ * Counts how long something took, in nanoseconds, in fixed log sized buckets.
+ * Has ability to record a time without allocating or searching.
+ * Has ability to tell you a percentile, the longest time, and the count.
+ *
+ * Each power of two is split in SUB_BUCKETS, so a percentile is never more
+ * than 1 / SUB_BUCKETS above the time it stands for. Times from a nanosecond
+ * to about 18 minutes fit, longer ones count in the last bucket.
+ *
+ * Only one thread records. Another thread may read while it does, and gets
+ * numbers that are at most a few records behind, which is fine for looking at.
+ */
+public class LatencyHistogram {
+
+    // buckets to each power of two, a power of two itself
+    public static final int SUB_BUCKETS = 8;
+    private static final int SUB_SHIFT = 3;
+
+    // the largest power of two with its own buckets, 2^40 ns is about 18 minutes
+    private static final int MAX_EXPONENT = 40;
+
+    // the first SUB_BUCKETS are one nanosecond each, then SUB_BUCKETS per power of two
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_SHIFT + 2) * SUB_BUCKETS;
+
+    private final long[] counts;
+    private long count;
+    private long total;
+    private long max;
+
+    public LatencyHistogram() {
+        counts = new long[BUCKET_COUNT];
+    }
+
+    // count one time. Times below zero, from clocks going backwards, count as zero
+    public void record(long nanos) {
+
+        if(nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)] ++;
+        count ++;
+        total += nanos;
+        if(nanos > max) {
+            max = nanos;
+        }
+    }
+
+    // forget every time
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    // the average time, 0 if nothing was recorded
+    public long getMean() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    // the time percentile percent of the times were no longer than, as the top of the
+    // bucket it fell in but never more than the longest. 0 if nothing was recorded
+    public long getPercentile(double percentile) {
+
+        if(percentile < 0 || percentile > 100) {
+            throw new InvalidParameterException("Not a percentile: " + percentile);
+        }
+        long recorded = count;
+        if(recorded == 0) {
+            return 0;
+        }
+
+        // the rank of the time we want, at least the first
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i ++) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return Math.min(bucketTop(i), max);
+            }
+        }
+        return max;
+    }
+
+    // the bucket a time counts in
+    static int bucket(long nanos) {
+
+        if(nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if(exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        // the bits just under the top one pick the sub bucket
+        int sub = (int) (nanos >>> (exponent - SUB_SHIFT)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_SHIFT + 1) * SUB_BUCKETS + sub;
+    }
+
+    // the longest time that counts in the bucket
+    static long bucketTop(int bucket) {
+
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_SHIFT - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_SHIFT);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,87 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.InvalidParameterException;
+
+/*
+ * Ashman Game
+ *
+ * Compiles text levels into the LevelFormat, run by the app build.
+ * Has ability to size a maze from its text, and check that it can be played.
+ *
+ * Usage: LevelCompiler <output directory> <level.txt>...
+ * Each level.txt is written to the output directory as level.lvl.
+ */
+public class LevelCompiler {
+
+    public static void main(String[] args) throws IOException {
+
+        if(args.length < 1) {
+            System.err.println("Usage: LevelCompiler <output directory> <level.txt>...");
+            System.exit(1);
+        }
+
+        File outputDirectory = new File(args[0]);
+        if(! outputDirectory.isDirectory() && ! outputDirectory.mkdirs()) {
+            throw new IOException("Could not make " + outputDirectory);
+        }
+
+        for(int i = 1; i < args.length; i ++) {
+            File input = new File(args[i]);
+            String name = input.getName();
+            int dot = name.lastIndexOf('.');
+            File output = new File(outputDirectory, (dot < 0 ? name : name.substring(0, dot)) + LevelFormat.EXTENSION);
+
+            MazeGrid grid;
+            InputStream inputStream = new FileInputStream(input);
+            try {
+                grid = compile(inputStream);
+            } catch (InvalidParameterException e) {
+                throw new IOException(input + ": " + e.getMessage());
+            } finally {
+                inputStream.close();
+            }
+
+            OutputStream outputStream = new FileOutputStream(output);
+            try {
+                LevelFormat.write(grid, outputStream);
+            } finally {
+                outputStream.close();
+            }
+        }
+    }
+
+    // load a text level, as wide as its first line and as high as its number of lines
+    public static MazeGrid compile(InputStream inputStream) throws IOException {
+
+        byte[] text = LevelFormat.readFully(inputStream);
+
+        int width = 0;
+        int height = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(text), Charset.forName("US-ASCII")));
+        String line;
+        while((line = reader.readLine()) != null && ! line.isEmpty()) {
+            if(height == 0) {
+                width = line.length();
+            }
+            else if(line.length() != width) {
+                throw new InvalidParameterException("Line " + (height + 1) + " is " + line.length() + " squares, expected " + width);
+            }
+            height ++;
+        }
+
+        MazeGrid grid = new MazeGrid(width, height);
+        grid.load(new ByteArrayInputStream(text));
+        Game.validateLevel(grid);
+        return grid;
+    }
+}
@@ -0,0 +1,139 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/*
+ * Ashman Game
+ *
+ * The compiled level format, written at build time by LevelCompiler.
+ * Has ability to write a loaded maze as a compiled level.
+ * Has ability to read a compiled level with bulk copies, no parsing.
+ *
+ * A compiled level is the maze's own tables, so reading one is a copy of
+ * each table straight out of the buffer. All values are big endian.
+ *
+ *   int    MAGIC
+ *   int    FORMAT_VERSION
+ *   int    width, height        squares, without the border
+ *   float  ashman start x, y
+ *   float  ghost start x, y
+ *   int    cake count
+ *   int    n, then long[n]      solid bitset, border included
+ *   int    n, then long[n]      cake bitset
+ *   int    n, then byte[n]      walkable table, see MazeGrid.WALK_OPEN
+ */
+public class LevelFormat {
+
+    // "ASHL", the first four bytes of every compiled level
+    public static final int MAGIC = 0x4153484C;
+    // bumped whenever the layout changes, old levels must be compiled again
+    public static final int FORMAT_VERSION = 1;
+
+    // file extension for compiled levels
+    public static final String EXTENSION = ".lvl";
+
+    private LevelFormat() {
+    }
+
+    // tells you if the bytes at the start of the buffer are a compiled level
+    public static boolean isCompiled(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    // write the maze as a compiled level
+    public static void write(MazeGrid grid, OutputStream outputStream) throws IOException {
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(grid.getWidth());
+        output.writeInt(grid.getHeight());
+        output.writeFloat(grid.getAshmanStartX());
+        output.writeFloat(grid.getAshmanStartY());
+        output.writeFloat(grid.getGhostStartX());
+        output.writeFloat(grid.getGhostStartY());
+        output.writeInt(grid.getCakeCount());
+        writeLongs(output, grid.getSolidBits());
+        writeLongs(output, grid.getCakeBits());
+        byte[] walkable = grid.getWalkableTable();
+        output.writeInt(walkable.length);
+        output.write(walkable);
+        output.flush();
+    }
+
+    private static void writeLongs(DataOutputStream output, long[] values) throws IOException {
+        output.writeInt(values.length);
+        for(long value : values) {
+            output.writeLong(value);
+        }
+    }
+
+    // read a whole compiled level from the stream, in one buffer. The stream is not closed
+    public static MazeGrid read(InputStream inputStream) throws IOException {
+        return read(ByteBuffer.wrap(readFully(inputStream)));
+    }
+
+    // read a compiled level from the buffer, which may be memory mapped
+    public static MazeGrid read(ByteBuffer buffer) throws IOException {
+
+        try {
+            if(buffer.getInt() != MAGIC) {
+                throw new IOException("Not a compiled level");
+            }
+            int formatVersion = buffer.getInt();
+            if(formatVersion != FORMAT_VERSION) {
+                throw new IOException("Compiled level is version " + formatVersion + ", expected " + FORMAT_VERSION);
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if(width < 1 || height < 1 || width > MazeGrid.MAX_SIZE || height > MazeGrid.MAX_SIZE) {
+                throw new IOException("Compiled level has a bad size: " + width + "x" + height);
+            }
+
+            MazeGrid grid = new MazeGrid(width, height);
+            grid.setStarts(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+            int cakeCount = buffer.getInt();
+
+            // each table must be exactly the size the maze expects
+            readLongs(buffer, grid.getSolidBits());
+            readLongs(buffer, grid.getCakeBits());
+            byte[] walkable = grid.getWalkableTable();
+            checkLength(buffer.getInt(), walkable.length);
+            buffer.get(walkable);
+
+            grid.loadedCompiled(cakeCount);
+            return grid;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Compiled level is cut short");
+        }
+    }
+
+    private static void readLongs(ByteBuffer buffer, long[] values) throws IOException {
+        checkLength(buffer.getInt(), values.length);
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 8);
+    }
+
+    private static void checkLength(int length, int expected) throws IOException {
+        if(length != expected) {
+            throw new IOException("Compiled level table is " + length + " long, expected " + expected);
+        }
+    }
+
+    // every byte left in the stream
+    static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(inputStream.available(), 1024));
+        byte[] chunk = new byte[8192];
+        int read;
+        while((read = inputStream.read(chunk)) != -1) {
+            bytes.write(chunk, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
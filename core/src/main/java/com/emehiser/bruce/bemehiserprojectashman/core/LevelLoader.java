@@ -0,0 +1,146 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Ashman Game
+ *
+ * Loads levels on a background thread.
+ * Has ability to parse, compile, and validate a level without blocking the caller.
+ * Has ability to preload a level while another one is being played.
+ * Has ability to read compiled levels, see LevelFormat, and text levels.
+ *
+ * Everything runs on one loader thread, in the order it was asked for, so a
+ * load that follows a preload of the same level just takes the finished grid.
+ * A preloaded grid is handed out once, since the game changes the grid it plays.
+ */
+public class LevelLoader {
+
+    // opens the stream for a level, called on the loader thread
+    public interface LevelSource {
+        InputStream open(int level) throws IOException;
+    }
+
+    // told how a load went, on the loader thread
+    public interface LevelListener {
+        void onLevelLoaded(int level, MazeGrid levelGrid);
+
+        void onLevelFailed(int level, Exception e);
+    }
+
+    private final LevelSource source;
+    private final ExecutorService executor;
+
+    // preloaded level grids by level, or why they failed. Only used on the loader thread
+    private final MazeGrid[] preloaded;
+    private final Exception[] preloadFailures;
+
+    public LevelLoader(LevelSource source) {
+
+        if(source == null) {
+            throw new NullPointerException("Level source is null");
+        }
+        this.source = source;
+        preloaded = new MazeGrid[Game.LEVEL_COUNT + 1];
+        preloadFailures = new Exception[Game.LEVEL_COUNT + 1];
+
+        // a daemon, so a forgotten loader doesn't keep the process alive
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ashman-level-loader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // start loading the level, so a later load of it is ready right away
+    public void preload(final int level) {
+
+        checkLevel(level);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(preloaded[level] != null || preloadFailures[level] != null) {
+                    return;
+                }
+                try {
+                    preloaded[level] = parse(level);
+                } catch (Exception e) {
+                    preloadFailures[level] = e;
+                }
+            }
+        });
+    }
+
+    // load the level, and tell the listener on the loader thread
+    public void load(final int level, final LevelListener listener) {
+
+        checkLevel(level);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                // take the preloaded grid, it finished before this ran. Otherwise parse it now
+                MazeGrid levelGrid = preloaded[level];
+                Exception failure = preloadFailures[level];
+                preloaded[level] = null;
+                preloadFailures[level] = null;
+
+                try {
+                    if(failure != null) {
+                        throw failure;
+                    }
+                    if(levelGrid == null) {
+                        levelGrid = parse(level);
+                    }
+                } catch (Exception e) {
+                    listener.onLevelFailed(level, e);
+                    return;
+                }
+                listener.onLevelLoaded(level, levelGrid);
+            }
+        });
+    }
+
+    // stop the loader thread, loads not yet finished are dropped
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // read, compile, and validate the level. A compiled level is read with bulk copies,
+    // anything else is taken to be a text level
+    private MazeGrid parse(int level) throws IOException {
+
+        byte[] bytes;
+        InputStream inputStream = source.open(level);
+        try {
+            bytes = LevelFormat.readFully(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if(LevelFormat.isCompiled(buffer)) {
+            MazeGrid levelGrid = LevelFormat.read(buffer);
+            Game.validateLevel(levelGrid);
+            return levelGrid;
+        }
+        // sized from the text, and checked the same way
+        return LevelCompiler.compile(new ByteArrayInputStream(bytes));
+    }
+
+    private static void checkLevel(int level) {
+        if(level < 1 || level > Game.LEVEL_COUNT) {
+            throw new InvalidParameterException("Not a valid level: " + level);
+        }
+    }
+}
@@ -0,0 +1,652 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Ashman Game
+ *
+ * Contains the state of the maze grid.
+ * Has ability to load a level from a stream.
+ * Has ability to tell movers where they can move.
+ * Has ability to have cakes chomped out of it.
+ *
+ * The maze is stored flat, row by row, with a solid border all the way
+ * around. Solid squares and cakes are one bit each in a long[] bitset.
+ * The get and set methods check their arguments, the methods that take
+ * a flat index from index(x, y) do not.
+ *
+ * Mazes can be up to MAX_SIZE squares on a side. Changes are tracked per
+ * chunk of CHUNK_SIZE by CHUNK_SIZE squares, so copies of a big maze only
+ * have to copy, and redraw, the chunks that changed.
+ *
+ * Contains no android code, so it can be run and timed on a plain jvm.
+ */
+public class MazeGrid {
+
+    // the width and height of maze which will be drawn on canvas
+    public final static int DRAWING_WIDTH = 14;
+    public final static int DRAWING_HEIGHT = 14;
+    public final static int DRAWING_BORDER = 1;
+
+    // in a text level, an empty square where ashman or the ghosts start
+    public final static char ASHMAN_START_CHAR = 'A';
+    public final static char GHOST_START_CHAR = 'G';
+
+    // Maze numbers
+    public final static int SOLID_VAL = 0;
+    public final static int EMPTY_VAL = 1;
+    public final static int CAKE_VAL = 2;
+
+    // walkable table bits. A square is open if it isn't solid, and each
+    // direction bit says the neighbouring square that way is open
+    public final static int WALK_OPEN = 1;
+    public final static int WALK_UP = 2;
+    public final static int WALK_DOWN = 4;
+    public final static int WALK_LEFT = 8;
+    public final static int WALK_RIGHT = 16;
+
+    // largest maze, in squares on a side
+    public final static int MAX_SIZE = 1024;
+
+    // chunks are CHUNK_SIZE squares on a side
+    public final static int CHUNK_SHIFT = 3;
+    public final static int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    // size of the maze in squares, without the border
+    private final int width;
+    private final int height;
+    // distance between rows of the flat arrays, border included
+    private final int stride;
+
+    // a bit per square, set when the square is solid. The border is always solid
+    private final long[] solid;
+    // a bit per square, set when the square has a cake
+    private final long[] cakes;
+    // count of current cakes in maze
+    private int cakeCount;
+    // changes every time a square changes, so copies of the maze know when they are stale.
+    // Versions are never shared between grids, so a new level never looks like the old one
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private long version;
+    // the version of the last time a square turned solid or open
+    private long wallVersion;
+    // the version of the last change in each chunk, row by row
+    private final int chunksAcross;
+    private final int chunksDown;
+    private final long[] chunkVersions;
+    // the version of the last wall change in each chunk
+    private final long[] chunkWallVersions;
+
+    // walkable bits for each square, compiled when the maze is loaded
+    private final byte[] walkable;
+
+    // where ashman and the ghosts start on this maze
+    private float ashmanStartX = Game.ASHMAN_START_X;
+    private float ashmanStartY = Game.ASHMAN_START_Y;
+    private float ghostStartX = Game.GHOST_START_X;
+    private float ghostStartY = Game.GHOST_START_Y;
+
+    public MazeGrid() {
+        this(DRAWING_WIDTH, DRAWING_HEIGHT);
+    }
+
+    public MazeGrid(int width, int height) {
+
+        if(width < 1 || height < 1 || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new InvalidParameterException("Maze must be from 1 to " + MAX_SIZE + " squares on a side: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        stride = width + 2 * DRAWING_BORDER;
+
+        // create maze with solid borders
+        int squares = stride * (height + 2 * DRAWING_BORDER);
+        solid = new long[(squares + 63) >>> 6];
+        cakes = new long[(squares + 63) >>> 6];
+        walkable = new byte[squares];
+        Arrays.fill(solid, -1L);
+
+        chunksAcross = (width + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        chunksDown = (height + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        chunkVersions = new long[chunksAcross * chunksDown];
+        chunkWallVersions = new long[chunksAcross * chunksDown];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCakeCount() {
+        return cakeCount;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // changes only when the walls change, not when cakes are chomped
+    public long getWallVersion() {
+        return wallVersion;
+    }
+
+    // distance between rows of flat indexes, see index
+    public int getStride() {
+        return stride;
+    }
+
+    public int getChunksAcross() {
+        return chunksAcross;
+    }
+
+    public int getChunksDown() {
+        return chunksDown;
+    }
+
+    // version of the last change to a square in the chunk, chunks go row by row
+    public long getChunkVersion(int chunk) {
+        return chunkVersions[chunk];
+    }
+
+    // version of the last square in the chunk to turn solid or open
+    public long getChunkWallVersion(int chunk) {
+        return chunkWallVersions[chunk];
+    }
+
+    public float getAshmanStartX() {
+        return ashmanStartX;
+    }
+
+    public float getAshmanStartY() {
+        return ashmanStartY;
+    }
+
+    public float getGhostStartX() {
+        return ghostStartX;
+    }
+
+    public float getGhostStartY() {
+        return ghostStartY;
+    }
+
+    // set where ashman and the ghosts start, see Game.validateLevel
+    public void setStarts(float ashmanX, float ashmanY, float ghostX, float ghostY) {
+        ashmanStartX = ashmanX;
+        ashmanStartY = ashmanY;
+        ghostStartX = ghostX;
+        ghostStartY = ghostY;
+    }
+
+    // read a maze from the stream. The stream is not closed.
+    public void load(InputStream inputStream) throws IOException {
+
+        Scanner scanner;
+
+        // set total cakes to zero, and every square back to solid
+        cakeCount = 0;
+        Arrays.fill(solid, -1L);
+        Arrays.fill(cakes, 0L);
+
+        // open scanner and read file into array
+        scanner = new Scanner(inputStream);
+        // read a maze from the file
+        for(int i = 0; i < height; i ++) {
+            // scan each line and split it into the maze
+            char[] temp = scanner.nextLine().toCharArray();
+            for(int j = 0; j < width; j ++) {
+                int t = Character.getNumericValue(temp[j]);
+                int index = index(j, i);
+                // an empty square where ashman or the ghosts start
+                if(temp[j] == ASHMAN_START_CHAR || temp[j] == GHOST_START_CHAR) {
+                    if(temp[j] == ASHMAN_START_CHAR) {
+                        ashmanStartX = j + .5f;
+                        ashmanStartY = i + .5f;
+                    }
+                    else {
+                        ghostStartX = j + .5f;
+                        ghostStartY = i + .5f;
+                    }
+                    t = EMPTY_VAL;
+                }
+                if(t != SOLID_VAL) {
+                    clearBit(solid, index);
+                }
+                // add all the cakes to our current cake count
+                if(t == CAKE_VAL) {
+                    setBit(cakes, index);
+                    cakeCount ++;
+                }
+            }
+        }
+        // scanner swallows its own io errors
+        if(scanner.ioException() != null) {
+            throw scanner.ioException();
+        }
+
+        // work out where movers can go once, instead of on every move
+        compileWalkable();
+        changedAll();
+    }
+
+    // the raw tables, border included, for LevelFormat to read and write in bulk
+    long[] getSolidBits() {
+        return solid;
+    }
+
+    long[] getCakeBits() {
+        return cakes;
+    }
+
+    byte[] getWalkableTable() {
+        return walkable;
+    }
+
+    // the raw tables were filled in by LevelFormat
+    void loadedCompiled(int cakes) {
+        cakeCount = cakes;
+        changedAll();
+    }
+
+    // every square changed
+    private void changedAll() {
+        version = VERSIONS.incrementAndGet();
+        wallVersion = version;
+        Arrays.fill(chunkVersions, version);
+        Arrays.fill(chunkWallVersions, version);
+    }
+
+    // the square changed. The border isn't in any chunk
+    private void changed(int x, int y) {
+        version = VERSIONS.incrementAndGet();
+        if(x < width && y < height) {
+            chunkVersions[(y >> CHUNK_SHIFT) * chunksAcross + (x >> CHUNK_SHIFT)] = version;
+        }
+    }
+
+    // checks if the maze restrains the mover from moving to this location
+    public boolean canMove(float destinationX, float destinationY, float moverRadius, int moverDirection) {
+
+        // make sure the destination center is within the bounds of the maze
+        if (destinationY + moverRadius > height ||
+                destinationX + moverRadius > width ||
+                destinationY - moverRadius < 0 ||
+                destinationX - moverRadius < 0) {
+            return false;
+        }
+
+        // check the squares under ashman's leading edge, given direction. The edge is
+        // checked at its center and both ends, which for a mover less than a square
+        // wide is at most two squares side by side
+        switch (moverDirection) {
+            case Mover.UP:
+                return edgeOpen((int) (destinationY - moverRadius), destinationX, moverRadius, WALK_RIGHT, stride, 1);
+            case Mover.DOWN:
+                return edgeOpen((int) (destinationY + moverRadius), destinationX, moverRadius, WALK_RIGHT, stride, 1);
+            case Mover.LEFT:
+                return edgeOpen((int) (destinationX - moverRadius), destinationY, moverRadius, WALK_DOWN, 1, stride);
+            case Mover.RIGHT:
+                return edgeOpen((int) (destinationX + moverRadius), destinationY, moverRadius, WALK_DOWN, 1, stride);
+            // default, our mover is not moving, and we don't need to calculate because we haven't moved
+            default:
+                return true;
+        }
+    }
+
+    // where a mover moving the distance in the direction ends up: its new x going left or right,
+    // its new y going up or down. Every row or column its leading edge crosses is checked, the
+    // one it starts in too, so no step is long enough to pass through a wall. A blocked mover
+    // stops flush against the first solid square, wherever the step would have ended.
+    // The border is solid, so the edge of the maze blocks like any other wall
+    public float sweep(float x, float y, float moverRadius, int moverDirection, float distance) {
+
+        switch (moverDirection) {
+            case Mover.UP: {
+                int line = (int) (y - moverRadius);
+                int end = (int) Math.floor(y - distance - moverRadius);
+                for(int l = line; l >= end; l --) {
+                    if(l < 0 || ! edgeOpen(l, x, moverRadius, WALK_RIGHT, stride, 1)) {
+                        return flushAfter(y, moverRadius, l);
+                    }
+                }
+                return y - distance;
+            }
+            case Mover.DOWN: {
+                int line = (int) (y + moverRadius);
+                int end = (int) (y + distance + moverRadius);
+                for(int l = line; l <= end; l ++) {
+                    if(l >= height || ! edgeOpen(l, x, moverRadius, WALK_RIGHT, stride, 1)) {
+                        return flushBefore(y, moverRadius, l);
+                    }
+                }
+                return y + distance;
+            }
+            case Mover.LEFT: {
+                int line = (int) (x - moverRadius);
+                int end = (int) Math.floor(x - distance - moverRadius);
+                for(int l = line; l >= end; l --) {
+                    if(l < 0 || ! edgeOpen(l, y, moverRadius, WALK_DOWN, 1, stride)) {
+                        return flushAfter(x, moverRadius, l);
+                    }
+                }
+                return x - distance;
+            }
+            case Mover.RIGHT: {
+                int line = (int) (x + moverRadius);
+                int end = (int) (x + distance + moverRadius);
+                for(int l = line; l <= end; l ++) {
+                    if(l >= width || ! edgeOpen(l, y, moverRadius, WALK_DOWN, 1, stride)) {
+                        return flushBefore(x, moverRadius, l);
+                    }
+                }
+                return x + distance;
+            }
+            // a stopped mover has no way to go, so no x or y to answer with
+            default:
+                throw new InvalidParameterException("Not a direction: " + moverDirection);
+        }
+    }
+
+    // sweep in 16.16 fixed point, see FixedPoint. The same as sweep, with squares found by a shift,
+    // and flush exactly one step of fixed point before the solid square
+    public int sweepFixed(int x, int y, int moverRadius, int moverDirection, int distance) {
+
+        int shift = FixedPoint.SHIFT;
+        switch (moverDirection) {
+            case Mover.UP: {
+                int line = (y - moverRadius) >> shift;
+                int end = (y - distance - moverRadius) >> shift;
+                for(int l = line; l >= end; l --) {
+                    if(l < 0 || ! edgeOpenFixed(l, x, moverRadius, WALK_RIGHT, stride, 1)) {
+                        return Math.min(((l + 1) << shift) + moverRadius, y);
+                    }
+                }
+                return y - distance;
+            }
+            case Mover.DOWN: {
+                int line = (y + moverRadius) >> shift;
+                int end = (y + distance + moverRadius) >> shift;
+                for(int l = line; l <= end; l ++) {
+                    if(l >= height || ! edgeOpenFixed(l, x, moverRadius, WALK_RIGHT, stride, 1)) {
+                        return Math.max((l << shift) - 1 - moverRadius, y);
+                    }
+                }
+                return y + distance;
+            }
+            case Mover.LEFT: {
+                int line = (x - moverRadius) >> shift;
+                int end = (x - distance - moverRadius) >> shift;
+                for(int l = line; l >= end; l --) {
+                    if(l < 0 || ! edgeOpenFixed(l, y, moverRadius, WALK_DOWN, 1, stride)) {
+                        return Math.min(((l + 1) << shift) + moverRadius, x);
+                    }
+                }
+                return x - distance;
+            }
+            case Mover.RIGHT: {
+                int line = (x + moverRadius) >> shift;
+                int end = (x + distance + moverRadius) >> shift;
+                for(int l = line; l <= end; l ++) {
+                    if(l >= width || ! edgeOpenFixed(l, y, moverRadius, WALK_DOWN, 1, stride)) {
+                        return Math.max((l << shift) - 1 - moverRadius, x);
+                    }
+                }
+                return x + distance;
+            }
+            default:
+                throw new InvalidParameterException("Not a direction: " + moverDirection);
+        }
+    }
+
+    // the furthest center, going down or right from center, whose leading edge is still before the solid line
+    private static float flushBefore(float center, float moverRadius, int line) {
+        float flush = line - moverRadius;
+        while(flush + moverRadius >= line) {
+            flush = Math.nextAfter(flush, Double.NEGATIVE_INFINITY);
+        }
+        return Math.max(flush, center);
+    }
+
+    // the furthest center, going up or left from center, whose leading edge is still after the solid line
+    private static float flushAfter(float center, float moverRadius, int line) {
+        float flush = line + 1 + moverRadius;
+        while(flush - moverRadius < line + 1) {
+            flush = Math.nextAfter(flush, Double.POSITIVE_INFINITY);
+        }
+        return Math.min(flush, center);
+    }
+
+    // tells you if the leading edge at line (a row or column) is clear of solid squares.
+    // along is the mover center along the edge, and the steps move one square across and along it
+    private boolean edgeOpen(int line, float along, float moverRadius, int nextBit, int lineStep, int alongStep) {
+        return edgeOpen(line, (int) (along - moverRadius), (int) along, (int) (along + moverRadius), nextBit, lineStep, alongStep);
+    }
+
+    // edgeOpen with the mover center along the edge in fixed point
+    private boolean edgeOpenFixed(int line, int along, int moverRadius, int nextBit, int lineStep, int alongStep) {
+        int shift = FixedPoint.SHIFT;
+        return edgeOpen(line, (along - moverRadius) >> shift, along >> shift, (along + moverRadius) >> shift, nextBit, lineStep, alongStep);
+    }
+
+    // edgeOpen with the squares under both ends of the edge, and under its middle
+    private boolean edgeOpen(int line, int first, int middle, int last, int nextBit, int lineStep, int alongStep) {
+
+        int origin = index(0, 0) + line * lineStep;
+        int index = origin + first * alongStep;
+
+        // the edge covers one square, or two next to each other: one read and a bit test
+        if(last - first <= 1) {
+            int need = last == first ? WALK_OPEN : WALK_OPEN | nextBit;
+            return (walkable[index] & need) == need;
+        }
+
+        // a mover wider than a square, check the center and both ends one at a time
+        return (walkable[index] & WALK_OPEN) != 0
+                && (walkable[origin + middle * alongStep] & WALK_OPEN) != 0
+                && (walkable[origin + last * alongStep] & WALK_OPEN) != 0;
+    }
+
+    // build the walkable table for the whole maze, border included
+    private void compileWalkable() {
+        for(int index = 0; index < walkable.length; index ++) {
+            walkable[index] = walkableAt(index);
+        }
+    }
+
+    // rebuild the walkable table around a square that changed
+    private void compileWalkable(int index) {
+        for(int j = -stride; j <= stride; j += stride) {
+            for(int i = -1; i <= 1; i ++) {
+                walkable[index + j + i] = walkableAt(index + j + i);
+            }
+        }
+    }
+
+    // the open bit for the square, and a bit for each neighbour that is open
+    private byte walkableAt(int index) {
+        int column = index % stride;
+        int bits = 0;
+        if(isOpen(index)) {
+            bits |= WALK_OPEN;
+        }
+        if(index >= stride && isOpen(index - stride)) {
+            bits |= WALK_UP;
+        }
+        if(index + stride < walkable.length && isOpen(index + stride)) {
+            bits |= WALK_DOWN;
+        }
+        if(column > 0 && isOpen(index - 1)) {
+            bits |= WALK_LEFT;
+        }
+        if(column < stride - 1 && isOpen(index + 1)) {
+            bits |= WALK_RIGHT;
+        }
+        return (byte) bits;
+    }
+
+    // tells you if the point is inside the maze and not in a solid square
+    public boolean isOpenAt(float x, float y) {
+        return x >= 0 && x < width && y >= 0 && y < height
+                && ! isSolid(index((int) x, (int) y));
+    }
+
+    // bits of the walkable table for the square
+    public int getWalkable(int x, int y) {
+        checkPosition(x, y);
+        return walkable[index(x, y)];
+    }
+
+    // removes cake in square, and returns true if there was a cake to remove
+    public boolean chompCake(float x, float y) {
+
+        // cast the values to ints
+        int intX = (int) x;
+        int intY = (int) y;
+        checkPosition(intX, intY);
+
+        // if the maze position is a cake, eat the cake
+        int index = index(intX, intY);
+        if(isCake(index)) {
+            clearBit(cakes, index);
+            // decrement cake count
+            cakeCount --;
+            changed(intX, intY);
+            return true;
+        }
+        return false;
+    }
+
+    // remove all but one cake
+    public void chompAllButOneCake() {
+
+        for(int i = 0; i < height && cakeCount > 1; i ++) {
+            for(int j = 0; j < width && cakeCount > 1; j ++) {
+                if(getMazePos(j, i) == CAKE_VAL) {
+                    setMazePos(j, i, EMPTY_VAL);
+                    cakeCount --;
+                }
+            }
+        }
+    }
+
+    // copy the maze values, without the border, row by row into cells
+    public void copyCells(byte[] cells) {
+        int i = 0;
+        for(int y = 0; y < height; y ++) {
+            int index = index(0, y);
+            for(int x = 0; x < width; x ++) {
+                cells[i ++] = (byte) valueAt(index ++);
+            }
+        }
+    }
+
+    // copy the maze values of one chunk into cells, which are width wide and row by row
+    public void copyChunk(int chunk, byte[] cells) {
+        int left = (chunk % chunksAcross) << CHUNK_SHIFT;
+        int top = (chunk / chunksAcross) << CHUNK_SHIFT;
+        int right = Math.min(left + CHUNK_SIZE, width);
+        int bottom = Math.min(top + CHUNK_SIZE, height);
+        for(int y = top; y < bottom; y ++) {
+            int index = index(left, y);
+            int i = y * width + left;
+            for(int x = left; x < right; x ++) {
+                cells[i ++] = (byte) valueAt(index ++);
+            }
+        }
+    }
+
+    // flat index of the square. Not checked, the border squares from -1 to width and height have one too
+    public int index(int x, int y) {
+        return (y + DRAWING_BORDER) * stride + x + DRAWING_BORDER;
+    }
+
+    // maze value of the square at the flat index. Not checked
+    public int valueAt(int index) {
+        if(isSolid(index)) {
+            return SOLID_VAL;
+        }
+        return isCake(index) ? CAKE_VAL : EMPTY_VAL;
+    }
+
+    // tells you if the square at the flat index is solid. Not checked
+    public boolean isSolid(int index) {
+        return (solid[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // bits of the walkable table for the square at the flat index. Not checked
+    public int walkableBits(int index) {
+        return walkable[index];
+    }
+
+    // tells you if the square at the flat index has a cake. Not checked
+    public boolean isCake(int index) {
+        return (cakes[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private boolean isOpen(int index) {
+        return ! isSolid(index);
+    }
+
+    // get the value at maze[row][col] with accounting for border
+    public int getMazePos(int x, int y) throws IndexOutOfBoundsException {
+        checkPosition(x, y);
+        return valueAt(index(x, y));
+    }
+
+    // set a maze position to either 0, 1, or 2
+    public void setMazePos(int x, int y, int val) {
+
+        // check value
+        if(val < 0 || val > 2)
+            throw new InvalidParameterException("Value must be either 0, 1, or 2");
+        // make sure the square is in the maze, the border is not for setting
+        if(y < 0 || y >= height
+                || x < 0 || x >= width) {
+            throw new IndexOutOfBoundsException("Value falls outside of the dimensions of the maze");
+        }
+        // set the maze value
+        int index = index(x, y);
+        boolean wasSolid = isSolid(index);
+        if(val == SOLID_VAL) {
+            setBit(solid, index);
+        }
+        else {
+            clearBit(solid, index);
+        }
+        if(val == CAKE_VAL) {
+            setBit(cakes, index);
+        }
+        else {
+            clearBit(cakes, index);
+        }
+        changed(x, y);
+        // a square turning solid or open changes where movers can go
+        if(wasSolid != (val == SOLID_VAL)) {
+            compileWalkable(index);
+            wallVersion = version;
+            chunkWallVersions[(y >> CHUNK_SHIFT) * chunksAcross + (x >> CHUNK_SHIFT)] = version;
+        }
+    }
+
+    // the checked accessors only reach the maze, not its border
+    private void checkPosition(int x, int y) {
+        if(x < 0 || x >= width
+                || y < 0 || y >= height)
+            throw new IndexOutOfBoundsException("getMazePos(int, int) must have values within DIMENSION_WIDTH and DIMENSION_HEIGHT");
+    }
+
+    private static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clearBit(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+}
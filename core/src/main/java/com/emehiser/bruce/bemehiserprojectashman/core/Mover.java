@@ -0,0 +1,155 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/**
+ * Created by Bruce Emehiser on 11/10/2015.
+ *
+ * This class contains the behaviour shared by Ashman and the Ghosts.
+ * The state of each mover lives in the game's MoverStore, and a mover
+ * is passed around as its handle. There is one behaviour per kind of
+ * mover, not one per mover.
+ *
+ * A step is swept along the way it goes, see MazeGrid.sweep, so a mover
+ * of any speed stops at the first wall instead of passing through it.
+ * In fixed point mode, see MoverStore, the step is swept in fixed point.
+ */
+public abstract class Mover {
+
+    // definition of keys for current direction
+    public static final int STOPPED = 0;
+    public static final int UP = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 3;
+    public static final int RIGHT = 4;
+
+    // take this mover's turn for one tick
+    public abstract void move(Game game, int handle);
+
+    public void move(Game game, int handle, int direction) {
+
+        MoverStore movers = game.getMovers();
+
+        // if we are not moving, return
+        if(direction == Mover.STOPPED) {
+            movers.direction[handle] = Mover.STOPPED;
+            return;
+        }
+        // else
+        movers.direction[handle] = direction;
+
+        // sweep the whole step, up to the first wall in the way, however long the step is
+        boolean blocked = movers.fixedPoint ? sweepFixed(game, movers, handle, direction)
+                : sweep(game, movers, handle, direction);
+        // if a wall cut the step short, stop against it
+        if(blocked) {
+            movers.direction[handle] = Mover.STOPPED;
+        }
+    }
+
+    // take the step in floats, and return true if a wall cut it short
+    private boolean sweep(Game game, MoverStore movers, int handle, int direction) {
+
+        float x = movers.x[handle];
+        float y = movers.y[handle];
+        float distance = stepDistance(movers, handle);
+        float swept = game.getGrid().sweep(x, y, movers.radius[handle], direction, distance);
+        float finalX = direction == Mover.LEFT || direction == Mover.RIGHT ? swept : x;
+        float finalY = direction == Mover.UP || direction == Mover.DOWN ? swept : y;
+
+        // if the mover got anywhere, move it there
+        if(finalX != x || finalY != y) {
+            // invalidate current location
+            invalidateMoverPosition(game, movers, handle);
+            // moveMover to new location
+            movers.x[handle] = finalX;
+            movers.y[handle] = finalY;
+            game.moverMoved(handle);
+            // invalidate new mover location
+            invalidateMoverPosition(game, movers, handle);
+        }
+        return finalX != stepX(x, direction, distance) || finalY != stepY(y, direction, distance);
+    }
+
+    // take the step in fixed point, and return true if a wall cut it short
+    private boolean sweepFixed(Game game, MoverStore movers, int handle, int direction) {
+
+        int x = movers.fixedX[handle];
+        int y = movers.fixedY[handle];
+        boolean across = direction == Mover.LEFT || direction == Mover.RIGHT;
+        int distance = movers.fixedStep[handle];
+        int swept = game.getGrid().sweepFixed(x, y, movers.fixedRadius[handle], direction, distance);
+
+        int from = across ? x : y;
+        if(swept != from) {
+            invalidateMoverPosition(game, movers, handle);
+            movers.setFixedPosition(handle, across ? swept : x, across ? y : swept);
+            game.moverMoved(handle);
+            invalidateMoverPosition(game, movers, handle);
+        }
+        return swept != stepFixed(from, direction, distance);
+    }
+
+    // tells you if the mover could take a step in the direction this tick
+    public boolean canMove(Game game, int handle, int direction) {
+
+        MoverStore movers = game.getMovers();
+        if(movers.fixedPoint && direction != Mover.STOPPED) {
+            // the whole step is open
+            int from = direction == Mover.LEFT || direction == Mover.RIGHT ? movers.fixedX[handle] : movers.fixedY[handle];
+            int distance = movers.fixedStep[handle];
+            return game.getGrid().sweepFixed(movers.fixedX[handle], movers.fixedY[handle], movers.fixedRadius[handle],
+                    direction, distance) == stepFixed(from, direction, distance);
+        }
+        float distance = stepDistance(movers, handle);
+        return game.getGrid().canMove(stepX(movers.x[handle], direction, distance),
+                stepY(movers.y[handle], direction, distance), movers.radius[handle], direction);
+    }
+
+    // distance mover will moveMover in this animation. Every animation is a fixed length
+    private static float stepDistance(MoverStore movers, int handle) {
+        return movers.speed[handle] * Game.SECONDS_PER_TICK;
+    }
+
+    // the coordinate along the way the mover goes, a whole step on
+    private static int stepFixed(int along, int direction, int distance) {
+        return direction == Mover.UP || direction == Mover.LEFT ? along - distance : along + distance;
+    }
+
+    private static float stepX(float x, int direction, float distance) {
+        switch (direction) {
+            case Mover.LEFT:
+                return x - distance;
+            case Mover.RIGHT:
+                return x + distance;
+            default:
+                return x;
+        }
+    }
+
+    private static float stepY(float y, int direction, float distance) {
+        switch (direction) {
+            case Mover.UP:
+                return y - distance;
+            case Mover.DOWN:
+                return y + distance;
+            default:
+                return y;
+        }
+    }
+
+    // redraw the squares around where the mover is now
+    void invalidateMoverPosition(Game game, MoverStore movers, int handle) {
+
+        float x = movers.x[handle];
+        float y = movers.y[handle];
+        float radius = movers.radius[handle];
+
+        // get rectangle
+        int top = (int) (y - radius - 1);
+        int bottom = (int) (y + radius + 1);
+        int left = (int) (x - radius - 1);
+        int right = (int) (x + radius + 1);
+
+        // call to invalidate
+        game.invalidate(left, top, right, bottom);
+    }
+}
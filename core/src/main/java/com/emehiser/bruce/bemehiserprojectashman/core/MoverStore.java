@@ -0,0 +1,248 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/*
+ * Ashman Game
+ *
+ * Holds the state of every mover in parallel primitive arrays.
+ * A mover is an int handle, its index into the arrays. Handles are given
+ * out in the order movers are added, which is also the order they animate.
+ *
+ * Walking every mover is a linear scan over contiguous arrays, with no
+ * hashing and no objects per mover. What a mover does with its turn is
+ * decided by the Mover behaviour for its kind.
+ *
+ * In fixed point mode a mover's real location is fixedX and fixedY, 16.16
+ * fixed point, see FixedPoint. x and y then follow them, always in the same
+ * square, for drawing and for code that doesn't care about the mode.
+ */
+public class MoverStore {
+
+    // kinds of movers
+    public static final byte KIND_ASHMAN = 0;
+    public static final byte KIND_GHOST = 1;
+    public static final int KIND_COUNT = 2;
+
+    // radius of every mover
+    public static final float DEFAULT_RADIUS = .4f;
+
+    // number of movers in the store
+    int count;
+
+    // current x and y location on game map
+    float[] x;
+    float[] y;
+
+    // x and y location at the start of the current tick
+    float[] previousX;
+    float[] previousY;
+
+    // radius of the mover
+    float[] radius;
+
+    // the speed of the mover in blocks per second
+    float[] speed;
+
+    // location and radius in 16.16 fixed point, and the distance moved each tick.
+    // The location is only kept in fixed point mode, the radius and step always are
+    int[] fixedX;
+    int[] fixedY;
+    int[] fixedRadius;
+    int[] fixedStep;
+
+    // the real location is fixedX and fixedY, not x and y
+    boolean fixedPoint;
+
+    // the current direction the mover is moving
+    int[] direction;
+
+    // the direction the mover turns to as soon as it can, or Mover.STOPPED
+    int[] turn;
+
+    // ashman or ghost
+    byte[] kind;
+
+    public MoverStore() {
+        this(8);
+    }
+
+    public MoverStore(int capacity) {
+        x = new float[capacity];
+        y = new float[capacity];
+        previousX = new float[capacity];
+        previousY = new float[capacity];
+        radius = new float[capacity];
+        speed = new float[capacity];
+        fixedX = new int[capacity];
+        fixedY = new int[capacity];
+        fixedRadius = new int[capacity];
+        fixedStep = new int[capacity];
+        direction = new int[capacity];
+        turn = new int[capacity];
+        kind = new byte[capacity];
+    }
+
+    // add a stopped mover at the location, and return its handle
+    public int add(byte moverKind, float moverX, float moverY, float moverSpeed) {
+
+        if(moverKind < 0 || moverKind >= KIND_COUNT) {
+            throw new InvalidParameterException("Not a mover kind: " + moverKind);
+        }
+        if(moverSpeed < 0) {
+            throw new InvalidParameterException("Speed cannot be negative");
+        }
+
+        // make room
+        if(count == x.length) {
+            grow(count * 2);
+        }
+
+        int handle = count ++;
+        kind[handle] = moverKind;
+        radius[handle] = DEFAULT_RADIUS;
+        fixedRadius[handle] = FixedPoint.fromFloat(DEFAULT_RADIUS);
+        speed[handle] = moverSpeed;
+        fixedStep[handle] = FixedPoint.fromFloat(moverSpeed * Game.SECONDS_PER_TICK);
+        direction[handle] = Mover.STOPPED;
+        turn[handle] = Mover.STOPPED;
+        setPosition(handle, moverX, moverY);
+        return handle;
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        fixedX = Arrays.copyOf(fixedX, capacity);
+        fixedY = Arrays.copyOf(fixedY, capacity);
+        fixedRadius = Arrays.copyOf(fixedRadius, capacity);
+        fixedStep = Arrays.copyOf(fixedStep, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        turn = Arrays.copyOf(turn, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+    }
+
+    // remove every mover. The arrays are kept for the next level
+    public void clear() {
+        count = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public float getX(int handle) {
+        return x[handle];
+    }
+
+    public float getY(int handle) {
+        return y[handle];
+    }
+
+    // the square the mover's center is in
+    public int getSquareX(int handle) {
+        return fixedPoint ? fixedX[handle] >> FixedPoint.SHIFT : (int) x[handle];
+    }
+
+    public int getSquareY(int handle) {
+        return fixedPoint ? fixedY[handle] >> FixedPoint.SHIFT : (int) y[handle];
+    }
+
+    public int getFixedX(int handle) {
+        return fixedX[handle];
+    }
+
+    public int getFixedY(int handle) {
+        return fixedY[handle];
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    // move every mover, from now on, in fixed point or in floats. Movers already in
+    // the store keep their location, as near as fixed point can hold it
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+        if(fixedPoint) {
+            for(int handle = 0; handle < count; handle ++) {
+                setPosition(handle, x[handle], y[handle]);
+            }
+        }
+    }
+
+    public float getRadius(int handle) {
+        return radius[handle];
+    }
+
+    public float getSpeed(int handle) {
+        return speed[handle];
+    }
+
+    public int getDirection(int handle) {
+        return direction[handle];
+    }
+
+    public int getTurn(int handle) {
+        return turn[handle];
+    }
+
+    public byte getKind(int handle) {
+        return kind[handle];
+    }
+
+    // place the mover, without drawing it sliding from its old location
+    void setPosition(int handle, float moverX, float moverY) {
+        if(fixedPoint) {
+            fixedX[handle] = FixedPoint.fromFloat(moverX);
+            fixedY[handle] = FixedPoint.fromFloat(moverY);
+            moverX = FixedPoint.toFloat(fixedX[handle]);
+            moverY = FixedPoint.toFloat(fixedY[handle]);
+        }
+        x[handle] = moverX;
+        y[handle] = moverY;
+        previousX[handle] = moverX;
+        previousY[handle] = moverY;
+    }
+
+    // move the mover to a fixed point location, and x and y with it. Fixed point mode only
+    void setFixedPosition(int handle, int moverX, int moverY) {
+        fixedX[handle] = moverX;
+        fixedY[handle] = moverY;
+        x[handle] = FixedPoint.toFloat(moverX);
+        y[handle] = FixedPoint.toFloat(moverY);
+    }
+
+    // move the mover to the middle of the square it is in. The tick starts from there too,
+    // so drawing doesn't cut the corner between where it was and where it turns to
+    void center(int handle) {
+        if(fixedPoint) {
+            setFixedPosition(handle, FixedPoint.center(fixedX[handle]), FixedPoint.center(fixedY[handle]));
+        }
+        else {
+            x[handle] = (int) x[handle] + .5f;
+            y[handle] = (int) y[handle] + .5f;
+        }
+        previousX[handle] = x[handle];
+        previousY[handle] = y[handle];
+    }
+
+    public void setSpeed(int handle, float moverSpeed) {
+        if(moverSpeed < 0) {
+            throw new InvalidParameterException("Speed cannot be negative");
+        }
+        speed[handle] = moverSpeed;
+        fixedStep[handle] = FixedPoint.fromFloat(moverSpeed * Game.SECONDS_PER_TICK);
+    }
+
+    // remember every current location as the start of a tick
+    void savePositions() {
+        System.arraycopy(x, 0, previousX, 0, count);
+        System.arraycopy(y, 0, previousY, 0, count);
+    }
+}
@@ -0,0 +1,123 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Ashman Game
+ *
+ * Plays a recorded game again, headless and as fast as it will go.
+ * Has ability to check that the game ends exactly as it did when recorded.
+ *
+ * Nothing waits on a clock, so a replay runs ticks back to back, far faster
+ * than the game is played. That makes it the way to reproduce a bad
+ * session, and to profile one.
+ *
+ * Usage: Replay <level.txt or level.lvl> <recording.replay>
+ * Prints how long each phase of a tick took, see TickProfiler.
+ * Exits with 1 if the replay doesn't end as recorded.
+ */
+public class Replay {
+
+    // the game being replayed, and how it went
+    private final Game game;
+    private final InputLog log;
+    private int outcome = -1;
+
+    // set up the recorded level on a freshly loaded copy of its maze
+    public Replay(InputLog log, MazeGrid levelGrid) {
+
+        if(! log.isFinished()) {
+            throw new IllegalStateException("Recording has no end to play to");
+        }
+        this.log = log;
+        game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int gameOutcome) {
+                // the first end is the one the player saw
+                if(outcome < 0) {
+                    outcome = gameOutcome;
+                }
+            }
+        });
+        game.setFixedPoint(log.isFixedPoint());
+        game.prepareGame(log.getLevel(), levelGrid, log.getSeed());
+    }
+
+    // run to the recorded end, giving each input before the tick it was given before.
+    // Returns the hash of the game at the end
+    public long run() {
+
+        int next = 0;
+        while(game.getTickCount() < log.getEndTick()) {
+            while(next < log.getCount() && log.getTick(next) <= game.getTickCount()) {
+                game.input(log.getInput(next ++));
+            }
+            game.tick();
+        }
+        return game.getStateHash();
+    }
+
+    // tells you if the game ended as it was recorded. Call after run
+    public boolean matches() {
+        return game.getTickCount() == log.getEndTick() && game.getStateHash() == log.getEndHash();
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    // how the replayed game ended, Game.GAME_WIN or GAME_LOSS, or -1 if it didn't
+    public int getOutcome() {
+        return outcome;
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if(args.length != 2) {
+            System.err.println("Usage: Replay <level.txt or level.lvl> <recording" + InputLog.EXTENSION + ">");
+            System.exit(1);
+        }
+
+        MazeGrid levelGrid;
+        InputStream levelStream = new FileInputStream(new File(args[0]));
+        try {
+            levelGrid = args[0].endsWith(LevelFormat.EXTENSION) ? LevelFormat.read(levelStream) : LevelCompiler.compile(levelStream);
+        } finally {
+            levelStream.close();
+        }
+
+        InputLog log;
+        InputStream logStream = new FileInputStream(new File(args[1]));
+        try {
+            log = InputLog.read(logStream);
+        } finally {
+            logStream.close();
+        }
+
+        Replay replay = new Replay(log, levelGrid);
+        replay.getGame().getProfiler().setEnabled(true);
+        long start = System.nanoTime();
+        long hash = replay.run();
+        long nanos = Math.max(1, System.nanoTime() - start);
+
+        System.out.println("level " + log.getLevel() + ", seed " + log.getSeed()
+                + (log.isFixedPoint() ? ", fixed point" : "") + ", " + log.getCount() + " inputs");
+        System.out.println(log.getEndTick() + " ticks in " + nanos / 1000000 + " ms, "
+                + log.getEndTick() * 1000000000L / nanos + " ticks a second");
+        System.out.println("outcome " + replay.getOutcome() + ", hash " + Long.toHexString(hash)
+                + ", recorded " + Long.toHexString(log.getEndHash()));
+        System.out.println(replay.getGame().getProfiler().report());
+        if(! replay.matches()) {
+            System.out.println("MISMATCH");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,70 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Ashman Game
+ *
+ * Triple buffer of game snapshots between one writer (the game thread) and
+ * one reader (the renderer).
+ *
+ * The writer fills its back snapshot and publishes it with a single atomic
+ * swap. The reader swaps the newest published snapshot for its old one.
+ * Each of the three snapshots is always owned by exactly one of the writer,
+ * the reader, or the buffer, so neither side ever locks or waits, and the
+ * reader always sees a whole frame.
+ *
+ * Publishing hands the game's dirty region over with the snapshot, and
+ * starts a new one. If the reader never took the snapshot before it, that
+ * snapshot's changes were never drawn, so they go in this one too.
+ */
+public class SnapshotBuffer {
+
+    // the snapshot waiting to be taken by the reader
+    private final AtomicReference<GameSnapshot> ready;
+
+    // owned by the writer
+    private GameSnapshot back;
+    // owned by the reader
+    private GameSnapshot front;
+
+    public SnapshotBuffer() {
+        back = new GameSnapshot();
+        front = new GameSnapshot();
+        ready = new AtomicReference<>(new GameSnapshot());
+    }
+
+    // writer: copy the game into the back snapshot and publish it
+    public void publish(Game game, long nowNanos) {
+
+        // the reader hasn't taken the last snapshot yet, so this one replaces it, changes and all.
+        // If the reader takes it after all, those squares are only drawn twice
+        DirtyRegion dirtyRegion = game.getDirtyRegion();
+        GameSnapshot waiting = ready.get();
+        if(waiting.fresh) {
+            for(int i = 0; i < waiting.dirtyCount; i ++) {
+                dirtyRegion.add(waiting.dirtyLeft[i], waiting.dirtyTop[i], waiting.dirtyRight[i], waiting.dirtyBottom[i]);
+            }
+        }
+
+        back.capture(game, nowNanos);
+        back.fresh = true;
+        back = ready.getAndSet(back);
+        dirtyRegion.issued();
+        // still fresh, so the reader never took it and its rectangles were never invalidated.
+        // They were folded into this one above, and counted again with it
+        if(back.fresh) {
+            dirtyRegion.withdrawn(back.dirtyCount);
+        }
+        dirtyRegion.clear();
+    }
+
+    // reader: the newest published snapshot. Stays valid until the next call
+    public GameSnapshot acquire() {
+        if(ready.get().fresh) {
+            front = ready.getAndSet(front);
+            front.fresh = false;
+        }
+        return front;
+    }
+}
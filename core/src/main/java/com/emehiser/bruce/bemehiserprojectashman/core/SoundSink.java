@@ -0,0 +1,16 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * Whatever actually makes the noise. Called only on the audio thread,
+ * see AudioEngine. Sounds are the AudioEngine SOUND_ constants.
+ */
+public interface SoundSink {
+
+    // start playing the sound, from the beginning
+    void play(int sound);
+
+    // stop every sound that is playing
+    void stopAll();
+}
@@ -0,0 +1,164 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+/*
+ * Ashman Game
+ *
+ * Times each phase of a tick, and of drawing a frame, to find what drops frames.
+ * Has ability to time a phase with two calls, without allocating.
+ * Has ability to count ticks that ran over their time, and ticks that were dropped.
+ * Has ability to report p50, p99 and the longest time of every phase as text.
+ *
+ * Each phase has its own LatencyHistogram, recorded by the one thread that
+ * runs it: the tick phases on the game thread, the drawing phases on the ui
+ * thread. Time a phase like this:
+ *
+ *   long mark = profiler.mark();
+ *   ...
+ *   mark = profiler.lap(TickProfiler.PHASE_MOVERS, mark);
+ *
+ * It starts disabled, so a game nobody is timing never reads the clock for it.
+ * While disabled, mark and lap don't read the clock, and nothing is recorded.
+ */
+public class TickProfiler {
+
+    // the parts of a tick, on the game thread
+    public static final int PHASE_TICK = 0;
+    public static final int PHASE_INPUT = 1;
+    public static final int PHASE_PATHS = 2;
+    public static final int PHASE_MOVERS = 3;
+    public static final int PHASE_PUBLISH = 4;
+    // the parts of a frame, on the ui thread
+    public static final int PHASE_DRAW = 5;
+    public static final int PHASE_DRAW_MAZE = 6;
+    public static final int PHASE_DRAW_MOVERS = 7;
+    public static final int PHASE_UI = 8;
+    public static final int PHASE_SOUND = 9;
+    public static final int PHASE_COUNT = 10;
+
+    // names for the report, by phase
+    private static final String[] PHASE_NAMES = {
+            "tick", "input", "paths", "movers", "publish",
+            "draw", "draw maze", "draw movers", "ui", "sound"
+    };
+
+    private final LatencyHistogram[] phases;
+
+    // ticks that took longer than a tick lasts, and ticks the loop gave up on
+    private volatile long overrunCount;
+    private volatile long droppedTickCount;
+
+    private volatile boolean enabled;
+
+    public TickProfiler() {
+        phases = new LatencyHistogram[PHASE_COUNT];
+        for(int i = 0; i < PHASE_COUNT; i ++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // the time to measure a phase from, 0 while disabled
+    public long mark() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // record the time since mark against the phase, and return the time now, to be
+    // the mark of the phase that follows
+    public long lap(int phase, long mark) {
+
+        if(! enabled || mark == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        record(phase, now - mark);
+        return now;
+    }
+
+    // record a time taken by the phase. A whole tick longer than a tick lasts is an overrun
+    public void record(int phase, long nanos) {
+        checkPhase(phase);
+        phases[phase].record(nanos);
+        if(phase == PHASE_TICK && nanos > GameLoop.NANOS_PER_TICK) {
+            overrunCount ++;
+        }
+    }
+
+    // the game loop fell so far behind it dropped ticks
+    public void addDroppedTicks(long ticks) {
+        droppedTickCount += ticks;
+    }
+
+    public LatencyHistogram getPhase(int phase) {
+        checkPhase(phase);
+        return phases[phase];
+    }
+
+    public static String getPhaseName(int phase) {
+        checkPhase(phase);
+        return PHASE_NAMES[phase];
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public long getDroppedTickCount() {
+        return droppedTickCount;
+    }
+
+    // forget every time and count. Only while nothing is being timed
+    public void reset() {
+        for(LatencyHistogram phase : phases) {
+            phase.reset();
+        }
+        overrunCount = 0;
+        droppedTickCount = 0;
+    }
+
+    // one line for the phase, like "movers 1.2/4.0/31.0us 900" for p50/p99/max and count.
+    // Appending numbers to a builder with room doesn't allocate
+    public void appendPhase(StringBuilder builder, int phase) {
+
+        LatencyHistogram histogram = getPhase(phase);
+        builder.append(PHASE_NAMES[phase]).append(' ');
+        appendMicros(builder, histogram.getPercentile(50));
+        builder.append('/');
+        appendMicros(builder, histogram.getPercentile(99));
+        builder.append('/');
+        appendMicros(builder, histogram.getMax());
+        builder.append("us ").append(histogram.getCount());
+    }
+
+    // nanoseconds as microseconds to a tenth
+    private static void appendMicros(StringBuilder builder, long nanos) {
+        builder.append(nanos / 1000).append('.').append(nanos / 100 % 10);
+    }
+
+    // every phase that has been timed, a line each, then the overruns
+    public String report() {
+
+        StringBuilder builder = new StringBuilder("phase p50/p99/max count\n");
+        for(int phase = 0; phase < PHASE_COUNT; phase ++) {
+            if(phases[phase].getCount() > 0) {
+                appendPhase(builder, phase);
+                builder.append('\n');
+            }
+        }
+        builder.append("overruns ").append(overrunCount)
+                .append(", dropped ticks ").append(droppedTickCount);
+        return builder.toString();
+    }
+
+    private static void checkPhase(int phase) {
+        if(phase < 0 || phase >= PHASE_COUNT) {
+            throw new IndexOutOfBoundsException("Not a phase: " + phase);
+        }
+    }
+}
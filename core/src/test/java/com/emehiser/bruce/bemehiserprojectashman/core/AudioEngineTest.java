@@ -0,0 +1,129 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that sounds reach the sink in order, on the audio thread, and that
+ * callers never wait on the sink.
+ */
+public class AudioEngineTest {
+
+    // what the fake sink was asked to do, STOPPED for stopAll
+    private static final int STOPPED = -1;
+
+    private BlockingQueue<Integer> played;
+    private CountDownLatch sinkEntered;
+    private CountDownLatch sinkOpen;
+    private BlockingQueue<Thread> sinkThreads;
+    private AudioEngine audioEngine;
+
+    @Before
+    public void setUp() {
+        played = new LinkedBlockingQueue<>();
+        sinkEntered = new CountDownLatch(1);
+        sinkOpen = new CountDownLatch(0);
+        sinkThreads = new LinkedBlockingQueue<>();
+        audioEngine = new AudioEngine(new SoundSink() {
+            @Override
+            public void play(int sound) {
+                record(sound);
+            }
+
+            @Override
+            public void stopAll() {
+                record(STOPPED);
+            }
+        });
+        audioEngine.start();
+    }
+
+    private void record(int event) {
+        sinkEntered.countDown();
+        try {
+            sinkOpen.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        sinkThreads.add(Thread.currentThread());
+        played.add(event);
+    }
+
+    @After
+    public void tearDown() {
+        audioEngine.quit();
+    }
+
+    @Test
+    public void play_reachesSinkInOrderOffCallingThread() throws Exception {
+        assertTrue(audioEngine.play(AudioEngine.SOUND_BEGINNING));
+        assertTrue(audioEngine.play(AudioEngine.SOUND_CHOMP));
+        assertTrue(audioEngine.play(AudioEngine.SOUND_DEATH));
+
+        assertEquals(AudioEngine.SOUND_BEGINNING, next());
+        assertEquals(AudioEngine.SOUND_CHOMP, next());
+        assertEquals(AudioEngine.SOUND_DEATH, next());
+        assertNotSame(Thread.currentThread(), sinkThreads.take());
+    }
+
+    @Test
+    public void play_doesNotWaitForBlockedSink() throws Exception {
+        audioEngine.quit();
+        sinkOpen = new CountDownLatch(1);
+        audioEngine.start();
+
+        // the sink holds the first sound, the rest fill the queue and then drop
+        long start = System.nanoTime();
+        int accepted = 0;
+        for(int i = 0; i < 1000; i ++) {
+            if(audioEngine.play(AudioEngine.SOUND_CHOMP)) {
+                accepted ++;
+            }
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertTrue(accepted < 1000);
+
+        sinkOpen.countDown();
+        assertEquals(AudioEngine.SOUND_CHOMP, next());
+    }
+
+    @Test
+    public void stopAll_dropsWaitingSoundsAndStopsSink() throws Exception {
+        audioEngine.quit();
+        sinkOpen = new CountDownLatch(1);
+        audioEngine.start();
+
+        // the audio thread holds the first sound in the sink while the rest wait
+        audioEngine.play(AudioEngine.SOUND_BEGINNING);
+        assertTrue(sinkEntered.await(5, TimeUnit.SECONDS));
+        audioEngine.play(AudioEngine.SOUND_CHOMP);
+        audioEngine.play(AudioEngine.SOUND_DEATH);
+        audioEngine.stopAll();
+        sinkOpen.countDown();
+
+        assertEquals(AudioEngine.SOUND_BEGINNING, next());
+        assertEquals(STOPPED, next());
+        assertNull(played.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void play_rejectsUnknownSound() {
+        audioEngine.play(AudioEngine.SOUND_COUNT);
+    }
+
+    private int next() throws InterruptedException {
+        Integer event = played.poll(5, TimeUnit.SECONDS);
+        assertNotNull("sink was never called", event);
+        return event;
+    }
+}
@@ -0,0 +1,151 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks movers are relinked as they cross squares, and that collisions,
+ * up to reach squares apart, match checking every pair of movers.
+ */
+public class BroadphaseTest {
+
+    @Test
+    public void update_relinksAcrossSquares() {
+        MoverStore movers = new MoverStore();
+        Broadphase broadphase = new Broadphase(10, 10);
+        // three in one square's list, and one far away
+        int first = add(movers, broadphase, .5f, .5f);
+        int middle = add(movers, broadphase, .6f, .5f);
+        int last = add(movers, broadphase, .7f, .5f);
+        int far = add(movers, broadphase, 8.5f, 8.5f);
+        assertTrue(broadphase.collision(movers, middle));
+        assertFalse(broadphase.collision(movers, far));
+
+        // the middle of the list leaves, the rest of it still finds each other
+        move(movers, broadphase, middle, 8.6f, 8.5f);
+        assertTrue(broadphase.collision(movers, first));
+        assertTrue(broadphase.collision(movers, last));
+        assertTrue(broadphase.collision(movers, far));
+
+        // the head of the list leaves too, and the last one is alone
+        move(movers, broadphase, first, 5.5f, 5.5f);
+        assertFalse(broadphase.collision(movers, last));
+        assertFalse(broadphase.collision(movers, first));
+
+        // moving within a square keeps it where it is
+        move(movers, broadphase, first, 5.9f, 5.1f);
+        move(movers, broadphase, last, 5.5f, 5.5f);
+        assertTrue(broadphase.collision(movers, first));
+    }
+
+    @Test
+    public void collision_findsMoversReachSquaresAway() {
+        MoverStore movers = new MoverStore();
+        Broadphase broadphase = new Broadphase(10, 1);
+        // radius 1, so collisions reach two squares out
+        int left = movers.add(MoverStore.KIND_GHOST, .05f, .5f, 0);
+        int right = movers.add(MoverStore.KIND_GHOST, 2f, .5f, 0);
+        movers.radius[left] = 1f;
+        movers.radius[right] = 1f;
+        broadphase.insert(left, .05f, .5f, 1f);
+        broadphase.insert(right, 2f, .5f, 1f);
+
+        assertTrue(broadphase.collision(movers, left));
+        assertTrue(broadphase.collision(movers, right));
+
+        // just far enough apart
+        move(movers, broadphase, right, 2.1f, .5f);
+        assertFalse(broadphase.collision(movers, left));
+    }
+
+    @Test
+    public void collision_matchesEveryPair() {
+        Random random = new Random(7);
+        assertMatchesEveryPair(random, false);
+        assertMatchesEveryPair(random, true);
+    }
+
+    // movers of mixed sizes wander a small maze, and every check agrees with all pairs
+    private static void assertMatchesEveryPair(Random random, boolean fixedPoint) {
+
+        int size = 12;
+        MoverStore movers = new MoverStore();
+        movers.setFixedPoint(fixedPoint);
+        Broadphase broadphase = new Broadphase(size, size);
+        for(int i = 0; i < 60; i ++) {
+            float x = random.nextFloat() * size;
+            float y = random.nextFloat() * size;
+            int handle = movers.add(MoverStore.KIND_GHOST, x, y, 0);
+            float radius = .1f + random.nextFloat() * 1.2f;
+            movers.radius[handle] = radius;
+            movers.fixedRadius[handle] = FixedPoint.fromFloat(radius);
+            broadphase.insert(handle, movers.x[handle], movers.y[handle], radius);
+        }
+
+        int collisions = 0;
+        for(int round = 0; round < 200; round ++) {
+            // nudge some, and jump a few right across the maze
+            for(int handle = 0; handle < movers.getCount(); handle ++) {
+                float x = movers.x[handle];
+                float y = movers.y[handle];
+                if(random.nextInt(10) == 0) {
+                    x = random.nextFloat() * size;
+                    y = random.nextFloat() * size;
+                }
+                else {
+                    x = Math.min(Math.max(x + (random.nextFloat() - .5f), 0), size - .01f);
+                    y = Math.min(Math.max(y + (random.nextFloat() - .5f), 0), size - .01f);
+                }
+                move(movers, broadphase, handle, x, y);
+            }
+            for(int handle = 0; handle < movers.getCount(); handle ++) {
+                boolean expected = collidesWithAny(movers, handle);
+                assertEquals("mover " + handle + " in round " + round, expected, broadphase.collision(movers, handle));
+                collisions += expected ? 1 : 0;
+            }
+        }
+        // both ways were checked
+        assertTrue(collisions > 0);
+        assertTrue(collisions < 200 * movers.getCount());
+    }
+
+    // every other mover, the way the broadphase compares them
+    private static boolean collidesWithAny(MoverStore movers, int handle) {
+        for(int other = 0; other < movers.getCount(); other ++) {
+            if(other == handle) {
+                continue;
+            }
+            if(movers.fixedPoint) {
+                long dx = movers.fixedX[handle] - movers.fixedX[other];
+                long dy = movers.fixedY[handle] - movers.fixedY[other];
+                long touching = movers.fixedRadius[handle] + movers.fixedRadius[other];
+                if(dx * dx + dy * dy < touching * touching) {
+                    return true;
+                }
+            }
+            else {
+                float dx = movers.x[handle] - movers.x[other];
+                float dy = movers.y[handle] - movers.y[other];
+                float touching = movers.radius[handle] + movers.radius[other];
+                if(dx * dx + dy * dy < touching * touching) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int add(MoverStore movers, Broadphase broadphase, float x, float y) {
+        int handle = movers.add(MoverStore.KIND_GHOST, x, y, 0);
+        broadphase.insert(handle, x, y, movers.radius[handle]);
+        return handle;
+    }
+
+    private static void move(MoverStore movers, Broadphase broadphase, int handle, float x, float y) {
+        movers.setPosition(handle, x, y);
+        broadphase.update(handle, movers.x[handle], movers.y[handle]);
+    }
+}
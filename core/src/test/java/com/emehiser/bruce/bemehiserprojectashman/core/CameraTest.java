@@ -0,0 +1,53 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the camera stays inside the maze, and sees the right chunks.
+ */
+public class CameraTest {
+
+    @Test
+    public void follow_showsSmallMazeWhole() {
+        Camera camera = new Camera(14, 14);
+        camera.follow(10.5f, 3.5f, 14, 14);
+
+        assertFalse(camera.isScrolling());
+        assertEquals(0, camera.getLeft(), 0);
+        assertEquals(0, camera.getTop(), 0);
+        assertEquals(0, camera.getFirstChunkX());
+        assertEquals(1, camera.getLastChunkX());
+        assertEquals(1, camera.getLastChunkY());
+    }
+
+    @Test
+    public void follow_centersAndStopsAtEdges() {
+        Camera camera = new Camera(14, 14);
+
+        camera.follow(500.5f, 300.25f, 1024, 1024);
+        assertTrue(camera.isScrolling());
+        assertEquals(493.5f, camera.getLeft(), 0);
+        assertEquals(293.25f, camera.getTop(), 0);
+        assertEquals(493 >> MazeGrid.CHUNK_SHIFT, camera.getFirstChunkX());
+        assertEquals(507 >> MazeGrid.CHUNK_SHIFT, camera.getLastChunkX());
+        assertEquals(307 >> MazeGrid.CHUNK_SHIFT, camera.getLastChunkY());
+
+        camera.follow(1.5f, 1023.5f, 1024, 1024);
+        assertEquals(0, camera.getLeft(), 0);
+        assertEquals(1010, camera.getTop(), 0);
+        assertEquals(127, camera.getLastChunkY());
+    }
+
+    @Test
+    public void isVisible_cullsMoversOffScreen() {
+        Camera camera = new Camera(14, 14);
+        camera.follow(100, 100, 1024, 1024);
+
+        assertTrue(camera.isVisible(100, 100, .4f));
+        assertTrue(camera.isVisible(92.8f, 100, .4f));
+        assertFalse(camera.isVisible(92.5f, 100, .4f));
+        assertFalse(camera.isVisible(100, 120, .4f));
+    }
+}
@@ -0,0 +1,150 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that changed rectangles merge when they touch, fold into the one
+ * that grows least when there are too many, are counted, and are handed to
+ * the renderer with the snapshot that follows them.
+ */
+public class DirtyRegionTest {
+
+    @Test
+    public void add_mergesTouchingRectangles() {
+        DirtyRegion region = new DirtyRegion();
+        assertTrue(region.isEmpty());
+
+        region.add(0, 0, 1, 1);
+        // shares an edge
+        region.add(1, 0, 2, 1);
+        assertEquals(1, region.getRectCount());
+        assertRect(region, 0, 0, 0, 2, 1);
+
+        // apart, so held on its own
+        region.add(5, 5, 6, 6);
+        assertEquals(2, region.getRectCount());
+
+        // touches both, so all three become one
+        region.add(2, 1, 5, 5);
+        assertEquals(1, region.getRectCount());
+        assertRect(region, 0, 0, 0, 6, 6);
+
+        assertEquals(4, region.getAddedCount());
+        assertEquals(2, region.getMergedCount());
+    }
+
+    @Test
+    public void add_foldsOverflowIntoLeastGrowth() {
+        DirtyRegion region = new DirtyRegion();
+        // a row of squares with a gap of two between each
+        for(int i = 0; i < DirtyRegion.MAX_RECTS; i ++) {
+            region.add(3 * i, 0, 3 * i + 1, 1);
+        }
+        assertEquals(DirtyRegion.MAX_RECTS, region.getRectCount());
+        assertEquals(0, region.getMergedCount());
+
+        // no room, and the first square grows least by taking it
+        region.add(0, 10, 1, 11);
+        assertEquals(DirtyRegion.MAX_RECTS, region.getRectCount());
+        assertEquals(1, region.getMergedCount());
+        assertEquals(0, region.getBoundsLeft());
+        assertEquals(11, region.getBoundsBottom());
+        boolean found = false;
+        for(int i = 0; i < region.getRectCount(); i ++) {
+            if(region.getLeft(i) == 0) {
+                assertRect(region, i, 0, 0, 1, 11);
+                found = true;
+            }
+        }
+        assertTrue(found);
+
+        // filling a gap joins the two squares either side, and the one that touches next
+        region.add(1, 0, 3, 1);
+        assertEquals(DirtyRegion.MAX_RECTS - 1, region.getRectCount());
+        assertEquals(2, region.getMergedCount());
+    }
+
+    @Test
+    public void clear_keepsCounters() {
+        DirtyRegion region = new DirtyRegion();
+        region.add(0, 0, 1, 1);
+        region.add(0, 0, 1, 1);
+        region.issued();
+        region.clear();
+
+        assertTrue(region.isEmpty());
+        assertEquals(2, region.getAddedCount());
+        assertEquals(1, region.getMergedCount());
+        assertEquals(1, region.getIssuedCount());
+    }
+
+    @Test
+    public void publish_handsOverRegionAndKeepsWhatWasSkipped() throws Exception {
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+        game.prepareGame(1, TestMazes.shippedLevel(), 1);
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        DirtyRegion region = game.getDirtyRegion();
+
+        game.invalidate(2, 2, 3, 3);
+        snapshots.publish(game, 1);
+        assertTrue(region.isEmpty());
+        assertEquals(1, region.getIssuedCount());
+
+        // the reader never took those snapshots, so the newest has all their squares
+        game.invalidate(8, 8, 9, 9);
+        snapshots.publish(game, 2);
+        game.invalidate(12, 12, 13, 13);
+        snapshots.publish(game, 3);
+        GameSnapshot snapshot = snapshots.acquire();
+        assertEquals(3, snapshot.captureNanos);
+        assertEquals(3, snapshot.dirtyCount);
+        // only the rectangles of the snapshot taken count as issued
+        assertEquals(3, region.getIssuedCount());
+        int lefts = 0;
+        for(int i = 0; i < snapshot.dirtyCount; i ++) {
+            lefts += snapshot.dirtyLeft[i];
+        }
+        assertEquals(2 + 8 + 12, lefts);
+
+        // taken, so not handed over again
+        snapshots.publish(game, 4);
+        assertEquals(0, snapshots.acquire().dirtyCount);
+        assertEquals(3, region.getIssuedCount());
+    }
+
+    @Test
+    public void cheat_marksTheWholeMaze() throws Exception {
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+        game.prepareGame(1, TestMazes.shippedLevel(), 1);
+
+        game.input(InputLog.INPUT_CHEAT);
+        DirtyRegion region = game.getDirtyRegion();
+        assertEquals(1, region.getRectCount());
+        assertRect(region, 0, 0, 0, game.getGrid().getWidth(), game.getGrid().getHeight());
+    }
+
+    private static void assertRect(DirtyRegion region, int i, int left, int top, int right, int bottom) {
+        assertEquals(left, region.getLeft(i));
+        assertEquals(top, region.getTop(i));
+        assertEquals(right, region.getRight(i));
+        assertEquals(bottom, region.getBottom(i));
+    }
+}
@@ -0,0 +1,135 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the chase field's distances, that it only searches again when
+ * ashman changes squares, and that ghosts following it catch ashman.
+ */
+public class DistanceFieldTest {
+
+    // a U shaped corridor, ashman at the top left and the ghost at the top right
+    private static final String U_MAZE =
+            "A20G\n" +
+            "2202\n" +
+            "2222\n";
+
+    @Test
+    public void update_walksAroundWalls() throws Exception {
+        MazeGrid grid = TestMazes.load(U_MAZE, 4, 3);
+        DistanceField field = new DistanceField();
+
+        assertTrue(field.update(grid, .5f, .5f));
+        assertEquals(0, field.getDistance(0, 0));
+        assertEquals(1, field.getDistance(1, 0));
+        assertEquals(DistanceField.UNREACHED, field.getDistance(2, 0));
+        assertEquals(DistanceField.UNREACHED, field.getDistance(2, 1));
+        // down, across and back up
+        assertEquals(7, field.getDistance(3, 0));
+    }
+
+    @Test
+    public void update_searchesOnlyWhenSquareChanges() throws Exception {
+        MazeGrid grid = TestMazes.load(U_MAZE, 4, 3);
+        DistanceField field = new DistanceField();
+
+        assertTrue(field.update(grid, .5f, .5f));
+        assertFalse(field.update(grid, .9f, .2f));
+        assertFalse(field.update(grid, .5f, .5f));
+        assertEquals(1, field.getSearchCount());
+
+        assertTrue(field.update(grid, .5f, 1.5f));
+        assertEquals(2, field.getSearchCount());
+
+        // a chomped cake doesn't move the walls, a new wall does
+        grid.chompCake(.5f, 2.5f);
+        assertFalse(field.update(grid, .5f, 1.5f));
+        grid.setMazePos(1, 2, MazeGrid.SOLID_VAL);
+        assertTrue(field.update(grid, .5f, 1.5f));
+        assertEquals(DistanceField.UNREACHED, field.getDistance(3, 0));
+    }
+
+    @Test
+    public void toward_stepsNearer() throws Exception {
+        MazeGrid grid = TestMazes.load(U_MAZE, 4, 3);
+        DistanceField field = new DistanceField();
+        field.update(grid, .5f, .5f);
+        Random random = new Random(1);
+
+        assertEquals(Mover.DOWN, field.toward(grid.index(3, 0), random));
+        assertEquals(Mover.LEFT, field.toward(grid.index(3, 2), random));
+        assertEquals(Mover.UP, field.toward(grid.index(0, 2), random));
+        assertEquals(Mover.STOPPED, field.toward(grid.index(0, 0), random));
+        assertEquals(Mover.STOPPED, field.toward(grid.index(2, 0), random));
+    }
+
+    @Test
+    public void tick_ghostCatchesStillAshman() throws Exception {
+        final int[] outcome = {-1};
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int gameOutcome) {
+                outcome[0] = gameOutcome;
+            }
+        });
+        game.prepareGame(1, TestMazes.load(U_MAZE, 4, 3));
+
+        // at .6 squares a second the 7 squares around the U take under 12 seconds
+        for(int i = 0; i < 12 * Game.ANIMATIONS_PER_SECOND && outcome[0] < 0; i ++) {
+            game.tick();
+        }
+        assertEquals(Game.GAME_LOSS, outcome[0]);
+        // ashman never left his square, so the field was searched once
+        assertEquals(1, game.getChaseField().getSearchCount());
+    }
+
+    @Test
+    public void tick_ghostsShareOneSearchOnBigMaze() throws Exception {
+        // too big for a field over every square, so the pathfinder keeps the shared field
+        int size = 200;
+        assertTrue(size * size > Game.CHASE_FIELD_MAX_SQUARES);
+        StringBuilder builder = new StringBuilder();
+        for(int y = 0; y < size; y ++) {
+            for(int x = 0; x < size; x ++) {
+                builder.append(x == 100 && y == 100 ? MazeGrid.ASHMAN_START_CHAR
+                        : x == 110 && y == 100 ? MazeGrid.GHOST_START_CHAR : (char) ('0' + MazeGrid.CAKE_VAL));
+            }
+            builder.append('\n');
+        }
+        MazeGrid grid = TestMazes.load(builder.toString(), size, size);
+        final int[] outcome = {-1};
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int gameOutcome) {
+                outcome[0] = gameOutcome;
+            }
+        });
+        game.prepareGame(1, grid, 1);
+        assertTrue(game.usesPathfinder());
+
+        // a hundred more ghosts all around him, in clusters of their own
+        Random random = new Random(11);
+        for(int i = 0; i < 100; i ++) {
+            game.addGhost(80 + random.nextInt(40) + .5f, 80 + random.nextInt(40) + .5f, 1f);
+        }
+
+        // ashman never leaves his square, so however many ghosts chase him there is one search
+        for(int i = 0; i < 30 * Game.ANIMATIONS_PER_SECOND && outcome[0] < 0; i ++) {
+            game.tick();
+        }
+        assertEquals(Game.GAME_LOSS, outcome[0]);
+        assertEquals(1, game.getPathfinder().getGoalSearchCount());
+    }
+}
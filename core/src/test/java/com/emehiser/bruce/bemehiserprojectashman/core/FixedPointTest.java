@@ -0,0 +1,63 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks fixed point conversions keep a coordinate in its square, and that
+ * a fixed point sweep ends where the float sweep does.
+ */
+public class FixedPointTest {
+
+    @Test
+    public void toFloat_staysInItsSquare() {
+        for(int square = -1; square <= MazeGrid.MAX_SIZE; square ++) {
+            int start = square << FixedPoint.SHIFT;
+            int[] coordinates = {start, start + 1, start + FixedPoint.HALF, start + FixedPoint.ONE - 1};
+            for(int fixed : coordinates) {
+                float value = FixedPoint.toFloat(fixed);
+                assertEquals("toFloat(" + fixed + ")", square, (int) Math.floor(value));
+                assertEquals(square, FixedPoint.square(fixed));
+                assertEquals(start + FixedPoint.HALF, FixedPoint.center(fixed));
+                // as near as a float can be
+                assertEquals(fixed / (double) FixedPoint.ONE, value, Math.ulp(value));
+            }
+        }
+        assertEquals(FixedPoint.ONE + FixedPoint.HALF, FixedPoint.fromFloat(1.5f));
+        assertEquals(-FixedPoint.HALF, FixedPoint.fromFloat(-.5f));
+    }
+
+    @Test
+    public void sweepFixed_endsWhereSweepDoes() throws Exception {
+        Random random = new Random(5);
+        int radius = FixedPoint.fromFloat(MoverStore.DEFAULT_RADIUS);
+        int[] distances = {FixedPoint.fromFloat(Game.SECONDS_PER_TICK), FixedPoint.HALF,
+                FixedPoint.ONE, 5 * FixedPoint.HALF, 7 * FixedPoint.ONE};
+        for(int i = 0; i < 20; i ++) {
+            MazeGrid grid = TestMazes.generate(random, MazeGrid.DRAWING_WIDTH, MazeGrid.DRAWING_HEIGHT);
+            for(int y = 0; y < MazeGrid.DRAWING_HEIGHT; y ++) {
+                for(int x = 0; x < MazeGrid.DRAWING_WIDTH; x ++) {
+                    if(grid.getMazePos(x, y) == MazeGrid.SOLID_VAL) {
+                        continue;
+                    }
+                    // anywhere across the square the mover still fits in
+                    int fixedX = (x << FixedPoint.SHIFT) + radius + random.nextInt(FixedPoint.ONE - 2 * radius);
+                    int fixedY = FixedPoint.center(y << FixedPoint.SHIFT);
+                    for(int direction = Mover.UP; direction <= Mover.RIGHT; direction ++) {
+                        int distance = distances[random.nextInt(distances.length)];
+                        // on a maze this small every coordinate is exact as a float
+                        float expected = grid.sweep(FixedPoint.toFloat(fixedX), FixedPoint.toFloat(fixedY),
+                                FixedPoint.toFloat(radius), direction, FixedPoint.toFloat(distance));
+                        int swept = grid.sweepFixed(fixedX, fixedY, radius, direction, distance);
+                        // flush against a wall the float is a float step short, the fixed point a fixed step
+                        assertEquals("sweepFixed(" + fixedX + ", " + fixedY + ", " + direction + ", " + distance + ")",
+                                expected, FixedPoint.toFloat(swept), 1f / FixedPoint.ONE);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the game loop runs one tick per tick of time passed, carries the
+ * time left over to the next advance, and drops what is past its limit.
+ */
+public class GameLoopTest {
+
+    private static final long TICK = GameLoop.NANOS_PER_TICK;
+
+    private Game game;
+    private GameLoop gameLoop;
+
+    @Before
+    public void setUp() throws Exception {
+        game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+        game.prepareGame(1, TestMazes.shippedLevel(), 1);
+        gameLoop = new GameLoop(game);
+    }
+
+    @Test
+    public void advance_runsWholeTicksAndCarriesTheRest() {
+        gameLoop.start(0);
+
+        // not quite a tick
+        assertEquals(0, gameLoop.advance(TICK - 1));
+        assertEquals(0, game.getTickCount());
+        assertEquals(1, gameLoop.getNanosUntilNextTick());
+
+        // the nanosecond left makes it one
+        assertEquals(1, gameLoop.advance(TICK));
+        assertEquals(1, game.getTickCount());
+        assertEquals(0, gameLoop.getAlpha(), 0);
+
+        // a tick and a half runs one, and the half waits for the next advance
+        assertEquals(1, gameLoop.advance(TICK * 5 / 2));
+        assertEquals(TICK - TICK / 2, gameLoop.getNanosUntilNextTick());
+        assertEquals(.5f, gameLoop.getAlpha(), 1e-6f);
+        assertEquals(1, gameLoop.advance(TICK * 3));
+        assertEquals(3, game.getTickCount());
+
+        // many small advances add up to exactly as many ticks
+        long now = TICK * 3;
+        int ticks = 0;
+        for(int i = 0; i < 1000; i ++) {
+            now += TICK / 7;
+            ticks += gameLoop.advance(now);
+        }
+        assertEquals((TICK / 7) * 1000 / TICK, ticks);
+        assertEquals(0, game.getProfiler().getDroppedTickCount());
+    }
+
+    @Test
+    public void advance_dropsTimePastMaxTicks() {
+        gameLoop.start(0);
+
+        // twenty ticks and a quarter behind, only the most ticks an advance may run are run
+        long quarter = TICK / 4;
+        assertEquals(GameLoop.MAX_TICKS_PER_ADVANCE, gameLoop.advance(TICK * 20 + quarter));
+        assertEquals(GameLoop.MAX_TICKS_PER_ADVANCE, game.getTickCount());
+        assertEquals(20 - GameLoop.MAX_TICKS_PER_ADVANCE, game.getProfiler().getDroppedTickCount());
+
+        // the quarter tick is kept
+        assertEquals(TICK - quarter, gameLoop.getNanosUntilNextTick());
+        assertEquals(1, gameLoop.advance(TICK * 21));
+        assertEquals(GameLoop.MAX_TICKS_PER_ADVANCE + 1, game.getTickCount());
+    }
+
+    @Test
+    public void advance_ignoresBackwardClockAndStop() {
+        gameLoop.start(TICK * 10);
+
+        // a clock that goes back adds nothing, and time is measured from there on
+        assertEquals(0, gameLoop.advance(TICK * 5));
+        assertEquals(0, gameLoop.advance(TICK * 6 - 1));
+        assertEquals(1, gameLoop.advance(TICK * 6));
+
+        gameLoop.stop();
+        assertFalse(gameLoop.isRunning());
+        assertEquals(0, gameLoop.advance(TICK * 100));
+        assertEquals(1, game.getTickCount());
+    }
+}
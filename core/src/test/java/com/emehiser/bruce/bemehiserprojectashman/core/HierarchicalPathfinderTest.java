@@ -0,0 +1,269 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the pathfinder against the exact walking distances of a
+ * DistanceField, before and after the walls change.
+ */
+public class HierarchicalPathfinderTest {
+
+    @Test
+    public void findPath_agreesWithDistanceField() throws Exception {
+        Random random = new Random(4);
+        MazeGrid grid = TestMazes.generate(random, 100, 70);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder();
+        assertTrue(pathfinder.update(grid));
+        assertFalse(pathfinder.update(grid));
+
+        assertAgrees(grid, pathfinder, random);
+    }
+
+    @Test
+    public void update_repairsOnlyChangedClusters() throws Exception {
+        Random random = new Random(5);
+        MazeGrid grid = TestMazes.generate(random, 100, 70);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder();
+        pathfinder.update(grid);
+        int built = pathfinder.getRepairCount();
+
+        // open and close squares in one cluster, and in the two either side of a cluster line
+        for(int i = 0; i < 20; i ++) {
+            grid.setMazePos(20 + random.nextInt(10), 20 + random.nextInt(10), random.nextInt(3));
+        }
+        flipWall(grid, HierarchicalPathfinder.CLUSTER_SIZE * 3, 40);
+        flipWall(grid, HierarchicalPathfinder.CLUSTER_SIZE * 3 - 1, 40);
+        assertTrue(pathfinder.update(grid));
+        assertEquals(built + 3, pathfinder.getRepairCount());
+
+        // eating cakes doesn't repair anything
+        grid.chompAllButOneCake();
+        assertFalse(pathfinder.update(grid));
+
+        assertAgrees(grid, pathfinder, random);
+    }
+
+    @Test
+    public void findPath_crossesCorridorMaze() throws Exception {
+        // rows of corridors joined at alternate ends, one long snake through the whole maze
+        int width = 64;
+        int height = 63;
+        StringBuilder builder = new StringBuilder();
+        for(int y = 0; y < height; y ++) {
+            for(int x = 0; x < width; x ++) {
+                boolean open = y % 2 == 0 || (y % 4 == 1 ? x == width - 1 : x == 0);
+                builder.append(open ? MazeGrid.CAKE_VAL : MazeGrid.SOLID_VAL);
+            }
+            builder.append('\n');
+        }
+        MazeGrid grid = TestMazes.load(builder.toString(), width, height);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder();
+        pathfinder.update(grid);
+
+        // exact, the only way is the snake, 32 rows across and 31 steps down between them
+        assertEquals(32 * (width - 1) + 31 * 2, pathfinder.findPath(0, 0, 0, height - 1));
+        assertEquals(Mover.RIGHT, pathfinder.getFirstDirection());
+        assertTrue(pathfinder.getWaypointCount() > 1);
+        assertEquals(grid.index(0, height - 1), pathfinder.getWaypoint(pathfinder.getWaypointCount() - 1));
+    }
+
+    @Test
+    public void update_repairedClusterChangesPath() throws Exception {
+        // three clusters on a side, open but for a wall down the middle cluster column with one gap
+        int size = HierarchicalPathfinder.CLUSTER_SIZE * 3;
+        int wall = size / 2;
+        int gap = size / 2;
+        StringBuilder builder = new StringBuilder();
+        for(int y = 0; y < size; y ++) {
+            for(int x = 0; x < size; x ++) {
+                builder.append(x == wall && y != gap ? MazeGrid.SOLID_VAL : MazeGrid.CAKE_VAL);
+            }
+            builder.append('\n');
+        }
+        MazeGrid grid = TestMazes.load(builder.toString(), size, size);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder();
+        pathfinder.update(grid);
+        int built = pathfinder.getRepairCount();
+
+        // top left to top right, down to the gap and back up
+        int across = size - 1 + 2 * gap;
+        assertTrue(pathfinder.findPath(0, 0, size - 1, 0) >= across);
+
+        // close the gap, in the middle cluster, and there is no way across
+        grid.setMazePos(wall, gap, MazeGrid.SOLID_VAL);
+        assertTrue(pathfinder.update(grid));
+        assertEquals(built + 1, pathfinder.getRepairCount());
+        assertEquals(HierarchicalPathfinder.UNREACHED, pathfinder.findPath(0, 0, size - 1, 0));
+
+        // open one in the top cluster, and the way across is straight
+        grid.setMazePos(wall, 0, MazeGrid.EMPTY_VAL);
+        assertTrue(pathfinder.update(grid));
+        assertEquals(built + 2, pathfinder.getRepairCount());
+        assertEquals(size - 1, pathfinder.findPath(0, 0, size - 1, 0));
+        assertEquals(Mover.RIGHT, pathfinder.getFirstDirection());
+    }
+
+    @Test
+    public void toward_leadsEveryGhostToTheGoal() throws Exception {
+        Random random = new Random(9);
+        MazeGrid grid = TestMazes.generate(random, 100, 70);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder();
+        pathfinder.update(grid);
+        DistanceField field = new DistanceField();
+
+        long exact = 0;
+        long walked = 0;
+        int goals = 0;
+        while(goals < 20) {
+            int goalX = random.nextInt(grid.getWidth());
+            int goalY = random.nextInt(grid.getHeight());
+            if(grid.getMazePos(goalX, goalY) == MazeGrid.SOLID_VAL) {
+                continue;
+            }
+            goals ++;
+            int searches = pathfinder.getGoalSearchCount();
+            assertTrue(pathfinder.updateGoal(goalX + .5f, goalY + .5f));
+            assertFalse(pathfinder.updateGoal(goalX + .2f, goalY + .7f));
+            field.update(grid, goalX + .5f, goalY + .5f);
+
+            for(int i = 0; i < 50; i ++) {
+                int x = random.nextInt(grid.getWidth());
+                int y = random.nextInt(grid.getHeight());
+                if(grid.getMazePos(x, y) == MazeGrid.SOLID_VAL) {
+                    continue;
+                }
+                int distance = field.getDistance(x, y);
+                int steps = walk(grid, pathfinder, x, y, grid.index(goalX, goalY), random);
+                if(distance == DistanceField.UNREACHED) {
+                    assertEquals(-1, steps);
+                    continue;
+                }
+                // always gets there, never by a shorter way than there is
+                assertTrue("walk from " + x + ", " + y + " to " + goalX + ", " + goalY, steps >= distance);
+                exact += distance;
+                walked += steps;
+            }
+            // every ghost shared one search, or none if the goal stayed in the part of the cluster it was in
+            assertTrue(pathfinder.getGoalSearchCount() <= searches + 1);
+        }
+        assertTrue("walks " + walked + " vs shortest " + exact, walked <= exact * 5 / 4);
+    }
+
+    @Test
+    public void updateGoal_searchesAgainOnlyForANewPartOrWalls() throws Exception {
+        Random random = new Random(10);
+        MazeGrid grid = TestMazes.generate(random, 100, 70);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder();
+        pathfinder.update(grid);
+
+        // a walk of ashman's along open squares, ghosts asking after every step
+        int x = 0;
+        int y = 0;
+        while(grid.getMazePos(x, y) == MazeGrid.SOLID_VAL) {
+            x ++;
+        }
+        int clusterChanges = 0;
+        int cluster = -1;
+        for(int step = 0; step < 500; step ++) {
+            int way = 1 + random.nextInt(4);
+            int nextX = x + (way == Mover.LEFT ? -1 : way == Mover.RIGHT ? 1 : 0);
+            int nextY = y + (way == Mover.UP ? -1 : way == Mover.DOWN ? 1 : 0);
+            if(nextX < 0 || nextX >= grid.getWidth() || nextY < 0 || nextY >= grid.getHeight()
+                    || grid.getMazePos(nextX, nextY) == MazeGrid.SOLID_VAL) {
+                continue;
+            }
+            x = nextX;
+            y = nextY;
+            int now = (y >> HierarchicalPathfinder.CLUSTER_SHIFT) * 100 + (x >> HierarchicalPathfinder.CLUSTER_SHIFT);
+            if(now != cluster) {
+                cluster = now;
+                clusterChanges ++;
+            }
+            pathfinder.updateGoal(x + .5f, y + .5f);
+            pathfinder.toward(grid.index(0, 0) + grid.getStride() * 5 + 5, random);
+        }
+        // walking round inside one part of a cluster never searches the nodes again
+        assertTrue(pathfinder.getGoalSearchCount() <= clusterChanges);
+
+        // a wall change does
+        int searches = pathfinder.getGoalSearchCount();
+        flipWall(grid, 50, 50);
+        pathfinder.update(grid);
+        pathfinder.updateGoal(x + .5f, y + .5f);
+        pathfinder.toward(grid.index(x, y), random);
+        assertEquals(searches + 1, pathfinder.getGoalSearchCount());
+    }
+
+    // follow the chase field from the square, and return the steps to the goal, or -1 if it stops short
+    private static int walk(MazeGrid grid, HierarchicalPathfinder pathfinder, int x, int y, int goal, Random random) {
+        int index = grid.index(x, y);
+        int stride = grid.getStride();
+        int limit = grid.getWidth() * grid.getHeight();
+        for(int steps = 0; steps <= limit; steps ++) {
+            int direction = pathfinder.toward(index, random);
+            if(direction == Mover.STOPPED) {
+                return index == goal ? steps : -1;
+            }
+            int next = index + (direction == Mover.UP ? -stride : direction == Mover.DOWN ? stride
+                    : direction == Mover.LEFT ? -1 : 1);
+            assertNotEquals(MazeGrid.SOLID_VAL, grid.getMazePos(next % stride - MazeGrid.DRAWING_BORDER,
+                    next / stride - MazeGrid.DRAWING_BORDER));
+            index = next;
+        }
+        fail("walked in circles from " + x + ", " + y);
+        return -1;
+    }
+
+    // reachability matches exactly, lengths are never shorter than exact, and following
+    // the first direction always gets nearer to the goal along the way found
+    private static void assertAgrees(MazeGrid grid, HierarchicalPathfinder pathfinder, Random random) {
+
+        DistanceField field = new DistanceField();
+        long exact = 0;
+        long found = 0;
+        for(int i = 0; i < 200; i ++) {
+            int goalX = random.nextInt(grid.getWidth());
+            int goalY = random.nextInt(grid.getHeight());
+            if(grid.getMazePos(goalX, goalY) == MazeGrid.SOLID_VAL) {
+                continue;
+            }
+            field.update(grid, goalX + .5f, goalY + .5f);
+            for(int j = 0; j < 20; j ++) {
+                int x = random.nextInt(grid.getWidth());
+                int y = random.nextInt(grid.getHeight());
+                if(grid.getMazePos(x, y) == MazeGrid.SOLID_VAL) {
+                    continue;
+                }
+                int distance = field.getDistance(x, y);
+                int length = pathfinder.findPath(x, y, goalX, goalY);
+                if(distance == DistanceField.UNREACHED) {
+                    assertEquals(HierarchicalPathfinder.UNREACHED, length);
+                    continue;
+                }
+                assertTrue("path " + length + " shorter than " + distance, length >= distance);
+                exact += distance;
+                found += length;
+
+                // one step the way it says is open
+                int direction = pathfinder.getFirstDirection();
+                if(distance > 0) {
+                    int stepX = x + (direction == Mover.LEFT ? -1 : direction == Mover.RIGHT ? 1 : 0);
+                    int stepY = y + (direction == Mover.UP ? -1 : direction == Mover.DOWN ? 1 : 0);
+                    assertNotEquals(MazeGrid.SOLID_VAL, grid.getMazePos(stepX, stepY));
+                    assertTrue(pathfinder.findPath(stepX, stepY, goalX, goalY) != HierarchicalPathfinder.UNREACHED);
+                }
+            }
+        }
+        // near the shortest on the whole
+        assertTrue("paths " + found + " vs shortest " + exact, found <= exact * 5 / 4);
+    }
+
+    // make a solid square open, or an open one solid
+    private static void flipWall(MazeGrid grid, int x, int y) {
+        grid.setMazePos(x, y, grid.getMazePos(x, y) == MazeGrid.SOLID_VAL ? MazeGrid.EMPTY_VAL : MazeGrid.SOLID_VAL);
+    }
+}
@@ -0,0 +1,51 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the hud text, and that it only asks to be shown again when the
+ * number changes.
+ */
+public class HudCounterTest {
+
+    @Test
+    public void set_writesLabelAndNumber() {
+        HudCounter counter = new HudCounter("Cakes Left: ");
+        assertTrue(counter.set(0));
+        assertEquals("Cakes Left: 0", text(counter));
+
+        counter.set(172);
+        assertEquals("Cakes Left: 172", text(counter));
+        counter.set(9);
+        assertEquals("Cakes Left: 9", text(counter));
+        counter.set(-40);
+        assertEquals("Cakes Left: -40", text(counter));
+        counter.set(Integer.MIN_VALUE);
+        assertEquals("Cakes Left: " + Integer.MIN_VALUE, text(counter));
+        counter.set(Integer.MAX_VALUE);
+        assertEquals("Cakes Left: " + Integer.MAX_VALUE, text(counter));
+    }
+
+    @Test
+    public void set_onlyChangesOnNewNumber() {
+        HudCounter counter = new HudCounter("Level: ");
+        // new text is always shown the first time
+        assertTrue(counter.set(0));
+        assertFalse(counter.set(0));
+
+        assertTrue(counter.set(1));
+        assertFalse(counter.set(1));
+        assertFalse(counter.set(1));
+        assertEquals(1, counter.getValue());
+
+        counter.invalidate();
+        assertTrue(counter.set(1));
+        assertFalse(counter.set(1));
+    }
+
+    private static String text(HudCounter counter) {
+        return new String(counter.getChars(), 0, counter.getLength());
+    }
+}
@@ -0,0 +1,128 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that queued inputs come out in order across threads, and that a
+ * turn given early waits for the tick ashman can take it.
+ */
+public class InputQueueTest {
+
+    // a corridor with a way down in the middle, and the ghosts shut in where they can't reach ashman
+    private static final String T_MAZE =
+            "A2220\n" +
+            "00200\n" +
+            "0G000\n";
+
+    @Test
+    public void offer_keepsOrderAndDropsWhenFull() {
+        InputQueue queue = new InputQueue();
+        assertEquals(InputQueue.NO_INPUT, queue.poll());
+
+        // round the ring a few times
+        for(int round = 0; round < 3; round ++) {
+            for(int i = 0; i < InputQueue.CAPACITY; i ++) {
+                assertTrue(queue.offer(round + i));
+            }
+            assertFalse(queue.offer(99));
+            assertEquals(InputQueue.CAPACITY, queue.size());
+            for(int i = 0; i < InputQueue.CAPACITY; i ++) {
+                assertEquals(round + i, queue.poll());
+            }
+            assertEquals(InputQueue.NO_INPUT, queue.poll());
+        }
+
+        queue.offer(1);
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertEquals(InputQueue.NO_INPUT, queue.poll());
+
+        // thrown away by the writer, only what comes after is taken
+        queue.offer(1);
+        queue.offer(2);
+        queue.discard();
+        assertEquals(0, queue.size());
+        queue.offer(3);
+        assertEquals(1, queue.size());
+        assertEquals(3, queue.poll());
+        assertEquals(InputQueue.NO_INPUT, queue.poll());
+    }
+
+    @Test
+    public void poll_seesEveryInputFromAnotherThread() throws Exception {
+        final InputQueue queue = new InputQueue();
+        final int count = 50000;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < count; i ++) {
+                    while(! queue.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        writer.start();
+
+        int expected = 0;
+        while(expected < count) {
+            int input = queue.poll();
+            if(input != InputQueue.NO_INPUT) {
+                assertEquals(expected ++, input);
+            }
+            else {
+                Thread.yield();
+            }
+        }
+        writer.join();
+        assertEquals(InputQueue.NO_INPUT, queue.poll());
+    }
+
+    @Test
+    public void queueInput_turnsOnFirstOpenTick() throws Exception {
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+        game.prepareGame(1, LevelCompiler.compile(new ByteArrayInputStream(T_MAZE.getBytes(Charset.forName("US-ASCII")))), 3);
+        MoverStore movers = game.getMovers();
+        int ashman = game.getAshman();
+
+        // nothing happens until the next tick
+        assertTrue(game.queueInput(Mover.RIGHT));
+        assertEquals(Mover.STOPPED, movers.getDirection(ashman));
+        assertEquals(0, game.getInputLog().getCount());
+        game.tick();
+        assertEquals(Mover.RIGHT, movers.getDirection(ashman));
+        assertEquals(1, game.getInputLog().getCount());
+        assertEquals(0, game.getInputLog().getTick(0));
+
+        // down is given long before the way down, and waits for it
+        game.queueInput(Mover.DOWN);
+        while(movers.getDirection(ashman) == Mover.RIGHT) {
+            game.tick();
+            assertTrue(movers.getX(ashman) < 3);
+        }
+        assertEquals(Mover.DOWN, movers.getDirection(ashman));
+        assertEquals(Mover.STOPPED, movers.getTurn(ashman));
+        assertEquals(2, (int) movers.getX(ashman));
+        for(int i = 0; i < 10; i ++) {
+            game.tick();
+        }
+        assertEquals(1, (int) movers.getY(ashman));
+
+        // stopping is right away
+        game.input(Mover.STOPPED);
+        assertEquals(Mover.STOPPED, movers.getDirection(ashman));
+    }
+}
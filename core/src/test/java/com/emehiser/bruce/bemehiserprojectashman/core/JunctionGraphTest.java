@@ -0,0 +1,100 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the junction graph covers every open square, and that its
+ * corridors are the same length walked from either end.
+ */
+public class JunctionGraphTest {
+
+    @Test
+    public void update_findsJunctionsAndCorridors() throws Exception {
+        MazeGrid grid = TestMazes.load("A20G\n2202\n2222\n", 4, 3);
+        JunctionGraph graph = new JunctionGraph();
+        assertTrue(graph.update(grid));
+
+        // the dead end, and the three squares with three ways out
+        assertEquals(4, graph.getNodeCount());
+        assertTrue(graph.isNode(grid.index(3, 0)));
+        assertTrue(graph.isNode(grid.index(0, 1)));
+        assertTrue(graph.isNode(grid.index(1, 1)));
+        assertTrue(graph.isNode(grid.index(1, 2)));
+        assertFalse(graph.isNode(grid.index(0, 0)));
+
+        // from the dead end down and round to the bottom junction
+        int deadEnd = graph.nodeAt(grid.index(3, 0));
+        assertEquals(1, graph.getEndEdge(deadEnd) - graph.getFirstEdge(deadEnd));
+        int edge = graph.getFirstEdge(deadEnd);
+        assertEquals(Mover.DOWN, graph.getEdgeDirection(edge));
+        assertEquals(4, graph.getEdgeLength(edge));
+        assertEquals(graph.nodeAt(grid.index(1, 2)), graph.getEdgeTarget(edge));
+
+        // round the top left corner
+        assertEquals(Mover.RIGHT, graph.corridorExit(grid.index(0, 0), Mover.UP));
+        assertEquals(Mover.DOWN, graph.corridorExit(grid.index(3, 1), Mover.DOWN));
+
+        assertFalse(graph.update(grid));
+        assertEquals(1, graph.getBuildCount());
+        assertCovered(grid, graph);
+    }
+
+    @Test
+    public void update_anchorsLoopWithoutJunctions() throws Exception {
+        MazeGrid grid = TestMazes.load("A22\n202\n22G\n", 3, 3);
+        JunctionGraph graph = new JunctionGraph();
+        graph.update(grid);
+
+        assertEquals(1, graph.getNodeCount());
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(0, graph.getEdgeTarget(0));
+        assertEquals(8, graph.getEdgeLength(0));
+        assertCovered(grid, graph);
+    }
+
+    @Test
+    public void update_compressesShippedLevel() throws Exception {
+        MazeGrid grid = TestMazes.shippedLevel();
+        JunctionGraph graph = new JunctionGraph();
+        graph.update(grid);
+        assertCovered(grid, graph);
+
+        // a new wall builds the graph again
+        grid.setMazePos(0, 0, MazeGrid.SOLID_VAL);
+        assertTrue(graph.update(grid));
+        assertCovered(grid, graph);
+    }
+
+    // every open square is a node or on an edge, and every edge has a twin going back
+    private static void assertCovered(MazeGrid grid, JunctionGraph graph) {
+
+        int open = 0;
+        for(int y = 0; y < grid.getHeight(); y ++) {
+            for(int x = 0; x < grid.getWidth(); x ++) {
+                int index = grid.index(x, y);
+                boolean isOpen = grid.getMazePos(x, y) != MazeGrid.SOLID_VAL;
+                if(isOpen) {
+                    open ++;
+                }
+                assertEquals(isOpen, graph.isNode(index) || graph.edgeAt(index) != JunctionGraph.NONE);
+            }
+        }
+
+        // each corridor square is counted by both of its edge's twins, so length - 1 twice
+        int squares = graph.getNodeCount() * 2;
+        for(int node = 0; node < graph.getNodeCount(); node ++) {
+            for(int edge = graph.getFirstEdge(node); edge < graph.getEndEdge(node); edge ++) {
+                squares += graph.getEdgeLength(edge) - 1;
+                int target = graph.getEdgeTarget(edge);
+                boolean twin = false;
+                for(int back = graph.getFirstEdge(target); back < graph.getEndEdge(target); back ++) {
+                    twin |= graph.getEdgeTarget(back) == node && graph.getEdgeLength(back) == graph.getEdgeLength(edge);
+                }
+                assertTrue("edge " + edge + " has no twin", twin);
+            }
+        }
+        assertEquals(open * 2, squares);
+    }
+}
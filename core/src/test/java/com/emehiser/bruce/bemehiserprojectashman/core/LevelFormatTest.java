@@ -0,0 +1,90 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a compiled level reads back as the same maze as its text.
+ */
+public class LevelFormatTest {
+
+    @Test
+    public void read_matchesTextLevel() throws Exception {
+        MazeGrid text = TestMazes.shippedLevel();
+        MazeGrid compiled = LevelFormat.read(new ByteArrayInputStream(compile(text)));
+
+        assertEquals(text.getWidth(), compiled.getWidth());
+        assertEquals(text.getHeight(), compiled.getHeight());
+        assertEquals(text.getCakeCount(), compiled.getCakeCount());
+        assertEquals(text.getAshmanStartX(), compiled.getAshmanStartX(), 0);
+        assertEquals(text.getGhostStartY(), compiled.getGhostStartY(), 0);
+        for(int y = 0; y < text.getHeight(); y ++) {
+            for(int x = 0; x < text.getWidth(); x ++) {
+                assertEquals(text.getMazePos(x, y), compiled.getMazePos(x, y));
+                assertEquals(text.getWalkable(x, y), compiled.getWalkable(x, y));
+            }
+        }
+        assertNotEquals(text.getVersion(), compiled.getVersion());
+    }
+
+    @Test
+    public void read_keepsStartsAndSize() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for(int y = 0; y < 20; y ++) {
+            for(int x = 0; x < 31; x ++) {
+                builder.append(x == 30 ? MazeGrid.SOLID_VAL : MazeGrid.CAKE_VAL);
+            }
+            builder.append('\n');
+        }
+        MazeGrid text = LevelCompiler.compile(new ByteArrayInputStream(builder.toString().getBytes(Charset.forName("US-ASCII"))));
+        text.setStarts(3.5f, 4.5f, 10.5f, 19.5f);
+
+        MazeGrid compiled = LevelFormat.read(ByteBuffer.wrap(compile(text)));
+
+        assertEquals(31, compiled.getWidth());
+        assertEquals(20, compiled.getHeight());
+        assertEquals(30 * 20, compiled.getCakeCount());
+        assertEquals(3.5f, compiled.getAshmanStartX(), 0);
+        assertEquals(19.5f, compiled.getGhostStartY(), 0);
+        assertTrue(compiled.canMove(29.5f, 10.5f, .4f, Mover.LEFT));
+        assertFalse(compiled.canMove(30.5f, 10.5f, .4f, Mover.RIGHT));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherVersion() throws Exception {
+        byte[] bytes = compile(TestMazes.shippedLevel());
+        bytes[7] = (byte) (LevelFormat.FORMAT_VERSION + 1);
+        LevelFormat.read(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsShortLevel() throws Exception {
+        byte[] bytes = compile(TestMazes.shippedLevel());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+        LevelFormat.read(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsText() throws Exception {
+        InputStream inputStream = LevelFormatTest.class.getResourceAsStream("/level.txt");
+        try {
+            LevelFormat.read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static byte[] compile(MazeGrid grid) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LevelFormat.write(grid, bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.InvalidParameterException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that levels load off the calling thread, that a preloaded level is
+ * parsed once and handed out once, and that broken levels are reported.
+ */
+public class LevelLoaderTest {
+
+    private LevelLoader levelLoader;
+
+    // what the listener was told, a MazeGrid or an Exception
+    private final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Thread> listenerThreads = new LinkedBlockingQueue<>();
+
+    private final LevelLoader.LevelListener listener = new LevelLoader.LevelListener() {
+        @Override
+        public void onLevelLoaded(int level, MazeGrid levelGrid) {
+            listenerThreads.add(Thread.currentThread());
+            results.add(levelGrid);
+        }
+
+        @Override
+        public void onLevelFailed(int level, Exception e) {
+            listenerThreads.add(Thread.currentThread());
+            results.add(e);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        if(levelLoader != null) {
+            levelLoader.shutdown();
+        }
+    }
+
+    @Test
+    public void load_parsesOffCallingThread() throws Exception {
+        final AtomicInteger opens = new AtomicInteger();
+        levelLoader = new LevelLoader(new LevelLoader.LevelSource() {
+            @Override
+            public InputStream open(int level) throws IOException {
+                opens.incrementAndGet();
+                return LevelLoaderTest.class.getResourceAsStream("/level.txt");
+            }
+        });
+
+        levelLoader.load(1, listener);
+
+        MazeGrid levelGrid = (MazeGrid) next();
+        assertTrue(levelGrid.getCakeCount() > 0);
+        assertNotSame(Thread.currentThread(), listenerThreads.take());
+        assertEquals(1, opens.get());
+    }
+
+    @Test
+    public void preload_isParsedOnceAndTakenOnce() throws Exception {
+        final AtomicInteger opens = new AtomicInteger();
+        levelLoader = new LevelLoader(new LevelLoader.LevelSource() {
+            @Override
+            public InputStream open(int level) throws IOException {
+                opens.incrementAndGet();
+                return LevelLoaderTest.class.getResourceAsStream("/level.txt");
+            }
+        });
+
+        levelLoader.preload(2);
+        levelLoader.preload(2);
+        levelLoader.load(2, listener);
+        MazeGrid first = (MazeGrid) next();
+        assertEquals(1, opens.get());
+
+        // the preloaded grid is gone, so the next load parses a new one
+        levelLoader.load(2, listener);
+        MazeGrid second = (MazeGrid) next();
+        assertNotSame(first, second);
+        assertEquals(2, opens.get());
+    }
+
+    @Test
+    public void load_sizesTextLevelFromItsLines() throws Exception {
+        levelLoader = new LevelLoader(new LevelLoader.LevelSource() {
+            @Override
+            public InputStream open(int level) throws IOException {
+                return new ByteArrayInputStream("A2220\n00200\n0G002\n".getBytes(Charset.forName("US-ASCII")));
+            }
+        });
+
+        levelLoader.load(1, listener);
+
+        MazeGrid levelGrid = (MazeGrid) next();
+        assertEquals(5, levelGrid.getWidth());
+        assertEquals(3, levelGrid.getHeight());
+        assertEquals(5, levelGrid.getCakeCount());
+    }
+
+    @Test
+    public void load_reportsLevelWithoutCakes() throws Exception {
+        levelLoader = new LevelLoader(new LevelLoader.LevelSource() {
+            @Override
+            public InputStream open(int level) throws IOException {
+                StringBuilder builder = new StringBuilder();
+                for(int y = 0; y < MazeGrid.DRAWING_HEIGHT; y ++) {
+                    for(int x = 0; x < MazeGrid.DRAWING_WIDTH; x ++) {
+                        builder.append(MazeGrid.EMPTY_VAL);
+                    }
+                    builder.append('\n');
+                }
+                return new ByteArrayInputStream(builder.toString().getBytes(Charset.forName("US-ASCII")));
+            }
+        });
+
+        levelLoader.preload(1);
+        levelLoader.load(1, listener);
+
+        assertTrue(next() instanceof InvalidParameterException);
+    }
+
+    @Test
+    public void load_reportsMissingLevel() throws Exception {
+        levelLoader = new LevelLoader(new LevelLoader.LevelSource() {
+            @Override
+            public InputStream open(int level) throws IOException {
+                throw new IOException("no level " + level);
+            }
+        });
+
+        levelLoader.load(1, listener);
+
+        assertTrue(next() instanceof IOException);
+    }
+
+    private Object next() throws InterruptedException {
+        Object result = results.poll(5, TimeUnit.SECONDS);
+        assertNotNull("listener was never called", result);
+        return result;
+    }
+}
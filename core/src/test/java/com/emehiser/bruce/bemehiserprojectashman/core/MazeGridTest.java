@@ -0,0 +1,261 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that canMove, which reads the compiled walkable table, answers
+ * exactly like the original canMove, which read the maze square by square,
+ * and that a swept step of any length stops at the first wall in its way.
+ */
+public class MazeGridTest {
+
+    private static final int[] DIRECTIONS = {Mover.STOPPED, Mover.UP, Mover.DOWN, Mover.LEFT, Mover.RIGHT};
+    private static final float[] RADII = {MoverStore.DEFAULT_RADIUS, .25f, .49f, .5f, .75f};
+
+    @Test
+    public void canMove_matchesOriginalOnShippedLevel() throws Exception {
+        MazeGrid grid = TestMazes.shippedLevel();
+        assertMatchesOriginal(grid, new Random(1));
+    }
+
+    @Test
+    public void canMove_matchesOriginalOnGeneratedLevels() throws Exception {
+        Random random = new Random(2);
+        for(int i = 0; i < 20; i ++) {
+            assertMatchesOriginal(TestMazes.generate(random, MazeGrid.DRAWING_WIDTH, MazeGrid.DRAWING_HEIGHT), random);
+        }
+    }
+
+    @Test
+    public void canMove_followsSquaresSetAfterLoading() throws Exception {
+        Random random = new Random(3);
+        MazeGrid grid = TestMazes.generate(random, MazeGrid.DRAWING_WIDTH, MazeGrid.DRAWING_HEIGHT);
+        for(int i = 0; i < 50; i ++) {
+            int x = random.nextInt(MazeGrid.DRAWING_WIDTH);
+            int y = random.nextInt(MazeGrid.DRAWING_HEIGHT);
+            grid.setMazePos(x, y, random.nextInt(3));
+        }
+        assertMatchesOriginal(grid, random);
+    }
+
+    @Test
+    public void sweep_stopsFlushAgainstOneSquareWall() throws Exception {
+        MazeGrid grid = LevelCompiler.compile(new ByteArrayInputStream("A021G\n".getBytes(Charset.forName("US-ASCII"))));
+        float radius = MoverStore.DEFAULT_RADIUS;
+
+        // a step of three squares still can't jump the wall
+        float x = grid.sweep(.5f, .5f, radius, Mover.RIGHT, 3);
+        assertTrue(x > .5f && x + radius < 1);
+        assertTrue(grid.canMove(x, .5f, radius, Mover.RIGHT));
+        assertFalse(grid.canMove(Math.nextUp(x), .5f, radius, Mover.RIGHT));
+        // and doesn't move at all once it is there
+        assertEquals(x, grid.sweep(x, .5f, radius, Mover.RIGHT, 3), 0);
+
+        // the other side, up to the wall and up to the edge of the maze
+        assertEquals(2 + radius, grid.sweep(3.5f, .5f, radius, Mover.LEFT, 3), 0);
+        assertEquals(5 - radius, grid.sweep(3.5f, .5f, radius, Mover.RIGHT, 3), .0001f);
+        assertEquals(2.75f, grid.sweep(2.5f, .5f, radius, Mover.RIGHT, .25f), 0);
+    }
+
+    @Test
+    public void sweep_neverPassesWallsOnGeneratedLevels() throws Exception {
+        Random random = new Random(4);
+        float[] distances = {Game.SECONDS_PER_TICK, .5f, 1, 2.5f, 7};
+        float[] radii = {MoverStore.DEFAULT_RADIUS, .25f, .49f};
+        for(int i = 0; i < 20; i ++) {
+            MazeGrid grid = TestMazes.generate(random, MazeGrid.DRAWING_WIDTH, MazeGrid.DRAWING_HEIGHT);
+            for(int y = 0; y < MazeGrid.DRAWING_HEIGHT; y ++) {
+                for(int x = 0; x < MazeGrid.DRAWING_WIDTH; x ++) {
+                    if(grid.getMazePos(x, y) == MazeGrid.SOLID_VAL) {
+                        continue;
+                    }
+                    for(int direction = Mover.UP; direction <= Mover.RIGHT; direction ++) {
+                        assertSweepStopsAtWall(grid, x + .5f, y + .5f, radii[random.nextInt(radii.length)],
+                                direction, distances[random.nextInt(distances.length)]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void setMazePos_refusesTheBorder() throws Exception {
+        MazeGrid grid = TestMazes.generate(new Random(4), 20, 10);
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        // the last square in the maze can be set and read
+        grid.setMazePos(width - 1, height - 1, MazeGrid.EMPTY_VAL);
+        assertEquals(MazeGrid.EMPTY_VAL, grid.getMazePos(width - 1, height - 1));
+
+        // one past it is the border, on either side
+        int[][] border = {{width, 0}, {0, height}, {width, height}, {-1, 0}, {0, -1}};
+        for(int[] square : border) {
+            try {
+                grid.setMazePos(square[0], square[1], MazeGrid.EMPTY_VAL);
+                fail("setMazePos(" + square[0] + ", " + square[1] + ") should throw");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+            try {
+                grid.getMazePos(square[0], square[1]);
+                fail("getMazePos(" + square[0] + ", " + square[1] + ") should throw");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void chompCake_changesOnlyItsChunk() throws Exception {
+        int size = MazeGrid.MAX_SIZE;
+        StringBuilder builder = new StringBuilder();
+        for(int y = 0; y < size; y ++) {
+            for(int x = 0; x < size; x ++) {
+                builder.append(x == 0 && y == 0 ? MazeGrid.ASHMAN_START_CHAR
+                        : x == size - 1 && y == size - 1 ? MazeGrid.GHOST_START_CHAR : (char) ('0' + MazeGrid.CAKE_VAL));
+            }
+            builder.append('\n');
+        }
+        MazeGrid grid = LevelCompiler.compile(new ByteArrayInputStream(builder.toString().getBytes(Charset.forName("US-ASCII"))));
+        assertEquals(size * size - 2, grid.getCakeCount());
+        assertEquals(.5f, grid.getAshmanStartX(), 0);
+        assertEquals(size - .5f, grid.getGhostStartY(), 0);
+        assertEquals(MazeGrid.EMPTY_VAL, grid.getMazePos(size - 1, size - 1));
+
+        long[] before = new long[grid.getChunksAcross() * grid.getChunksDown()];
+        for(int i = 0; i < before.length; i ++) {
+            before[i] = grid.getChunkVersion(i);
+        }
+        int x = 700;
+        int y = 300;
+        assertTrue(grid.chompCake(x + .5f, y + .5f));
+        int chunk = (y >> MazeGrid.CHUNK_SHIFT) * grid.getChunksAcross() + (x >> MazeGrid.CHUNK_SHIFT);
+        for(int i = 0; i < before.length; i ++) {
+            assertEquals(i == chunk, grid.getChunkVersion(i) != before[i]);
+        }
+
+        // only the chunk is copied, the rest of the cells are left alone
+        byte[] cells = new byte[size * size];
+        grid.copyChunk(chunk, cells);
+        assertEquals(MazeGrid.EMPTY_VAL, cells[y * size + x]);
+        assertEquals(MazeGrid.CAKE_VAL, cells[y * size + x + 1]);
+        assertEquals(0, cells[size + 1]);
+    }
+
+    private static void assertMatchesOriginal(MazeGrid grid, Random random) {
+
+        // every tick sized step across the maze, and the edges of every square
+        float step = Game.SECONDS_PER_TICK / 2;
+        for(float radius : RADII) {
+            for(float y = -.5f; y <= MazeGrid.DRAWING_HEIGHT + .5f; y += step) {
+                for(float x = -.5f; x <= MazeGrid.DRAWING_WIDTH + .5f; x += step) {
+                    assertSame(grid, x, y, radius);
+                }
+            }
+            for(int y = 0; y <= MazeGrid.DRAWING_HEIGHT; y ++) {
+                for(int x = 0; x <= MazeGrid.DRAWING_WIDTH; x ++) {
+                    assertSame(grid, x + radius, y + radius, radius);
+                    assertSame(grid, x - radius, y - radius, radius);
+                    assertSame(grid, x + .5f, y + .5f, radius);
+                }
+            }
+        }
+
+        // and anywhere at all
+        for(int i = 0; i < 100000; i ++) {
+            float x = random.nextFloat() * (MazeGrid.DRAWING_WIDTH + 1) - .5f;
+            float y = random.nextFloat() * (MazeGrid.DRAWING_HEIGHT + 1) - .5f;
+            assertSame(grid, x, y, RADII[random.nextInt(RADII.length)]);
+        }
+    }
+
+    // the mover goes no further than the distance, every point on the way is one it could move to,
+    // and if it was cut short it is flush against the wall
+    private static void assertSweepStopsAtWall(MazeGrid grid, float x, float y, float radius, int direction, float distance) {
+
+        boolean across = direction == Mover.LEFT || direction == Mover.RIGHT;
+        float sign = direction == Mover.LEFT || direction == Mover.UP ? -1 : 1;
+        float start = across ? x : y;
+        float full = start + distance * sign;
+        float end = grid.sweep(x, y, radius, direction, distance);
+        float moved = (end - start) * sign;
+        String call = "sweep(" + x + ", " + y + ", " + radius + ", " + direction + ", " + distance + ")";
+        assertTrue(call + " went back", moved >= 0);
+        assertTrue(call + " went too far", sign > 0 ? end <= full : end >= full);
+
+        for(float along = 0; along < moved; along += .01f) {
+            float position = start + along * sign;
+            assertTrue(call + " passed " + position, grid.canMove(across ? position : x, across ? y : position, radius, direction));
+        }
+        if(moved > 0) {
+            assertTrue(call + " ended at " + end, grid.canMove(across ? end : x, across ? y : end, radius, direction));
+        }
+        if(end != full) {
+            float further = sign > 0 ? Math.nextUp(end) : -Math.nextUp(-end);
+            assertFalse(call + " stopped short at " + end, grid.canMove(across ? further : x, across ? y : further, radius, direction));
+        }
+    }
+
+    private static void assertSame(MazeGrid grid, float x, float y, float radius) {
+        for(int direction : DIRECTIONS) {
+            boolean expected = originalCanMove(grid, x, y, radius, direction);
+            if(grid.canMove(x, y, radius, direction) != expected) {
+                fail("canMove(" + x + ", " + y + ", " + radius + ", " + direction + ") should be " + expected);
+            }
+        }
+    }
+
+    // canMove as it was before the walkable table, reading the maze through mazePos
+    private static boolean originalCanMove(MazeGrid grid, float destinationX, float destinationY, float moverRadius, int moverDirection) {
+
+        if (destinationY + moverRadius > MazeGrid.DRAWING_WIDTH ||
+                destinationX + moverRadius > MazeGrid.DRAWING_WIDTH ||
+                destinationY - moverRadius < 0 ||
+                destinationX - moverRadius < 0) {
+            return false;
+        }
+
+        float finalX = destinationX;
+        float finalY = destinationY;
+        int solid = MazeGrid.SOLID_VAL;
+        switch (moverDirection) {
+            case Mover.UP:
+                finalY -= moverRadius;
+                return !(mazePos(grid, (int) finalX, (int) finalY) == solid ||
+                        mazePos(grid, (int) (finalX - moverRadius), (int) finalY) == solid ||
+                        mazePos(grid, (int) (finalX + moverRadius), (int) finalY) == solid);
+            case Mover.DOWN:
+                finalY += moverRadius;
+                return !(mazePos(grid, (int) finalX, (int) finalY) == solid ||
+                        mazePos(grid, (int) (finalX - moverRadius), (int) finalY) == solid ||
+                        mazePos(grid, (int) (finalX + moverRadius), (int) finalY) == solid);
+            case Mover.LEFT:
+                finalX -= moverRadius;
+                return !(mazePos(grid, (int) finalX, (int) finalY) == solid ||
+                        mazePos(grid, (int) finalX, (int) (finalY - moverRadius)) == solid ||
+                        mazePos(grid, (int) finalX, (int) (finalY + moverRadius)) == solid);
+            case Mover.RIGHT:
+                finalX += moverRadius;
+                return !(mazePos(grid, (int) finalX, (int) finalY) == solid ||
+                        mazePos(grid, (int) finalX, (int) (finalY - moverRadius)) == solid ||
+                        mazePos(grid, (int) finalX, (int) (finalY + moverRadius)) == solid);
+            default:
+                return true;
+        }
+    }
+
+    // getMazePos, and the right and bottom border the original could read, which is solid
+    private static int mazePos(MazeGrid grid, int x, int y) {
+        if(x == grid.getWidth() || y == grid.getHeight()) {
+            return MazeGrid.SOLID_VAL;
+        }
+        return grid.getMazePos(x, y);
+    }
+}
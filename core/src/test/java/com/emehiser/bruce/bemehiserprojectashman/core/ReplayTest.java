@@ -0,0 +1,141 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a recorded level replays to exactly the same end, through
+ * a written and read recording, in floats or in fixed point, and that a
+ * different seed doesn't.
+ */
+public class ReplayTest {
+
+    // most ticks a recorded game is played for
+    private static final int MAX_TICKS = 3000;
+
+    @Test
+    public void run_matchesRecordedGame() throws Exception {
+        InputLog log = play(2, 77, new Random(1), false);
+        assertTrue(log.isFinished());
+        assertTrue(log.getCount() > 0);
+
+        Replay replay = new Replay(log, TestMazes.shippedLevel());
+        assertEquals(log.getEndHash(), replay.run());
+        assertTrue(replay.matches());
+        assertEquals(log.getEndTick(), replay.getGame().getTickCount());
+    }
+
+    @Test
+    public void read_replaysWrittenRecording() throws Exception {
+        InputLog log = play(1, 12345, new Random(2), false);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        log.write(bytes);
+        InputLog read = InputLog.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(log.getCount(), read.getCount());
+        assertEquals(log.getSeed(), read.getSeed());
+        Replay replay = new Replay(read, TestMazes.shippedLevel());
+        replay.run();
+        assertTrue(replay.matches());
+    }
+
+    @Test
+    public void read_replaysFixedPointRecording() throws Exception {
+        InputLog log = play(2, 4242, new Random(3), true);
+        assertTrue(log.isFixedPoint());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        log.write(bytes);
+        InputLog read = InputLog.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertTrue(read.isFixedPoint());
+        Replay replay = new Replay(read, TestMazes.shippedLevel());
+        replay.run();
+        assertTrue(replay.matches());
+        assertTrue(replay.getGame().isFixedPoint());
+    }
+
+    @Test
+    public void run_otherSeedDoesNotMatch() throws Exception {
+        // ashman is walled off, so the ghosts wander where the seed takes them
+        StringBuilder builder = new StringBuilder();
+        for(int y = 0; y < MazeGrid.DRAWING_HEIGHT; y ++) {
+            for(int x = 0; x < MazeGrid.DRAWING_WIDTH; x ++) {
+                builder.append(x == 0 && y == 0 ? MazeGrid.ASHMAN_START_CHAR
+                        : x == 13 && y == 13 ? MazeGrid.GHOST_START_CHAR
+                        : (char) ('0' + (x == 2 ? MazeGrid.SOLID_VAL : MazeGrid.CAKE_VAL)));
+            }
+            builder.append('\n');
+        }
+        byte[] level = builder.toString().getBytes("US-ASCII");
+
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+        game.prepareGame(2, LevelCompiler.compile(new ByteArrayInputStream(level)), 5);
+        for(int i = 0; i < 300; i ++) {
+            game.tick();
+        }
+        game.finishRecording();
+        InputLog log = game.getInputLog();
+
+        Replay same = new Replay(log, LevelCompiler.compile(new ByteArrayInputStream(level)));
+        same.run();
+        assertTrue(same.matches());
+
+        InputLog other = new InputLog();
+        other.start(log.getLevel(), log.getSeed() + 1, log.isFixedPoint());
+        other.finish(log.getEndTick(), log.getEndHash());
+        Replay replay = new Replay(other, LevelCompiler.compile(new ByteArrayInputStream(level)));
+        replay.run();
+        assertFalse(replay.matches());
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsLevel() throws Exception {
+        InputStream inputStream = ReplayTest.class.getResourceAsStream("/level.txt");
+        try {
+            InputLog.read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    // play the level with random inputs now and then, like a player would, until it ends
+    private static InputLog play(int level, long seed, Random player, boolean fixedPoint) throws IOException {
+
+        final boolean[] over = {false};
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+                over[0] = true;
+            }
+        });
+        game.setFixedPoint(fixedPoint);
+        game.prepareGame(level, TestMazes.shippedLevel(), seed);
+        while(! over[0] && game.getTickCount() < MAX_TICKS) {
+            if(player.nextInt(8) == 0) {
+                game.moveAshman(1 + player.nextInt(4));
+            }
+            game.tick();
+        }
+        game.finishRecording();
+        return game.getInputLog();
+    }
+}
@@ -0,0 +1,119 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the reader always gets the newest published snapshot, is only
+ * handed it once, and that the writer never fills the one the reader holds.
+ */
+public class SnapshotBufferTest {
+
+    private Game game;
+
+    @Before
+    public void setUp() throws Exception {
+        game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+        game.prepareGame(1, TestMazes.shippedLevel(), 1);
+    }
+
+    @Test
+    public void acquire_takesEachPublishOnce() {
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+
+        // nothing published yet, an empty snapshot
+        GameSnapshot empty = snapshots.acquire();
+        assertFalse(empty.fresh);
+        assertEquals(0, empty.captureNanos);
+
+        snapshots.publish(game, 1);
+        GameSnapshot first = snapshots.acquire();
+        assertNotSame(empty, first);
+        assertEquals(1, first.captureNanos);
+        // taken, so no longer fresh, and acquiring again without a publish gives the same one
+        assertFalse(first.fresh);
+        assertSame(first, snapshots.acquire());
+
+        // only the newest of several publishes
+        snapshots.publish(game, 2);
+        snapshots.publish(game, 3);
+        GameSnapshot third = snapshots.acquire();
+        assertEquals(3, third.captureNanos);
+        assertSame(third, snapshots.acquire());
+    }
+
+    @Test
+    public void publish_neverFillsTheReadersSnapshot() {
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        Random random = new Random(6);
+        long now = 0;
+        GameSnapshot held = snapshots.acquire();
+        for(int i = 0; i < 1000; i ++) {
+            long heldNanos = held.captureNanos;
+            int publishes = random.nextInt(4);
+            for(int j = 0; j < publishes; j ++) {
+                snapshots.publish(game, ++ now);
+                // the reader's snapshot is untouched while it holds it
+                assertEquals(heldNanos, held.captureNanos);
+            }
+
+            GameSnapshot taken = snapshots.acquire();
+            if(publishes == 0) {
+                assertSame(held, taken);
+            }
+            else {
+                assertNotSame(held, taken);
+                assertEquals(now, taken.captureNanos);
+            }
+            held = taken;
+        }
+    }
+
+    @Test
+    public void publish_neverFillsTheReadersSnapshotAcrossThreads() throws Exception {
+        final SnapshotBuffer snapshots = new SnapshotBuffer();
+        final int publishes = 20000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for(int i = 1; i <= publishes; i ++) {
+                        snapshots.publish(game, i);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        }, "snapshot-writer");
+        writer.start();
+
+        // newer every time one is taken, and unchanged for as long as it is held
+        long last = 0;
+        while(last < publishes && failure.get() == null) {
+            GameSnapshot snapshot = snapshots.acquire();
+            long nanos = snapshot.captureNanos;
+            assertTrue(nanos >= last);
+            Thread.yield();
+            assertEquals(nanos, snapshot.captureNanos);
+            last = nanos;
+        }
+        writer.join();
+        assertNull(failure.get());
+        assertEquals(publishes, snapshots.acquire().captureNanos);
+    }
+}
@@ -0,0 +1,65 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Mazes for the tests: the shipped level, mazes written out as text, and
+ * random ones of any size.
+ */
+final class TestMazes {
+
+    private TestMazes() {
+    }
+
+    // the level the game ships with, compiled as the game loads it
+    static MazeGrid shippedLevel() throws IOException {
+        InputStream inputStream = TestMazes.class.getResourceAsStream("/level.txt");
+        try {
+            return LevelCompiler.compile(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    // a maze of the given size from text, without the checks a level has to pass
+    static MazeGrid load(String text, int width, int height) throws IOException {
+        MazeGrid grid = new MazeGrid(width, height);
+        grid.load(new ByteArrayInputStream(text.getBytes(Charset.forName("US-ASCII"))));
+        return grid;
+    }
+
+    // a level from text, sized and checked the way the game compiles one
+    static MazeGrid compile(String text) throws IOException {
+        return LevelCompiler.compile(new ByteArrayInputStream(text.getBytes(Charset.forName("US-ASCII"))));
+    }
+
+    // a random maze, see generateText
+    static MazeGrid generate(Random random, int width, int height) throws IOException {
+        return load(generateText(random, width, height), width, height);
+    }
+
+    // a maze with about a quarter of the squares solid and the rest cake or empty,
+    // ashman and the ghosts in opposite corners
+    static String generateText(Random random, int width, int height) {
+        StringBuilder builder = new StringBuilder();
+        for(int y = 0; y < height; y ++) {
+            for(int x = 0; x < width; x ++) {
+                if(x == 0 && y == 0) {
+                    builder.append(MazeGrid.ASHMAN_START_CHAR);
+                }
+                else if(x == width - 1 && y == height - 1) {
+                    builder.append(MazeGrid.GHOST_START_CHAR);
+                }
+                else {
+                    builder.append(random.nextInt(4) == 0 ? MazeGrid.SOLID_VAL : 1 + random.nextInt(2));
+                }
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
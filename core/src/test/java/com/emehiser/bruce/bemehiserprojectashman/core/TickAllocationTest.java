@@ -0,0 +1,171 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the headless game loop for thousands of ticks, the way GameThread
+ * does with a player giving inputs and chomps playing sounds, and fails if
+ * the game allocates on the thread running it.
+ *
+ * The first few games warm up the JVM, which allocates as it links code it
+ * hasn't run yet. After that every game is counted, each from a new seed,
+ * and only the ticks themselves are counted. Every counted game must
+ * allocate nothing at all.
+ *
+ * The optimizing JIT now and then charges the thread a few hundred bytes of
+ * its own at a safepoint, so the build runs tests with it off, see
+ * core/build.gradle. On a JVM started without that the test is skipped
+ * rather than counting the JIT's bytes as the game's.
+ */
+public class TickAllocationTest {
+
+    // ticks counted on each maze
+    private static final int COUNTED_TICKS = 5000;
+
+    // most ticks one game runs for
+    private static final int MAX_GAME_TICKS = 2000;
+
+    // games played before counting, to warm up the JVM
+    private static final int WARM_UP_GAMES = 3;
+
+    // JVM options that keep the optimizing JIT from charging the thread, set in core/build.gradle
+    private static final String[] QUIET_JIT_OPTIONS = {"-XX:TieredStopAtLevel=1", "-Xint"};
+
+    private com.sun.management.ThreadMXBean threads;
+    private AudioEngine audioEngine;
+    private Game game;
+    private boolean over;
+
+    // kept for every game, like GameThread keeps them
+    private GameLoop gameLoop;
+    private SnapshotBuffer snapshots;
+
+    @Before
+    public void setUp() {
+
+        // allocated bytes per thread is a HotSpot extra, skip where it isn't there
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        Assume.assumeTrue("run with " + QUIET_JIT_OPTIONS[0] + " to count allocations", quietJit());
+
+        // sounds go through the real queue to a sink that plays nothing
+        audioEngine = new AudioEngine(new SoundSink() {
+            @Override
+            public void play(int sound) {
+            }
+
+            @Override
+            public void stopAll() {
+            }
+        });
+        audioEngine.start();
+
+        game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+                audioEngine.play(AudioEngine.SOUND_CHOMP);
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+                over = true;
+            }
+        });
+        gameLoop = new GameLoop(game);
+        snapshots = new SnapshotBuffer();
+    }
+
+    @After
+    public void tearDown() {
+        if(audioEngine != null) {
+            audioEngine.quit();
+        }
+    }
+
+    @Test
+    public void tick_allocatesNothingOnShippedLevel() throws Exception {
+        assertTicksAllocateNothing(null);
+    }
+
+    @Test
+    public void tick_allocatesNothingInFixedPoint() throws Exception {
+        game.setFixedPoint(true);
+        assertTicksAllocateNothing(null);
+    }
+
+    @Test
+    public void tick_allocatesNothingWithPathfinder() throws Exception {
+        // big enough that ghosts chase with the pathfinder
+        int size = 200;
+        assertTrue(size * size > Game.CHASE_FIELD_MAX_SQUARES);
+        assertTicksAllocateNothing(TestMazes.generateText(new Random(8), size, size));
+    }
+
+    // play games on the level, text or the shipped level if null, until enough ticks were counted
+    private void assertTicksAllocateNothing(String level) throws IOException {
+
+        long seed = 1;
+        for(int i = 0; i < WARM_UP_GAMES; i ++) {
+            play(level, seed ++, false);
+        }
+
+        long counted = 0;
+        for(; counted < COUNTED_TICKS; seed ++) {
+            long[] result = play(level, seed, true);
+            assertEquals("bytes allocated in " + result[0] + " ticks of seed " + seed, 0, result[1]);
+            counted += result[0];
+        }
+    }
+
+    // tells you if the JVM was started with the optimizing JIT off
+    private static boolean quietJit() {
+        for(String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            for(String option : QUIET_JIT_OPTIONS) {
+                if(argument.equals(option)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // play one game through the game loop, and return the ticks run and the bytes they allocated
+    private long[] play(String level, long seed, boolean count) throws IOException {
+
+        game.prepareGame(2, level == null ? TestMazes.shippedLevel() : TestMazes.compile(level), seed);
+        over = false;
+        Random player = new Random(seed);
+        long thread = Thread.currentThread().getId();
+
+        long now = 1;
+        gameLoop.start(now);
+        long ticks = 0;
+        long allocated = 0;
+        while(! over && ticks < MAX_GAME_TICKS) {
+            if(player.nextInt(8) == 0) {
+                game.queueInput(1 + player.nextInt(4));
+            }
+            now += GameLoop.NANOS_PER_TICK;
+
+            long before = count ? threads.getThreadAllocatedBytes(thread) : 0;
+            ticks += gameLoop.advance(now);
+            snapshots.publish(game, now);
+            if(count) {
+                allocated += threads.getThreadAllocatedBytes(thread) - before;
+            }
+        }
+        return new long[] {ticks, allocated};
+    }
+}
@@ -0,0 +1,97 @@
+package com.emehiser.bruce.bemehiserprojectashman.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the histogram's buckets and percentiles, and that a game's ticks
+ * are timed phase by phase, and not at all while the profiler is disabled.
+ */
+public class TickProfilerTest {
+
+    @Test
+    public void bucket_holdsEveryTimeUnderItsTop() {
+        long previousTop = -1;
+        for(int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket ++) {
+            long top = LatencyHistogram.bucketTop(bucket);
+            assertTrue(top > previousTop);
+            assertEquals(bucket, LatencyHistogram.bucket(previousTop + 1));
+            assertEquals(bucket, LatencyHistogram.bucket(top));
+            // never more than one sub bucket wide
+            assertTrue(top - previousTop <= Math.max(1, (previousTop + 1) / LatencyHistogram.SUB_BUCKETS));
+            previousTop = top;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void getPercentile_isCloseAbove() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for(long nanos = 1; nanos <= 100000; nanos ++) {
+            histogram.record(nanos * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000, histogram.getMax());
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 50000000 && p50 <= 50000000 * 9 / 8);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 99000000 && p99 <= histogram.getMax());
+        assertEquals(histogram.getMax(), histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void record_countsOverruns() {
+        TickProfiler profiler = new TickProfiler();
+        profiler.record(TickProfiler.PHASE_TICK, GameLoop.NANOS_PER_TICK);
+        profiler.record(TickProfiler.PHASE_MOVERS, GameLoop.NANOS_PER_TICK * 2);
+        assertEquals(0, profiler.getOverrunCount());
+        profiler.record(TickProfiler.PHASE_TICK, GameLoop.NANOS_PER_TICK + 1);
+        assertEquals(1, profiler.getOverrunCount());
+
+        assertTrue(profiler.report().contains("overruns 1"));
+    }
+
+    @Test
+    public void tick_timesEachPhase() throws Exception {
+        Game game = new Game(new GameListener() {
+            @Override
+            public void onCakeChomped() {
+            }
+
+            @Override
+            public void onGameEnd(int outcome) {
+            }
+        });
+        game.prepareGame(1, TestMazes.shippedLevel(), 1);
+        TickProfiler profiler = game.getProfiler();
+
+        // off until asked for
+        assertFalse(profiler.isEnabled());
+        game.tick();
+        assertEquals(0, profiler.getPhase(TickProfiler.PHASE_TICK).getCount());
+        profiler.setEnabled(true);
+
+        for(int i = 0; i < 10; i ++) {
+            game.tick();
+        }
+        int[] tickPhases = {TickProfiler.PHASE_TICK, TickProfiler.PHASE_INPUT,
+                TickProfiler.PHASE_PATHS, TickProfiler.PHASE_MOVERS};
+        for(int phase : tickPhases) {
+            assertEquals(TickProfiler.getPhaseName(phase), 10, profiler.getPhase(phase).getCount());
+        }
+        // the parts never take longer than the whole
+        assertTrue(profiler.getPhase(TickProfiler.PHASE_MOVERS).getMax() <= profiler.getPhase(TickProfiler.PHASE_TICK).getMax());
+        assertEquals(0, profiler.getPhase(TickProfiler.PHASE_DRAW).getCount());
+
+        profiler.setEnabled(false);
+        game.tick();
+        assertEquals(10, profiler.getPhase(TickProfiler.PHASE_TICK).getCount());
+    }
+}